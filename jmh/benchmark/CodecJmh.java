@@ -0,0 +1,95 @@
+package benchmark;
+
+import exceptions.CorruptedFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+import objects.Recipe;
+import objects.RecipeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de JMH que comparan {@link RecipeCodec} con la serializacion de Java
+ *
+ * <p>
+ * Cada hilo tiene su propio codificador, ya que {@link RecipeCodec}
+ * reutiliza sus buffers y no debe compartirse entre hilos.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecJmh {
+
+    private static final int COUNT = 1024;
+
+    private final RecipeCodec codec = new RecipeCodec();
+    private Recipe[] recipes;
+    private byte[][] binary;
+    private byte[][] serialized;
+    private int next;
+
+    /**
+     * Genera las recetas y sus versiones codificadas
+     *
+     * @throws IOException Si falla la serializacion
+     */
+    @Setup
+    public void setup() throws IOException {
+        recipes = Datasets.recipes(42, COUNT);
+        binary = new byte[COUNT][];
+        serialized = new byte[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            binary[i] = codec.encode(recipes[i]);
+            serialized[i] = serialize(recipes[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(recipes[next++ & (COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Recipe decode() throws CorruptedFile {
+        byte[] bytes = binary[next++ & (COUNT - 1)];
+        return codec.decode(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return serialize(recipes[next++ & (COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Recipe deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized[next++ & (COUNT - 1)]))) {
+            return (Recipe) in.readObject();
+        }
+    }
+
+    private static byte[] serialize(Recipe recipe) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(recipe);
+        }
+        return bytes.toByteArray();
+    }
+
+}
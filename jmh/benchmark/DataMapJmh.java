@@ -0,0 +1,89 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import objects.DataMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de JMH de las busquedas e inserciones de {@link DataMap}
+ *
+ * <p>
+ * Las busquedas se pueden medir con varios hilos ({@code -t}), ya que un
+ * mapa que no se modifica puede leerse desde varios hilos a la vez. Las
+ * inserciones, que reemplazan entradas existentes, se miden siempre con un
+ * solo hilo.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataMapJmh {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private String[] names;
+    private String[] missing;
+    private DataMap map;
+
+    /**
+     * Contador propio de cada hilo para elegir la entrada de cada operacion
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        int pick(int size) {
+            return Datasets.pick(next++, size);
+        }
+    }
+
+    /**
+     * Llena el mapa con {@link #size} entradas
+     */
+    @Setup
+    public void setup() {
+        names = new String[size];
+        missing = new String[size];
+        map = new DataMap("benchmark");
+        for (int i = 0; i < size; i++) {
+            names[i] = Datasets.ingredientName(i);
+            missing[i] = "no existe " + i;
+            map.addData(names[i], i * 64L, 64);
+        }
+    }
+
+    @Benchmark
+    public DataMap.Entry searchData(Cursor cursor) {
+        return map.searchData(names[cursor.pick(size)]);
+    }
+
+    @Benchmark
+    public DataMap.Entry searchDataMissing(Cursor cursor) {
+        return map.searchData(missing[cursor.pick(size)]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addDataReplace(Cursor cursor) {
+        int i = cursor.pick(size);
+        map.addData(names[i], cursor.next, 64);
+    }
+
+}
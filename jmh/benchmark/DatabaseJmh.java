@@ -0,0 +1,170 @@
+package benchmark;
+
+import database.Database;
+import database.StorageEngine;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import objects.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de JMH de las operaciones principales de {@link Database}
+ *
+ * <p>
+ * Cada combinacion de motor de almacenamiento y tamaño de catalogo crea una
+ * base de datos nueva en un directorio temporal, la llena con recetas e
+ * ingredientes de {@link Datasets} y la borra al terminar. Las escrituras
+ * usan nombres nuevos en cada llamada, por lo que el catalogo crece durante
+ * la medicion. La cantidad de hilos se elige con {@code -t}.</p>
+ *
+ * <p>
+ * Ademas del tiempo medio se muestrea la latencia de cada operacion, para
+ * obtener sus percentiles. El tiempo de apertura se mide en
+ * {@link DatabaseStartupJmh}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatabaseJmh {
+
+    private static final long SEED = 42;
+
+    @Param({"segments", "files", "memory"})
+    public String engine;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private File dir;
+    private Database db;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Contador propio de cada hilo para elegir la receta o ingrediente de cada operacion
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        int pick(int size) {
+            return Datasets.pick(next++, size);
+        }
+    }
+
+    /**
+     * Crea y llena la base de datos
+     *
+     * @throws Exception Si falla alguna operacion de la base de datos
+     */
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("database-jmh").toFile();
+        db = fill(dir, engine, size);
+        next.set(size);
+    }
+
+    /**
+     * Cierra y borra la base de datos
+     */
+    @TearDown
+    public void tearDown() {
+        db.close();
+        delete(dir);
+    }
+
+    @Benchmark
+    public Recipe searchRecipe(Cursor cursor) {
+        return db.searchRecipe(Datasets.recipeName(cursor.pick(size)));
+    }
+
+    @Benchmark
+    public String[] readIngredient(Cursor cursor) {
+        return db.readIngredient(Datasets.ingredientName(cursor.pick(size)));
+    }
+
+    @Benchmark
+    public ArrayList<String> searchText(Cursor cursor) {
+        return db.searchText("receta " + cursor.pick(size), 10);
+    }
+
+    @Benchmark
+    public boolean writeRecipe() throws Exception {
+        return db.writeRecipe(Datasets.recipe(SEED, next.getAndIncrement()));
+    }
+
+    @Benchmark
+    public boolean addIngredient() {
+        String[] ingredient = Datasets.ingredient(next.getAndIncrement());
+        return db.addIngredient(ingredient[0], ingredient[1], ingredient[2]);
+    }
+
+    /**
+     * Crea una base de datos y la llena con recetas e ingredientes sinteticos
+     *
+     * @param dir Directorio de la base de datos
+     * @param engine Nombre del motor de almacenamiento: segments, files o memory
+     * @param size Cantidad de recetas y de ingredientes
+     * @return Base de datos abierta
+     * @throws Exception Si falla alguna operacion de la base de datos
+     */
+    static Database fill(File dir, String engine, int size) throws Exception {
+        Database db = new Database(dir, engine(engine));
+        for (int i = 0; i < size; i++) {
+            db.writeRecipe(Datasets.recipe(SEED, i));
+        }
+        db.sync();
+        db.importIngredients(IntStream.range(0, size).mapToObj(Datasets::ingredient));
+        return db;
+    }
+
+    /**
+     * Motor de almacenamiento con un nombre dado: segments, files o memory
+     */
+    static StorageEngine.Factory engine(String name) {
+        switch (name) {
+            case "segments":
+                return StorageEngine.SEGMENTS;
+            case "files":
+                return StorageEngine.FILES;
+            case "memory":
+                return StorageEngine.MEMORY;
+            default:
+                throw new IllegalArgumentException("Motor desconocido: " + name);
+        }
+    }
+
+    /**
+     * Borra un archivo o un directorio con todo su contenido
+     */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import database.Database;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark de JMH de la apertura de {@link Database}
+ *
+ * <p>
+ * Cada combinacion de motor de almacenamiento y tamaño de catalogo llena una
+ * base de datos en un directorio temporal, la cierra y mide cuanto tarda en
+ * volver a abrirse: cargar los nombres de las recetas, el mapa de datos de
+ * los ingredientes y los indices guardados. Cada base de datos abierta se
+ * cierra fuera de la medicion.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class DatabaseStartupJmh {
+
+    @Param({"segments", "files", "memory"})
+    public String engine;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private File dir;
+    private Database opened;
+
+    /**
+     * Crea, llena y cierra la base de datos que se abre en cada medicion
+     *
+     * @throws Exception Si falla alguna operacion de la base de datos
+     */
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("database-jmh").toFile();
+        DatabaseJmh.fill(dir, engine, size).close();
+    }
+
+    /**
+     * Cierra la base de datos abierta en la ultima medicion
+     */
+    @TearDown(Level.Invocation)
+    public void closeOpened() {
+        if (opened != null) {
+            opened.close();
+            opened = null;
+        }
+    }
+
+    /**
+     * Borra la base de datos
+     */
+    @TearDown
+    public void tearDown() {
+        DatabaseJmh.delete(dir);
+    }
+
+    @Benchmark
+    public Database open() {
+        opened = new Database(dir, DatabaseJmh.engine(engine));
+        return opened;
+    }
+
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import objects.Ingredient;
+import objects.Recipe;
+
+/**
+ * Genera recetas e ingredientes sinteticos para los benchmarks
+ *
+ * <p>
+ * Los datos dependen solo de la semilla y del numero de cada elemento, de
+ * forma que dos ejecuciones con los mismos parametros miden exactamente lo
+ * mismo.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class Datasets {
+
+    static final String[] NAMES = {"Tomate", "Lechuga", "Cebolla", "Carne", "Pescado", "Pollo", "Sal", "Ajo", "Arroz", "Papa",
+        "Maíz", "Limón", "Queso", "Leche", "Huevo", "Pimentón", "Garbanzos", "Lentejas", "Aceite", "Harina"};
+    static final String[] TYPES = {"Vegetal", "Proteina", "Condimento", "Carbohidrato", "Grasa", "Lacteo"};
+    static final String[] UNITS = {"kg", "g", "ml", "l", "unidad", "cucharada"};
+
+    private Datasets() {
+    }
+
+    /**
+     * Genera una receta sintetica
+     *
+     * @param seed Semilla del conjunto de datos
+     * @param i Numero de la receta; determina su nombre
+     * @return Receta con entre 3 y 12 ingredientes
+     */
+    static Recipe recipe(long seed, int i) {
+        Random random = new Random(seed * 31 + i);
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
+        int n = 3 + random.nextInt(10);
+        for (int j = 0; j < n; j++) {
+            ingredients.add(new Ingredient(NAMES[random.nextInt(NAMES.length)], TYPES[random.nextInt(TYPES.length)],
+                    1 + random.nextInt(500), UNITS[random.nextInt(UNITS.length)]));
+        }
+        return new Recipe(recipeName(i), "Descripcion de la receta " + i, ingredients,
+                "Mezclar los ingredientes y cocinar a fuego medio.", random.nextInt(60), random.nextInt(120));
+    }
+
+    /**
+     * Genera varias recetas sinteticas numeradas desde 0
+     *
+     * @param seed Semilla del conjunto de datos
+     * @param count Cantidad de recetas
+     * @return Arreglo de recetas
+     */
+    static Recipe[] recipes(long seed, int count) {
+        Recipe[] recipes = new Recipe[count];
+        for (int i = 0; i < count; i++) {
+            recipes[i] = recipe(seed, i);
+        }
+        return recipes;
+    }
+
+    /**
+     * Nombre de la receta sintetica con un numero dado
+     *
+     * @param i Numero de la receta
+     * @return Nombre de la receta
+     */
+    static String recipeName(int i) {
+        return "Receta " + i;
+    }
+
+    /**
+     * Genera los datos de un ingrediente sintetico
+     *
+     * @param i Numero del ingrediente; determina su nombre
+     * @return Nombre, tipo y unidad del ingrediente
+     */
+    static String[] ingredient(int i) {
+        return new String[]{ingredientName(i), TYPES[i % TYPES.length], UNITS[i % UNITS.length]};
+    }
+
+    /**
+     * Elige un elemento del catalogo de forma pseudoaleatoria pero repetible
+     *
+     * @param i Numero de la operacion
+     * @param size Tamaño del catalogo
+     * @return Numero del elemento elegido, entre 0 y size - 1
+     */
+    static int pick(int i, int size) {
+        return (int) Math.floorMod(i * 0x9E3779B97F4A7C15L, (long) size);
+    }
+
+    /**
+     * Nombre del ingrediente sintetico con un numero dado
+     *
+     * @param i Numero del ingrediente
+     * @return Nombre del ingrediente
+     */
+    static String ingredientName(int i) {
+        return NAMES[i % NAMES.length] + " " + i;
+    }
+
+}
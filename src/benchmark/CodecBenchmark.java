@@ -0,0 +1,119 @@
+package benchmark;
+
+import exceptions.CorruptedFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import objects.Ingredient;
+import objects.Recipe;
+import objects.RecipeCodec;
+
+/**
+ * Compara {@link RecipeCodec} con la serializacion de Java
+ *
+ * <p>
+ * Genera recetas sinteticas y mide el tamaño medio de cada receta codificada
+ * y el tiempo medio de codificacion y decodificacion con cada metodo. Se
+ * ejecuta con {@code java benchmark.CodecBenchmark [recetas] [rondas]}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class CodecBenchmark {
+
+    private static final String[] NAMES = {"Tomate", "Lechuga", "Cebolla", "Carne", "Pescado", "Pollo", "Sal", "Ajo", "Arroz", "Papa"};
+    private static final String[] TYPES = {"Vegetal", "Proteina", "Condimento", "Carbohidrato"};
+    private static final String[] UNITS = {"kg", "g", "ml", "unidad"};
+
+    private static long sink;
+
+    private CodecBenchmark() {
+    }
+
+    /**
+     * Punto de entrada del benchmark
+     *
+     * @param args Cantidad de recetas y cantidad de rondas medidas
+     * @throws Exception Si falla la codificacion o decodificacion
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Recipe[] recipes = generate(count, new Random(42));
+        RecipeCodec codec = new RecipeCodec();
+
+        byte[][] binary = new byte[count][];
+        byte[][] serialized = new byte[count][];
+        long binarySize = 0;
+        long serializedSize = 0;
+        for (int i = 0; i < count; i++) {
+            binary[i] = codec.encode(recipes[i]);
+            serialized[i] = serialize(recipes[i]);
+            binarySize += binary[i].length;
+            serializedSize += serialized[i].length;
+        }
+        System.out.printf("Tamaño medio: RecipeCodec %d bytes, ObjectOutputStream %d bytes (%.1fx)%n",
+                binarySize / count, serializedSize / count, (double) serializedSize / binarySize);
+
+        for (int round = -rounds; round < rounds; round++) {
+            long t0 = System.nanoTime();
+            for (Recipe recipe : recipes) {
+                sink += codec.encode(recipe).length;
+            }
+            long t1 = System.nanoTime();
+            for (byte[] bytes : binary) {
+                sink += codec.decode(bytes, 0, bytes.length).getTotalTime();
+            }
+            long t2 = System.nanoTime();
+            for (Recipe recipe : recipes) {
+                sink += serialize(recipe).length;
+            }
+            long t3 = System.nanoTime();
+            for (byte[] bytes : serialized) {
+                sink += deserialize(bytes).getTotalTime();
+            }
+            long t4 = System.nanoTime();
+            // Las rondas negativas son de calentamiento
+            if (round >= 0) {
+                System.out.printf("Ronda %d: codificar %d ns/op vs %d ns/op, decodificar %d ns/op vs %d ns/op%n", round,
+                        (t1 - t0) / count, (t3 - t2) / count, (t2 - t1) / count, (t4 - t3) / count);
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    private static Recipe[] generate(int count, Random random) {
+        Recipe[] recipes = new Recipe[count];
+        for (int i = 0; i < count; i++) {
+            ArrayList<Ingredient> ingredients = new ArrayList<>();
+            int n = 3 + random.nextInt(10);
+            for (int j = 0; j < n; j++) {
+                ingredients.add(new Ingredient(NAMES[random.nextInt(NAMES.length)], TYPES[random.nextInt(TYPES.length)],
+                        1 + random.nextInt(500), UNITS[random.nextInt(UNITS.length)]));
+            }
+            recipes[i] = new Recipe("Receta " + i, "Descripcion de la receta " + i, ingredients,
+                    "Mezclar los ingredientes y cocinar a fuego medio.", random.nextInt(60), random.nextInt(120));
+        }
+        return recipes;
+    }
+
+    private static byte[] serialize(Recipe recipe) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(recipe);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Recipe deserialize(byte[] bytes) throws IOException, CorruptedFile {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Recipe) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new CorruptedFile();
+        }
+    }
+
+}
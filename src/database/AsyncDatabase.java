@@ -0,0 +1,250 @@
+package database;
+
+import exceptions.EmptyObject;
+import exceptions.NameAlreadyInUse;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import objects.Recipe;
+
+/**
+ * Acceso asincrono a una {@link Database}
+ *
+ * <p>
+ * Cada método encola la operacion equivalente de {@link Database} en un
+ * grupo fijo de hilos y devuelve enseguida un {@link CompletableFuture}, de
+ * forma que el hilo que llama no espera a los accesos al disco. Muchas
+ * peticiones concurrentes se reparten entre pocos hilos: las que no tienen
+ * hilo libre esperan en la cola del grupo.</p>
+ *
+ * <p>
+ * La cantidad de operaciones pendientes, en cola o en ejecucion, esta
+ * limitada. Si se alcanza el limite, el futuro devuelto se completa al
+ * instante con una {@link RejectedExecutionException}, para que quien llama
+ * reduzca el ritmo o lo reintente mas tarde en vez de acumular trabajo sin
+ * limite en memoria.</p>
+ *
+ * <p>
+ * Las excepciones declaradas por los métodos de {@link Database}, como
+ * {@link NameAlreadyInUse} o {@link EmptyObject}, completan el futuro de
+ * forma excepcional. Los resultados false o null se devuelven igual que en
+ * la version sincrona.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class AsyncDatabase implements AutoCloseable {
+
+    /**
+     * Cantidad maxima por defecto de operaciones pendientes
+     */
+    public static final int DEFAULT_MAX_PENDING = 4096;
+
+    private final Database database;
+    private final ExecutorService executor;
+    private final Semaphore pending;
+
+    /**
+     * Constructor de la clase AsyncDatabase
+     *
+     * <p>
+     * Utiliza dos hilos por procesador, porque las operaciones alternan
+     * calculo y esperas al disco, y admite hasta
+     * {@value #DEFAULT_MAX_PENDING} operaciones pendientes.</p>
+     *
+     * @param database Base de datos sobre la que se ejecutan las operaciones
+     */
+    public AsyncDatabase(Database database) {
+        this(database, 2 * Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Constructor de la clase AsyncDatabase
+     *
+     * @param database Base de datos sobre la que se ejecutan las operaciones
+     * @param threads Cantidad de hilos que ejecutan las operaciones
+     * @param maxPending Cantidad maxima de operaciones pendientes
+     * @throws IllegalArgumentException Si alguno de los limites no es positivo
+     */
+    public AsyncDatabase(Database database, int threads, int maxPending) {
+        if (threads <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException("Threads and pending limit must be positive");
+        }
+        this.database = database;
+        pending = new Semaphore(maxPending);
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "database-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Busca una receta por su nombre
+     *
+     * @param name Nombre de la receta
+     * @return Futuro con la receta, o con null si no existe
+     * @see Database#searchRecipe(String)
+     */
+    public CompletableFuture<Recipe> searchRecipe(String name) {
+        return submit(() -> database.searchRecipe(name));
+    }
+
+    /**
+     * Escribe una receta
+     *
+     * @param recipe Receta a escribir
+     * @return Futuro con true si se escribio correctamente, false si no; se
+     * completa con {@link NameAlreadyInUse} o {@link EmptyObject} igual que la
+     * version sincrona
+     * @see Database#writeRecipe(Recipe)
+     */
+    public CompletableFuture<Boolean> writeRecipe(Recipe recipe) {
+        return submit(() -> {
+            try {
+                return database.writeRecipe(recipe);
+            } catch (NameAlreadyInUse | EmptyObject e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Elimina una receta
+     *
+     * @param name Nombre de la receta
+     * @return Futuro con true si se elimino, false si no se encontro
+     * @see Database#deleteRecipe(String)
+     */
+    public CompletableFuture<Boolean> deleteRecipe(String name) {
+        return submit(() -> database.deleteRecipe(name));
+    }
+
+    /**
+     * Busca recetas por texto
+     *
+     * @param query Texto a buscar
+     * @param limit Cantidad maxima de resultados
+     * @return Futuro con los nombres de las recetas encontradas, de mayor a menor relevancia
+     * @see Database#searchText(String, int)
+     */
+    public CompletableFuture<ArrayList<String>> searchText(String query, int limit) {
+        return submit(() -> database.searchText(query, limit));
+    }
+
+    /**
+     * Busca recetas por sus ingredientes
+     *
+     * @param all Ingredientes que deben estar todos en la receta
+     * @param any Ingredientes de los que debe estar al menos uno
+     * @param none Ingredientes que no deben estar en la receta
+     * @return Futuro con los nombres de las recetas encontradas
+     * @see Database#findRecipes(Collection, Collection, Collection)
+     */
+    public CompletableFuture<ArrayList<String>> findRecipes(Collection<String> all, Collection<String> any, Collection<String> none) {
+        return submit(() -> database.findRecipes(all, any, none));
+    }
+
+    /**
+     * Sincroniza con el disco las recetas escritas
+     *
+     * @return Futuro con true si se sincronizo correctamente, false si no
+     * @see Database#sync()
+     */
+    public CompletableFuture<Boolean> sync() {
+        return submit(database::sync);
+    }
+
+    /**
+     * Lee un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @return Futuro con el nombre, tipo y unidad del ingrediente, o con null si no existe
+     * @see Database#readIngredient(String)
+     */
+    public CompletableFuture<String[]> readIngredient(String name) {
+        return submit(() -> database.readIngredient(name));
+    }
+
+    /**
+     * Agrega o reemplaza un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @param type Tipo del ingrediente
+     * @param unit Unidad del ingrediente
+     * @return Futuro con true cuando el ingrediente esta sincronizado con el disco, false si no se pudo escribir
+     * @see Database#addIngredient(String, String, String)
+     */
+    public CompletableFuture<Boolean> addIngredient(String name, String type, String unit) {
+        return submit(() -> database.addIngredient(name, type, unit));
+    }
+
+    /**
+     * Elimina un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @return Futuro con true si se elimino, false si no se encontro
+     * @see Database#deleteIngredient(String)
+     */
+    public CompletableFuture<Boolean> deleteIngredient(String name) {
+        return submit(() -> database.deleteIngredient(name));
+    }
+
+    /**
+     * Guarda el mapa de datos de ingredientes
+     *
+     * @return Futuro con true si se guardo correctamente, false si no
+     * @see Database#saveDataMap()
+     */
+    public CompletableFuture<Boolean> saveDataMap() {
+        return submit(database::saveDataMap);
+    }
+
+    /**
+     * Devuelve la cantidad de operaciones que todavia se pueden encolar
+     *
+     * @return Operaciones disponibles hasta alcanzar el limite
+     */
+    public int availablePermits() {
+        return pending.availablePermits();
+    }
+
+    /**
+     * Deja de aceptar operaciones y espera a que terminen las pendientes
+     *
+     * <p>
+     * No cierra la base de datos, que puede seguir usandose de forma
+     * sincrona.</p>
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        if (!pending.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending database operations"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(operation, executor).whenComplete((result, error) -> pending.release());
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+}
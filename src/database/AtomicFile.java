@@ -0,0 +1,137 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Escritura atomica de los archivos que se reescriben enteros
+ *
+ * <p>
+ * El contenido se escribe en un archivo temporal junto al destino, seguido
+ * del CRC32 del contenido y del numero magico {@link #TRAILER}. El temporal
+ * se sincroniza con el disco, se renombra de forma atomica sobre el destino y
+ * por ultimo se sincroniza el directorio para que el cambio de nombre
+ * tambien sea durable. Tras una caida el destino tiene el contenido anterior
+ * completo o el nuevo completo, nunca uno a medias.</p>
+ *
+ * <p>
+ * {@link #open(File)} comprueba el CRC antes de devolver el contenido, de
+ * forma que un archivo dañado se detecta al abrirlo y no a mitad de la
+ * lectura.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class AtomicFile {
+
+    /**
+     * Numero magico con el que terminan los archivos escritos con esta clase ("PCK1")
+     */
+    private static final int TRAILER = 0x50434B31;
+
+    private static final int TRAILER_SIZE = 8;
+
+    /**
+     * Contenido a escribir
+     */
+    @FunctionalInterface
+    interface Content {
+
+        /**
+         * Escribe el contenido
+         *
+         * @param out Flujo de salida del archivo temporal
+         * @throws IOException Si ocurre un error de escritura
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private AtomicFile() {
+    }
+
+    /**
+     * Reemplaza de forma atomica el contenido de un archivo
+     *
+     * @param target Archivo de destino
+     * @param content Contenido a escribir
+     * @throws IOException Si ocurre un error de escritura; el destino queda como estaba
+     */
+    static void write(File target, Content content) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(tmp)) {
+                BufferedOutputStream buffered = new BufferedOutputStream(file, 1 << 16);
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+                content.write(out);
+                out.flush();
+                DataOutputStream trailer = new DataOutputStream(buffered);
+                trailer.writeInt((int) crc.getValue());
+                trailer.writeInt(TRAILER);
+                trailer.flush();
+                file.getFD().sync();
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmp.delete();
+        }
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Lee un archivo escrito con {@link #write(File, Content)} comprobando su CRC
+     *
+     * @param file Archivo a leer
+     * @return Flujo con el contenido, sin el CRC ni el numero magico final
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si el archivo esta incompleto, dañado o no fue escrito con esta clase
+     */
+    static DataInputStream open(File file) throws IOException, CorruptedFile {
+        byte[] data = Files.readAllBytes(file.toPath());
+        int length = data.length - TRAILER_SIZE;
+        if (length < 0) {
+            throw new CorruptedFile();
+        }
+        ByteBuffer trailer = ByteBuffer.wrap(data, length, TRAILER_SIZE);
+        int expected = trailer.getInt();
+        if (trailer.getInt() != TRAILER) {
+            throw new CorruptedFile();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != expected) {
+            throw new CorruptedFile();
+        }
+        return new DataInputStream(new ByteArrayInputStream(data, 0, length));
+    }
+
+    /**
+     * Sincroniza un directorio con el disco, para que las altas, bajas y cambios de nombre de sus archivos sean durables
+     *
+     * <p>
+     * En los sistemas que no permiten abrir un directorio, como Windows, no
+     * hace nada.</p>
+     *
+     * @param dir Directorio a sincronizar
+     */
+    static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // El sistema no permite sincronizar directorios
+        }
+    }
+
+}
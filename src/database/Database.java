@@ -4,112 +4,608 @@ import exceptions.BadFileType;
 import exceptions.CorruptedFile;
 import exceptions.EmptyObject;
 import exceptions.NameAlreadyInUse;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import objects.DataMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import objects.IngredientTable;
 import objects.Recipe;
+import objects.ShoppingList;
+import objects.TimeField;
 
 /**
  * Instancia una clase que permite el acceso a la base de datos de recetas e ingredientes
  * 
+ * <p> Una misma instancia puede usarse desde varios hilos. Las lecturas de recetas no toman bloqueos salvo
+ * para consultar el indice, las escrituras y borrados de una misma receta se serializan por nombre,
+ * y los ingredientes se protegen con un bloqueo de lectura/escritura cuyas secciones criticas
+ * no incluyen mas que accesos a memoria o una escritura al final del archivo.</p>
+ * 
+ * <p> Todos los archivos se guardan en el directorio de la base de datos, "db/" por defecto. Las recetas y los
+ * ingredientes se guardan con un {@link StorageEngine}, que se elige al crear la instancia sin que cambie el resto
+ * de la API. Los ingredientes se guardan en el {@link IngredientStore} del motor; con los motores que escriben en
+ * disco es el registro "ingredients.db" del directorio, al que se refiere el resto de la documentacion.</p>
+ * 
  * @author Grupo C [Backend]
  */
 @SuppressWarnings("CallToPrintStackTrace")
 public final class Database {
-    private static ObjectInputStream oif;
-    private static ObjectOutputStream oof;
-    private static FileOutputStream fos;
-    private static RandomAccessFile raf;
 
-    private ArrayList<Recipe> recipes;
-    private ArrayList<File> files;
-    private ArrayList<String> ingredients;
-    private DataMap dataMap;
+    /**
+     * Cantidad minima de bytes muertos en los segmentos de recetas para lanzar una compactacion
+     */
+    private static final long RECIPE_COMPACTION_MIN_DEAD_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Cantidad de cambios de ingredientes entre dos puntos de control del mapa de datos
+     */
+    private static final int CHECKPOINT_INTERVAL = 1024;
+
+    /**
+     * Cantidad de ingredientes que se escriben juntos en una importacion masiva
+     */
+    private static final int IMPORT_BATCH = 8192;
+
+    /**
+     * Peso maximo por defecto, en bytes, de las recetas guardadas en la cache
+     */
+    public static final long DEFAULT_CACHE_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * Politica de la cache de recetas leidas
+     */
+    public enum CachePolicy {
+        /**
+         * Expulsa la receta usada hace mas tiempo
+         */
+        LRU,
+        /**
+         * W-TinyLFU: las recetas nuevas entran en una ventana LRU pequeña, y al salir de ella solo pasan a la parte
+         * principal si se han pedido mas veces que las que tendrian que expulsar
+         */
+        TINY_LFU
+    }
+
+    /**
+     * Estadisticas de la cache de recetas leidas
+     *
+     * @param hits Lecturas servidas desde la cache
+     * @param misses Lecturas que no estaban en la cache
+     * @param evictions Recetas expulsadas o no admitidas por falta de espacio
+     * @param size Cantidad de recetas en la cache
+     * @param weight Peso estimado, en bytes, de las recetas en la cache
+     */
+    public record CacheStats(long hits, long misses, long evictions, int size, long weight) {
+    }
+
+    private final RecipeCache recipes;
+    private final IngredientTable ingredientTable = new IngredientTable();
+    private final StripedLock recipeLocks;
+    private final ReentrantReadWriteLock ingredientLock;
+    private final File dir;
+    private final StorageEngine engine;
+    private final IngredientIndex ingredientIndex;
+    private final TextIndex textIndex;
+    private final TimeIndex timeIndex;
+    private final PrefixIndex recipeNames;
+    private final PrefixIndex ingredientNames;
+    private final IngredientStore ingredientStore;
+    private final ExecutorService maintenance;
+    private boolean compactionPending;
+    private final AtomicBoolean recipeCompactionPending = new AtomicBoolean();
+    private boolean checkpointPending;
+    private int uncheckpointed;
+    private final StorageMetrics metrics = new StorageMetrics(this);
+    private volatile Recorder recorder = Recorder.NOOP;
+    private ObjectName metricsName;
+    private DirectoryWatcher watcher;
+    private final HashMap<String, WatchedFile> watchedFiles = new HashMap<>();
+
+    /**
+     * Archivo .dat importado desde el directorio vigilado
+     *
+     * @param modified Fecha de modificacion del archivo al importarlo
+     * @param length Tamaño del archivo al importarlo
+     * @param recipe Nombre de la receta que contenia
+     */
+    private record WatchedFile(long modified, long length, String recipe) {
+    }
 
 	/**
 	 * Constructor de la clase Database
+	 * <p> Solo carga los indices de recetas e ingredientes; las recetas se leen la primera vez que se piden.</p>
+	 * @throws UncheckedIOException Lanzado si no se pueden abrir los segmentos de recetas o el archivo "db/ingredients.db"
 	 */
     public Database() {
-		dataMap = loadDataMap();
-        populateArrayLists();
-		if (dataMap == null) {
-			dataMap = new DataMap("datamap");
+		this(false);
+	}
+
+	/**
+	 * Constructor de la clase Database
+	 * <p> Utiliza una cache LRU de {@value #DEFAULT_CACHE_WEIGHT} bytes para las recetas leidas.</p>
+	 * @param warmUp true para leer todas las recetas en paralelo antes de terminar el constructor, false para leerlas bajo demanda
+	 * @throws UncheckedIOException Lanzado si no se pueden abrir los segmentos de recetas o el archivo "db/ingredients.db"
+	 * @see #warmUp()
+	 */
+    public Database(boolean warmUp) {
+		this(warmUp, DEFAULT_CACHE_WEIGHT, CachePolicy.LRU);
+	}
+
+	/**
+	 * Constructor de la clase Database
+	 * <p> Las recetas leidas se guardan en una cache limitada por su peso estimado en memoria; las que no caben
+	 * se vuelven a leer de los segmentos cuando se piden.</p>
+	 * @param warmUp true para leer todas las recetas en paralelo antes de terminar el constructor, false para leerlas bajo demanda
+	 * @param cacheWeight Peso maximo estimado, en bytes, de las recetas guardadas en la cache
+	 * @param policy Politica de la cache de recetas
+	 * @throws UncheckedIOException Lanzado si no se pueden abrir los segmentos de recetas o el archivo "db/ingredients.db"
+	 * @see #getCacheStats()
+	 */
+    public Database(boolean warmUp, long cacheWeight, CachePolicy policy) {
+		this(new File("db/"), StorageEngine.SEGMENTS, warmUp, cacheWeight, policy);
+	}
+
+	/**
+	 * Constructor de la clase Database
+	 * <p> Solo carga los indices de recetas e ingredientes; las recetas se leen la primera vez que se piden.
+	 * Utiliza una cache LRU de {@value #DEFAULT_CACHE_WEIGHT} bytes para las recetas leidas.</p>
+	 * @param dir Directorio de la base de datos; se crea si no existe
+	 * @param engine Motor de almacenamiento de las recetas, por ejemplo {@link StorageEngine#SEGMENTS}
+	 * @throws UncheckedIOException Lanzado si no se puede abrir el motor de almacenamiento
+	 */
+    public Database(File dir, StorageEngine.Factory engine) {
+		this(dir, engine, false, DEFAULT_CACHE_WEIGHT, CachePolicy.LRU);
+	}
+
+	/**
+	 * Constructor de la clase Database
+	 * <p> Las recetas se guardan con el motor de almacenamiento elegido y el resto de archivos en "dir".
+	 * Varias instancias pueden usar directorios distintos a la vez, pero no el mismo.</p>
+	 * @param dir Directorio de la base de datos; se crea si no existe
+	 * @param engine Motor de almacenamiento de las recetas, por ejemplo {@link StorageEngine#SEGMENTS}
+	 * @param warmUp true para leer todas las recetas en paralelo antes de terminar el constructor, false para leerlas bajo demanda
+	 * @param cacheWeight Peso maximo estimado, en bytes, de las recetas guardadas en la cache
+	 * @param policy Politica de la cache de recetas
+	 * @throws UncheckedIOException Lanzado si no se puede abrir el motor de almacenamiento
+	 * @see StorageEngine
+	 */
+    public Database(File dir, StorageEngine.Factory engine, boolean warmUp, long cacheWeight, CachePolicy policy) {
+		long started = System.nanoTime();
+		this.dir = dir;
+		recipes = new RecipeCache(cacheWeight, policy);
+		recipeLocks = new StripedLock(64);
+		ingredientLock = new ReentrantReadWriteLock();
+		try {
+			Files.createDirectories(dir.toPath());
+			this.engine = engine.open(dir, ingredientTable);
+			ingredientStore = this.engine.ingredients();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		ingredientIndex = new IngredientIndex(this.engine);
+		textIndex = new TextIndex(this.engine, new File(dir, "text.idx"));
+		timeIndex = new TimeIndex(this.engine);
+		maintenance = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "database-maintenance");
+			thread.setDaemon(true);
+			return thread;
+		});
+		ingredientNames = new PrefixIndex(ingredientStore.names());
+		recipeNames = new PrefixIndex(this.engine.names());
+		loadWatchedFiles();
+		migrateLegacyRecipes();
+		if (warmUp) {
+			warmUp();
 		}
+		metrics.setStartupNanos(System.nanoTime() - started);
     }
 
-    // DOC: Este método se encarga de popular la lista de recetas "recipes" y la lista de archivos "files" a partir de los archivos en el directorio "db/".
-    // DOC: Utiliza el método "lsReader()" para obtener la lista de archivos y luego intenta leer cada archivo como una receta.
-    // DOC: Si se encuentra un archivo que no es del tipo correcto o está dañado, se lanza una excepción correspondiente.
+	/**
+	 * Método que se encarga de leer todas las recetas en paralelo.
+	 * 
+	 * <p> Reparte la lectura de las recetas que todavia no se han leido entre los nucleos disponibles
+	 * utilizando el pool de fork-join comun, hasta llenar la cache de recetas. Las recetas dañadas se omiten.</p>
+	 */
+    public void warmUp() {
+        engine.names().parallelStream().forEach(this::recipe);
+    }
+
+	/**
+	 * Método que se encarga de obtener una receta de la cache, o leyendola de los segmentos si no esta en ella.
+	 * @param name Nombre de la receta
+	 * @return Receta, o null si no existe o su registro esta dañado
+	 */
+    private Recipe recipe(String name) {
+        long start = recorder.start();
+        try {
+            Recipe recipe = recipes.get(name);
+            if (recipe != null) {
+                return recipe;
+            }
+            try {
+                recipe = engine.get(name);
+            } catch (IOException | CorruptedFile e) {
+                e.printStackTrace();
+                recorder.error(StorageOperation.READ_RECIPE);
+            }
+            if (recipe == null) {
+                return null;
+            }
+            Recipe previous = recipes.putIfAbsent(name, recipe);
+            if (previous != null) {
+                return previous;
+            }
+            // Si la receta se elimino mientras se leia, no debe quedar entre las recetas leidas
+            if (!engine.contains(name)) {
+                recipes.invalidate(name, recipe);
+            }
+            return RecipeCache.share(recipe);
+        } finally {
+            recorder.stop(StorageOperation.READ_RECIPE, start);
+        }
+    }
 
 	/**
-	 * Método que se encarga de popular la lista de recetas y la lista de archivos.
+	 * Método que se encarga de migrar las recetas guardadas en archivos .dat individuales a los segmentos de recetas.
 	 * 
-	 * <p> Este método se encarga de popular la lista de recetas "recipes" y la lista de archivos "files" a partir de los archivos en el directorio "db/".
-	 * Utiliza el método "lsReader()" para obtener la lista de archivos y luego intenta leer cada archivo como una receta.
-	 * Si se encuentra un archivo que no es del tipo correcto o está dañado, se lanza una excepción correspondiente.</p>
-	 */
-    private void populateArrayLists() {
-        files = lsReader();
-        recipes = new ArrayList<>();
-		
-        for (File i : files) {
+	 * <p> Solo se migran con el motor {@link StorageEngine#SEGMENTS}: con {@link StorageEngine#FILES} los archivos .dat
+	 * son las propias recetas, y con los demas motores se perderian al cerrar la base de datos.
+	 * La migracion se hace una unica vez por directorio, la primera vez que se abre con los segmentos de recetas,
+	 * y al terminar se crea el marcador "legacy.done"; a partir de entonces los archivos .dat que aparezcan en el
+	 * directorio solo se importan al vigilarlo, ver {@link #startWatching(long)}.
+	 * Utiliza el método "lsReader()" para obtener la lista de archivos .dat que queden en el directorio de versiones anteriores.
+	 * Los archivos importados al vigilar el directorio no se migran.
+	 * Los archivos se leen en paralelo y cada receta que no exista todavia en los segmentos se escribe en ellos.
+	 * Ningun archivo .dat se elimina ni se mueve, ni siquiera los dañados, porque el directorio puede estar vigilado
+	 * por otras instancias que los comparten.</p>
+	 */
+    private void migrateLegacyRecipes() {
+        if (!(engine instanceof RecipeStore)) {
+            return;
+        }
+        File marker = new File(dir, "legacy.done");
+        if (marker.exists()) {
+            return;
+        }
+        ArrayList<File> legacy = lsReader();
+        synchronized (watchedFiles) {
+            legacy.removeIf(file -> watchedFiles.containsKey(file.getName()));
+        }
+        Recipe[] read = legacy.parallelStream().map(i -> {
             try {
-                recipes.add(readRecipe(i));
+                return readRecipe(i);
             } catch (BadFileType | CorruptedFile e) {
+                return null;
+            }
+        }).toArray(Recipe[]::new);
+        for (int i = 0; i < read.length; i++) {
+            try {
+                if (read[i] != null && !engine.contains(read[i].getName())) {
+                    engine.put(read[i]);
+                    indexRecipe(read[i]);
+                }
+            } catch (IOException | IllegalArgumentException e) {
                 e.printStackTrace();
             }
         }
+        try {
+            engine.sync();
+            // Si algo falla antes, la migracion se repite al volver a abrir sin duplicar las recetas ya migradas
+            AtomicFile.write(marker, out -> {
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-		if (ingredients == null) {
-			ingredients = new ArrayList<>();
-		}
-		for (String i : dataMap.getData()) {
-			ingredients.add(i);
-		}
+	/**
+	 * Método que se encarga de empezar a vigilar el directorio de la base de datos para importar las recetas que se dejen en él.
+	 * @param quietMillis Milisegundos sin cambios en el directorio que se esperan antes de importar
+	 * @return true si se empezo a vigilar o ya se estaba vigilando, false si el sistema no permite vigilar el directorio
+	 * <p> Cada archivo .dat que otro proceso cree o modifique en el directorio se lee con {@link #readRecipe(File)} y se escribe
+	 * con el motor de almacenamiento, reemplazando la receta con el mismo nombre si existia, y se actualizan la cache y
+	 * los indices secundarios. Si se elimina un archivo importado, se elimina tambien su receta.
+	 * Los cambios se agrupan hasta que pasan "quietMillis" milisegundos sin cambios nuevos, para no leer un archivo
+	 * a medio escribir ni varias veces durante una rafaga de escrituras.
+	 * Los archivos se dejan en el directorio, de forma que varias instancias pueden compartirlo. La fecha de
+	 * modificacion y el tamaño de cada archivo importado se guardan en "watched.idx", y un archivo solo se vuelve a leer
+	 * si cambian. El directorio completo se lista al empezar a vigilarlo, para importar lo que haya cambiado mientras
+	 * tanto, y si el sistema pierde eventos; el resto del tiempo solo se leen los archivos que cambian.
+	 * Los archivos que no se pueden leer se dejan en su lugar y se vuelven a intentar cuando cambian de nuevo.</p>
+	 * <p> Con {@link StorageEngine#FILES} los archivos "nombre.dat" son las propias recetas del motor: en lugar de
+	 * volver a escribirlos, se registran en el motor y se actualizan la cache y los indices, y si otro proceso los
+	 * elimina, la receta se quita del motor, de la cache y de los indices.
+	 * Las escrituras de la propia base de datos tambien se notifican y solo provocan una lectura mas del archivo.</p>
+	 */
+    public synchronized boolean startWatching(long quietMillis) {
+        if (watcher != null) {
+            return true;
+        }
+        try {
+            watcher = new DirectoryWatcher(dir, quietMillis, new DirectoryWatcher.Listener() {
+                @Override
+                public void changed(ArrayList<File> changed, ArrayList<File> removed) {
+                    importRecipeFiles(changed, removed);
+                }
+
+                @Override
+                public void lost() {
+                    rescanRecipeFiles();
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        // Despues de crear el vigilante, para no perder los cambios que lleguen durante el listado
+        rescanRecipeFiles();
+        return true;
     }
 
 	/**
-	 * Método que se encarga de escribir una clase tipo "Recipe" en un archivo .dat
-	 * @param recipe
-	 * @return true si se escribio correctamente, false si no
-	 * @throws NameAlreadyInUse Lanzado si el nombre de la receta ya existe en un archivo
-	 * @throws EmptyObject Lanzado si el objeto receta es nulo
-	 * 
-	 * <p> Este método se encarga de escribir una clase tipo "Recipe" en un archivo .dat
-	 * Primero verifica si el objeto "recipe" es nulo y lanza una excepción si lo es.
-	 * Luego verifica si ya existe un archivo con el mismo nombre y lanza una excepción si es así.
-	 * Si no hay problemas, crea un nuevo archivo .dat y escribe el objeto "recipe" en él.
-	 * Finalmente, cierra los flujos de salida.
-	 * Este método selecciona el nombre del archivo utilizando el nombre de la receta y se le agrega la extensión .dat</p>
+	 * Método que se encarga de dejar de vigilar el directorio de la base de datos.
+	 * <p> Espera a que termine la importacion en curso, si la hay.</p>
+	 * @see #startWatching(long)
 	 */
-    public boolean writeRecipe(Recipe recipe) throws NameAlreadyInUse, EmptyObject {
-        if (recipe == null) {
-            throw new EmptyObject();
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
         }
-        for (File i : files) {
-            if (i.getName().equals(recipe.getName() + ".dat")) {
-                throw new NameAlreadyInUse();
+    }
+
+	/**
+	 * Método que se encarga de listar el directorio e importar los archivos .dat que hayan cambiado o desaparecido.
+	 */
+    private void rescanRecipeFiles() {
+        ArrayList<File> changed = lsReader();
+        ArrayList<File> removed = new ArrayList<>();
+        synchronized (watchedFiles) {
+            HashSet<String> present = new HashSet<>();
+            for (File file : changed) {
+                present.add(file.getName());
+            }
+            for (String name : watchedFiles.keySet()) {
+                if (!present.contains(name)) {
+                    removed.add(new File(dir, name));
+                }
             }
+        }
+        importRecipeFiles(changed, removed);
+    }
 
+	/**
+	 * Método que se encarga de importar recetas guardadas en archivos .dat, reemplazando las que ya existan,
+	 * y de eliminar las de los archivos importados que ya no existen.
+	 * @param changed Archivos .dat creados o modificados
+	 * @param removed Archivos .dat eliminados
+	 */
+    private void importRecipeFiles(ArrayList<File> changed, ArrayList<File> removed) {
+        synchronized (watchedFiles) {
+            boolean dirty = false;
+            for (File file : removed) {
+                WatchedFile old = watchedFiles.remove(file.getName());
+                if (old != null) {
+                    dirty = true;
+                    dropWatchedRecipe(old.recipe());
+                }
+            }
+            for (File file : changed) {
+                long modified = file.lastModified();
+                long length = file.length();
+                WatchedFile old = watchedFiles.get(file.getName());
+                if (old != null && old.modified() == modified && old.length() == length && engine.contains(old.recipe())) {
+                    continue;
+                }
+                try {
+                    Recipe recipe = readRecipe(file);
+                    if (engine instanceof FileEngine files && files.owns(file, recipe.getName())) {
+                        adoptRecipe(files, recipe);
+                    } else {
+                        replaceRecipe(recipe);
+                    }
+                    watchedFiles.put(file.getName(), new WatchedFile(modified, length, recipe.getName()));
+                    dirty = true;
+                    if (old != null && !old.recipe().equals(recipe.getName())) {
+                        dropWatchedRecipe(old.recipe());
+                    }
+                } catch (BadFileType | CorruptedFile | IOException | IllegalArgumentException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (dirty && sync()) {
+                saveWatchedFiles();
+            }
         }
+    }
+
+	/**
+	 * Método que se encarga de registrar una receta que otro proceso ha escrito como archivo del motor {@link StorageEngine#FILES}.
+	 * <p> El archivo ya es la receta guardada, por lo que solo se actualizan el motor, la cache y los indices secundarios.
+	 * Si el archivo vuelve a cambiar mientras tanto, el cambio llega como un evento nuevo y se vuelve a leer.</p>
+	 * @param files Motor de almacenamiento
+	 * @param recipe Receta leida del archivo
+	 */
+    private void adoptRecipe(FileEngine files, Recipe recipe) {
+        ReentrantLock lock = recipeLocks.get(recipe.getName());
+        lock.lock();
         try {
-            fos = new FileOutputStream("db/" + recipe.getName() + ".dat");
-            oof = new ObjectOutputStream(fos);
-            oof.writeObject(recipe);
-            oof.close();
-            fos.close();
-            return true;
+            files.adopt(recipe.getName());
+            recipes.put(recipe.getName(), recipe);
+            indexRecipe(recipe);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+	/**
+	 * Método que se encarga de eliminar la receta de un archivo importado que ya no la contiene,
+	 * salvo que otro archivo importado contenga una receta con el mismo nombre.
+	 * @param name Nombre de la receta
+	 */
+    private void dropWatchedRecipe(String name) {
+        for (WatchedFile file : watchedFiles.values()) {
+            if (file.recipe().equals(name)) {
+                return;
+            }
+        }
+        deleteRecipe(name);
+    }
+
+	/**
+	 * Método que se encarga de cargar la lista de archivos importados desde "watched.idx".
+	 * <p> Si el archivo esta dañado se aparta en "quarantine/" y todos los archivos se vuelven a importar
+	 * la proxima vez que se vigile el directorio.</p>
+	 */
+    private void loadWatchedFiles() {
+        File file = new File(dir, "watched.idx");
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = AtomicFile.open(file)) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                watchedFiles.put(in.readUTF(), new WatchedFile(in.readLong(), in.readLong(), in.readUTF()));
+            }
+        } catch (CorruptedFile | IOException e) {
+            e.printStackTrace();
+            watchedFiles.clear();
+            try {
+                Quarantine.move(dir, file);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+	/**
+	 * Método que se encarga de guardar la lista de archivos importados en "watched.idx".
+	 */
+    private void saveWatchedFiles() {
+        try {
+            AtomicFile.write(new File(dir, "watched.idx"), out -> {
+                out.writeInt(watchedFiles.size());
+                for (Map.Entry<String, WatchedFile> e : watchedFiles.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().modified());
+                    out.writeLong(e.getValue().length());
+                    out.writeUTF(e.getValue().recipe());
+                }
+            });
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return false;
+    }
+
+	/**
+	 * Método que se encarga de escribir una receta, reemplazando la que tenga el mismo nombre.
+	 * <p> La receta se escribe sin borrar antes la anterior, por lo que no hay ningun momento en que no exista.
+	 * Los indices secundarios sustituyen la entrada anterior al añadir la nueva.</p>
+	 * @param recipe Receta a escribir
+	 */
+    private void replaceRecipe(Recipe recipe) throws IOException {
+        ReentrantLock lock = recipeLocks.get(recipe.getName());
+        lock.lock();
+        try {
+            engine.put(recipe);
+            recipes.put(recipe.getName(), recipe);
+            indexRecipe(recipe);
+        } finally {
+            lock.unlock();
+        }
+        scheduleRecipeCompaction();
+    }
+
+	/**
+	 * Método que se encarga de escribir una clase tipo "Recipe" en los segmentos de recetas
+	 * @param recipe
+	 * @return true si se escribio correctamente, false si no
+	 * @throws NameAlreadyInUse Lanzado si el nombre de la receta ya existe
+	 * @throws EmptyObject Lanzado si el objeto receta es nulo
+	 * @throws IllegalArgumentException Lanzado si el motor de almacenamiento no puede guardar una receta con ese nombre,
+	 * por ejemplo si ocupa mas de 65535 bytes en UTF-8 con el motor de segmentos
+	 * 
+	 * <p> Este método se encarga de escribir una clase tipo "Recipe" en los segmentos de recetas.
+	 * Primero verifica si el objeto "recipe" es nulo y lanza una excepción si lo es.
+	 * Luego verifica si ya existe una receta con el mismo nombre y lanza una excepción si es así.
+	 * Si no hay problemas, escribe la receta al final del segmento activo y la registra en el indice de recetas.
+	 * La comprobacion y la escritura se hacen con el bloqueo del nombre de la receta, de forma que dos hilos
+	 * no pueden escribir la misma receta a la vez.
+	 * La sincronizacion con el disco se hace por lotes; ver {@link #sync()}.</p>
+	 */
+    public boolean writeRecipe(Recipe recipe) throws NameAlreadyInUse, EmptyObject {
+        long start = recorder.start();
+        try {
+            if (recipe == null) {
+                throw new EmptyObject();
+            }
+            ReentrantLock lock = recipeLocks.get(recipe.getName());
+            lock.lock();
+            try {
+                if (engine.contains(recipe.getName())) {
+                    throw new NameAlreadyInUse();
+                }
+                engine.put(recipe);
+                recipes.put(recipe.getName(), recipe);
+                indexRecipe(recipe);
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                recorder.error(StorageOperation.WRITE_RECIPE);
+            } finally {
+                lock.unlock();
+            }
+            return false;
+        } finally {
+            recorder.stop(StorageOperation.WRITE_RECIPE, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de registrar una receta escrita en los indices secundarios.
+	 * @param recipe Receta escrita
+	 */
+    private void indexRecipe(Recipe recipe) {
+        ingredientIndex.add(recipe);
+        textIndex.add(recipe);
+        timeIndex.add(recipe);
+        recipeNames.add(recipe.getName());
+    }
+
+	/**
+	 * Método que se encarga de quitar una receta eliminada de los indices secundarios.
+	 * @param name Nombre de la receta eliminada
+	 */
+    private void unindexRecipe(String name) {
+        ingredientIndex.remove(name);
+        textIndex.remove(name);
+        timeIndex.remove(name);
+        recipeNames.remove(name);
     }
 
 	/**
@@ -126,18 +622,11 @@ public final class Database {
 	 */
     public Recipe readRecipe(File file) throws BadFileType, CorruptedFile {
         if (file.getName().endsWith(".dat")) {
-            try {
-                oif = new ObjectInputStream(new FileInputStream(file));
+            try (ObjectInputStream oif = new ObjectInputStream(new FileInputStream(file))) {
                 return (Recipe) oif.readObject();
             } catch (IOException | ClassNotFoundException e) {
                 e.printStackTrace();
                 throw new CorruptedFile();
-            } finally {
-                try {
-                    oif.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
             }
         } else {
             throw new BadFileType();
@@ -145,61 +634,221 @@ public final class Database {
     }
 
 	/**
-	 * Método que se encarga de buscar un archivo .dat correspondiente a una receta.
+	 * Método que se encarga de buscar una receta por su nombre.
 	 * @param name Nombre de la receta
-	 * @return Archivo de tipo File que contiene la receta
-	 * <p> Este método se encarga de buscar un archivo .dat correspondiente a una receta.
-	 * Itera a través de la lista de archivos "files" y si encuentra un archivo con el mismo nombre que la receta, lo devuelve.
-	 * Si no encuentra el archivo, devuelve null.</p>
-	 */
-    public File searchRecipe(String name) {
-        for (File i : files) {
-            if (i.getName().equals(name + ".dat")) {
-                return i;
-            }
+	 * @return Objeto de tipo Recipe, o null si no existe o su registro esta dañado
+	 * <p> Este método se encarga de buscar una receta en el indice de recetas y leerla de su segmento,
+	 * salvo que ya se hubiera leido antes.
+	 * Si no encuentra la receta, devuelve null.</p>
+	 */
+    public Recipe searchRecipe(String name) {
+        return recipe(name);
+    }
+
+	/**
+	 * Método que se encarga de buscar recetas por texto.
+	 * @param query Texto a buscar en el nombre, la descripcion y las instrucciones de las recetas
+	 * @param limit Cantidad maxima de resultados
+	 * @return Lista con los nombres de las recetas encontradas, de mayor a menor relevancia
+	 * <p> Este método busca las palabras de la consulta sin distinguir mayusculas ni acentos, en un indice de texto
+	 * completo que se mantiene al escribir y eliminar recetas. Las palabras que no aparecen tal cual se buscan como prefijo
+	 * o con alguna letra distinta, y la ultima palabra siempre se busca tambien como prefijo.
+	 * Los resultados se ordenan con BM25, contando mas las palabras del nombre de la receta.
+	 * El indice se guarda en "text.idx" al cerrar la base de datos; si no existe o esta desactualizado,
+	 * la primera busqueda lo reconstruye leyendo todas las recetas.</p>
+	 */
+    public ArrayList<String> searchText(String query, int limit) {
+        long start = recorder.start();
+        try {
+            return textIndex.search(query, limit);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de buscar recetas por tiempo.
+	 * @param filter Campo de tiempo por el que se filtra
+	 * @param min Tiempo minimo, incluido
+	 * @param max Tiempo maximo, incluido
+	 * @param order Campo de tiempo por el que se ordenan los resultados
+	 * @param descending true para ordenar de mayor a menor, false de menor a mayor
+	 * @param offset Cantidad de recetas que se saltan, para paginar
+	 * @param limit Cantidad maxima de resultados
+	 * @return Lista con los nombres de las recetas encontradas, en orden
+	 * @throws IllegalArgumentException Lanzado si offset es negativo
+	 * <p> Este método responde consultas como "recetas de menos de 30 minutos ordenadas por tiempo de coccion" con
+	 * {@code findRecipesByTime(TimeField.TOTAL_TIME, 0, 29, TimeField.COOK_TIME, false, 0, 20)}.
+	 * Utiliza arreglos ordenados por cada campo de tiempo, por lo que no lee ninguna receta.
+	 * Si se filtra y ordena por el mismo campo, cada pagina cuesta O(log n + k).
+	 * La primera consulta construye el indice leyendo todas las recetas.</p>
+	 */
+    public ArrayList<String> findRecipesByTime(TimeField filter, int min, int max, TimeField order, boolean descending, int offset, int limit) {
+        long start = recorder.start();
+        try {
+            return timeIndex.query(filter, min, max, order, descending, offset, limit);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de buscar las recetas con un tiempo dentro de un rango, ordenadas de menor a mayor por ese tiempo.
+	 * @param field Campo de tiempo
+	 * @param min Tiempo minimo, incluido
+	 * @param max Tiempo maximo, incluido
+	 * @param offset Cantidad de recetas que se saltan, para paginar
+	 * @param limit Cantidad maxima de resultados
+	 * @return Lista con los nombres de las recetas encontradas, en orden
+	 * @throws IllegalArgumentException Lanzado si offset es negativo
+	 * @see #findRecipesByTime(TimeField, int, int, TimeField, boolean, int, int)
+	 */
+    public ArrayList<String> findRecipesByTime(TimeField field, int min, int max, int offset, int limit) {
+        long start = recorder.start();
+        try {
+            return timeIndex.query(field, min, max, field, false, offset, limit);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
         }
-        return null;
     }
 
 	/**
-	 * Método que se encarga de eliminar un archivo .dat correspondiente a una receta.
+	 * Método que se encarga de buscar recetas por sus ingredientes.
+	 * @param all Ingredientes que deben estar todos en la receta
+	 * @param any Ingredientes de los que debe estar al menos uno; si esta vacio no se tiene en cuenta
+	 * @param none Ingredientes que no deben estar en la receta
+	 * @return Lista con los nombres de las recetas encontradas
+	 * <p> Este método responde consultas como "tiene ajo y tomate pero no leche" con
+	 * {@code findRecipes(List.of("ajo", "tomate"), List.of(), List.of("leche"))}.
+	 * Utiliza un indice invertido de ingredientes a recetas, por lo que no lee ninguna receta.
+	 * Los nombres de los ingredientes no distinguen mayusculas.
+	 * La primera consulta construye el indice leyendo todas las recetas; las siguientes solo combinan conjuntos.</p>
+	 */
+    public ArrayList<String> findRecipes(Collection<String> all, Collection<String> any, Collection<String> none) {
+        long start = recorder.start();
+        try {
+            return ingredientIndex.query(all, any, none);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de buscar las recetas que usan todos los ingredientes dados.
+	 * @param ingredients Ingredientes que deben estar en la receta
+	 * @return Lista con los nombres de las recetas encontradas
+	 * @see #findRecipes(Collection, Collection, Collection)
+	 */
+    public ArrayList<String> findRecipesWith(String... ingredients) {
+        long start = recorder.start();
+        try {
+            return ingredientIndex.query(Arrays.asList(ingredients), Collections.emptyList(), Collections.emptyList());
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de buscar las recetas que se pueden preparar con los ingredientes disponibles.
+	 * @param pantry Ingredientes disponibles
+	 * @return Lista con los nombres de las recetas cuyos ingredientes estan todos entre los disponibles
+	 * <p> Las recetas sin ingredientes no se incluyen.</p>
+	 * @see #findRecipes(Collection, Collection, Collection)
+	 */
+    public ArrayList<String> cookableRecipes(Collection<String> pantry) {
+        long start = recorder.start();
+        try {
+            return ingredientIndex.cookable(pantry);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de eliminar una receta.
 	 * @param name Nombre de la receta
-	 * @return true si se elimino correctamente, false si no se encontro el archivo
-	 * <p> Este método se encarga de eliminar un archivo .dat correspondiente a una receta.
-	 * Busca en la lista de archivos "files" y si encuentra un archivo con el mismo nombre que la receta, lo elimina.
-	 * Si se elimina un archivo, se repopula la lista recipes y files.
-	 * Devuelve true si se eliminó un archivo y false si no se encontró el archivo.</p>
+	 * @return true si se elimino correctamente, false si no se encontro la receta
+	 * <p> Este método se encarga de eliminar una receta escribiendo un registro de borrado en el segmento activo.
+	 * La receta se quita del indice de recetas, de la cache y de los indices secundarios, sin volver a leer las demas.
+	 * Devuelve true si se eliminó la receta y false si no se encontró.</p>
 	 */
     public boolean deleteRecipe(String name) {
-        boolean toRepopulate = false;
-        for (File i : files) {
-            if (i.getName().equals(name + ".dat")) {
-                System.out.println("Deleting " + i.getName());
-                i.delete();
-                toRepopulate = true;
+        long start = recorder.start();
+        try {
+            ReentrantLock lock = recipeLocks.get(name);
+            lock.lock();
+            try {
+                if (engine.delete(name)) {
+                    recipes.invalidate(name);
+                    unindexRecipe(name);
+                    return true;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                recorder.error(StorageOperation.DELETE_RECIPE);
+            } finally {
+                lock.unlock();
+                scheduleRecipeCompaction();
             }
+            return false;
+        } finally {
+            recorder.stop(StorageOperation.DELETE_RECIPE, start);
         }
-        if (toRepopulate) {
-            populateArrayLists();
-            return true;
-        } else {
+    }
+
+	/**
+	 * Método que se encarga de eliminar varias recetas.
+	 * @param names Nombres de las recetas
+	 * @return Cantidad de recetas eliminadas
+	 * <p> Elimina cada receta como {@link #deleteRecipe(String)} y sincroniza los segmentos con el disco una sola vez al final.</p>
+	 */
+    public int deleteRecipes(Collection<String> names) {
+        int deleted = 0;
+        for (String name : names) {
+            if (deleteRecipe(name)) {
+                deleted++;
+            }
+        }
+        sync();
+        return deleted;
+    }
+
+	/**
+	 * Método que se encarga de sincronizar con el disco las recetas escritas.
+	 * @return true si se sincronizo correctamente, false si no
+	 * <p> Las escrituras de recetas se sincronizan con el disco por lotes. Este método fuerza la sincronizacion
+	 * de las escrituras pendientes del motor de almacenamiento; con el motor de segmentos, ademas guarda el indice de recetas "recipes.idx".</p>
+	 */
+    public boolean sync() {
+        long start = recorder.start();
+        try {
+            try {
+                engine.sync();
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                recorder.error(StorageOperation.SYNC);
+            }
             return false;
+        } finally {
+            recorder.stop(StorageOperation.SYNC, start);
         }
     }
 
 	/**
-	 * Método que se encarga de leer el directorio "db/" y devolver una lista de archivos que contiene.
-	 * @return Lista de archivos que contiene el directorio "db/"
-	 * <p> Crea un objeto File que representa el directorio "db/" y luego itera a través de los archivos en ese directorio.
-	 * Si un archivo es un archivo regular (no un directorio), lo agrega a la lista "list".
+	 * Método que se encarga de leer el directorio de la base de datos y devolver una lista de los archivos .dat que contiene.
+	 * @return Lista de archivos .dat que contiene el directorio de la base de datos
+	 * <p> Utiliza el objeto File que representa el directorio de la base de datos y luego itera a través de los archivos en ese directorio.
+	 * Si un archivo es un archivo regular (no un directorio) con extension .dat, lo agrega a la lista "list".
+	 * Estos archivos son recetas guardadas por versiones anteriores, antes de usar segmentos de recetas,
+	 * o por el motor {@link StorageEngine#FILES}.
 	 * Finalmente, devuelve la lista de archivos.
 	 * El nombre del método viene de "ls" que es un comando de GNU Coreutils que lista los archivos en un directorio.</p>
 	 */
     public final ArrayList<File> lsReader() {
-        File ls = new File("db/");
         ArrayList<File> list = new ArrayList<>();
 
-        for (File file : ls.listFiles()) {
+        for (File file : dir.listFiles()) {
             if (file.isFile() && file.getName().endsWith(".dat")) {
                 list.add(file);
             }
@@ -210,50 +859,151 @@ public final class Database {
 	/**
 	 * Método que se encarga de guardar el mapa de datos en un archivo.
 	 * @return true si se guardo correctamente, false si no
-	 * <p> Este método se encarga de guardar el mapa de datos en un archivo.
-	 * Crea un flujo de salida de archivo y un flujo de salida de objetos para escribir el objeto "dataMap" en el archivo "db/datamap.db".
-	 * Finalmente, cierra los flujos de salida.</p>
+	 * <p> Este método se encarga de guardar un punto de control del almacen de ingredientes
+	 * del motor de almacenamiento; ver {@link IngredientStore#checkpoint()}.
+	 * Se ejecuta en segundo plano cada {@value #CHECKPOINT_INTERVAL} cambios, al compactar y al cerrar la base de datos.
+	 * Con {@link StorageEngine#SEGMENTS} y {@link StorageEngine#FILES} se guarda en "datamap.db" de forma atomica,
+	 * por lo que una caida nunca deja el archivo a medias; con {@link StorageEngine#MEMORY} no se guarda nada.
+	 * El archivo se escribe sin el bloqueo de los ingredientes, que solo se toma para reiniciar la cuenta de cambios.</p>
 	 */
     public boolean saveDataMap() {
+        long start = recorder.start();
         try {
-            fos = new FileOutputStream("db/datamap.db");
-            oof = new ObjectOutputStream(fos);
-            oof.writeObject(dataMap);
-            oof.close();
-            fos.close();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
+            ingredientLock.writeLock().lock();
+            try {
+                // Los cambios que lleguen mientras se escribe cuentan para el siguiente punto de control
+                checkpointPending = false;
+                uncheckpointed = 0;
+            } finally {
+                ingredientLock.writeLock().unlock();
+            }
+            try {
+                ingredientStore.checkpoint();
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                recorder.error(StorageOperation.CHECKPOINT);
+            }
+            return false;
+        } finally {
+            recorder.stop(StorageOperation.CHECKPOINT, start);
         }
-        return false;
     }
 
 	/**
-	 * Método que se encarga de cargar el mapa de datos desde un archivo.
-	 * @return Objeto de tipo DataMap que contiene los datos
-	 * <p> Este método se encarga de cargar el mapa de datos desde un archivo.
-	 * Crea un objeto File que representa el archivo "db/datamap.db" y verifica si existe.
-	 * Si el archivo existe, crea un flujo de entrada de objetos y lee el objeto "dataMap" desde el archivo.
-	 * Finalmente, cierra el flujo de entrada y devuelve el objeto "dataMap".
-	 * Si el archivo no existe, crea un nuevo objeto "dataMap" y lo devuelve.
-	 * Si hay un problema al leer el archivo, devuelve null.</p>
+	 * Método que se encarga de compactar el archivo de ingredientes.
+	 * @return true si se compacto correctamente, false si no
+	 * <p> Este método reescribe "ingredients.db" dejando solo los registros vivos, reemplaza el archivo
+	 * de forma atomica y guarda el mapa de datos con las nuevas posiciones; ver {@link IngredientStore#compact()}.
+	 * Normalmente se ejecuta en segundo plano cuando el almacen indica que conviene compactar.
+	 * No toma el bloqueo de los ingredientes, por lo que se pueden seguir leyendo y escribiendo mientras se compacta.</p>
+	 */
+	public boolean compactIngredients() {
+		long start = recorder.start();
+		try {
+			ingredientLock.writeLock().lock();
+			try {
+				compactionPending = false;
+			} finally {
+				ingredientLock.writeLock().unlock();
+			}
+			try {
+				ingredientStore.compact();
+				return saveDataMap();
+			} catch (IOException | CorruptedFile e) {
+				e.printStackTrace();
+				recorder.error(StorageOperation.COMPACTION);
+			}
+			return false;
+		} finally {
+			recorder.stop(StorageOperation.COMPACTION, start);
+		}
+	}
+
+	/**
+	 * Método que se encarga de compactar los segmentos de recetas.
+	 * @return true si se compacto correctamente, false si no
+	 * <p> Este método reescribe los segmentos cerrados dejando solo las recetas vivas; ver {@link StorageEngine#compact()}.
+	 * Las recetas se pueden seguir leyendo y escribiendo mientras se compacta.
+	 * Normalmente se ejecuta en segundo plano cuando los segmentos cerrados acumulan
+	 * {@value #RECIPE_COMPACTION_MIN_DEAD_BYTES} bytes de recetas reemplazadas o borradas.</p>
+	 */
+	public boolean compactRecipes() {
+		long start = recorder.start();
+		try {
+			recipeCompactionPending.set(false);
+			try {
+				engine.compact();
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+				recorder.error(StorageOperation.COMPACTION);
+			}
+			return false;
+		} finally {
+			recorder.stop(StorageOperation.COMPACTION, start);
+		}
+	}
+
+	/**
+	 * Método que se encarga de programar una compactacion de los segmentos de recetas en segundo plano
+	 * si hay suficientes bytes muertos.
 	 */
-	public DataMap loadDataMap() {
+	private void scheduleRecipeCompaction() {
 		try {
-			File file = new File("db/datamap.db");
-			if (file.exists()) {
-				oif = new ObjectInputStream(new FileInputStream(file));
-				dataMap = (DataMap) oif.readObject();
-				oif.close();
-				return dataMap;
-			} else {
-				dataMap = new DataMap("datamap");
-				return dataMap;
+			if (engine.deadBytes() >= RECIPE_COMPACTION_MIN_DEAD_BYTES && recipeCompactionPending.compareAndSet(false, true)) {
+				maintenance.execute(this::compactRecipes);
 			}
-		} catch (IOException | ClassNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		return null;
+	}
+
+	/**
+	 * Método que se encarga de programar una compactacion en segundo plano si el almacen de ingredientes lo necesita.
+	 */
+	private void scheduleCompaction() {
+		if (!compactionPending && ingredientStore.needsCompaction()) {
+			compactionPending = true;
+			maintenance.execute(this::compactIngredients);
+		}
+	}
+
+	/**
+	 * Método que se encarga de programar un punto de control del mapa de datos en segundo plano
+	 * cada {@value #CHECKPOINT_INTERVAL} cambios de ingredientes.
+	 */
+	private void scheduleCheckpoint() {
+		if (++uncheckpointed >= CHECKPOINT_INTERVAL && !checkpointPending) {
+			checkpointPending = true;
+			maintenance.execute(this::saveDataMap);
+		}
+	}
+
+	/**
+	 * Método que se encarga de escribir un ingrediente en el almacen de ingredientes.
+	 * @param name Nombre del ingrediente
+	 * @param parsedString Cadena de texto que contiene los datos del ingrediente
+	 * <p> Si el ingrediente ya existia, el registro anterior queda marcado como muerto.
+	 * El registro se sincroniza con el disco despues de liberar el bloqueo, de forma que los escritores
+	 * concurrentes comparten una misma sincronizacion.</p>
+	 */
+	private void putIngredient(String name, String parsedString) throws IOException {
+		long start = recorder.start();
+		try {
+			ingredientLock.writeLock().lock();
+			try {
+				ingredientStore.put(name, parsedString);
+				ingredientNames.add(name);
+				scheduleCompaction();
+				scheduleCheckpoint();
+			} finally {
+				ingredientLock.writeLock().unlock();
+			}
+			ingredientStore.sync();
+		} finally {
+			recorder.stop(StorageOperation.WRITE_INGREDIENT, start);
+		}
 	}
 
 	/**
@@ -308,27 +1058,22 @@ public final class Database {
 	 * @return true si se agrego correctamente, false si no
 	 * <p> Este método se encarga de agregar un ingrediente a la base de datos.
 	 * Construye una cadena de texto utilizando el nombre, tipo y unidad del ingrediente.
-	 * Luego intenta abrir el archivo "db/ingredients.db" en modo de lectura y escritura.
-	 * Si el archivo no existe, devuelve false.
-	 * Escribe la cadena en el archivo y agrega el nombre del ingrediente al mapa de datos.
-	 * Finalmente, guarda el mapa de datos y devuelve true si se agregó correctamente.
-	 * Si hay un problema al abrir o escribir en el archivo, devuelve false.</p>
+	 * Escribe la cadena como un nuevo registro al final de "ingredients.db" y agrega el nombre del ingrediente al mapa de datos.
+	 * Si el ingrediente ya existia, se reemplaza y el registro anterior se recupera en la siguiente compactacion.
+	 * Devuelve true una vez que el registro esta sincronizado con el disco.
+	 * El mapa de datos no se guarda en cada llamada sino en puntos de control periodicos;
+	 * tras una caida se recupera aplicando los registros posteriores al ultimo punto de control.
+	 * Si hay un problema al escribir en el archivo, devuelve false.</p>
 	 */
     public boolean addIngredient(String name, String type, String unit) {
         String parsedString = buildString(name, type, unit);
 
         try {
-            raf = new RandomAccessFile("db/ingredients.db", "rw");
-            raf.seek(raf.length());
-            raf.writeUTF(parsedString);
-            dataMap.addData(name, parsedString.getBytes().length);
-			ingredients.add(parseString(parsedString)[0]);
-			saveDataMap();
+            putIngredient(name, parsedString);
             return true;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
+            recorder.error(StorageOperation.WRITE_INGREDIENT);
         }
         return false;
     }
@@ -338,11 +1083,9 @@ public final class Database {
 	 * @param parsedString Cadena de texto que contiene los datos del ingrediente
 	 * @return true si se agrego correctamente, false si no
 	 * <p> Este método se encarga de agregar un ingrediente a la base de datos.
-	 * Intenta abrir el archivo "db/ingredients.db" en modo de lectura y escritura.
-	 * Si el archivo no existe, devuelve false.
-	 * Escribe la cadena en el archivo y agrega el nombre del ingrediente al mapa de datos.
-	 * Finalmente, guarda el mapa de datos y devuelve true si se agregó correctamente.
-	 * Si hay un problema al abrir o escribir en el archivo, devuelve false.</p>
+	 * Escribe la cadena como un nuevo registro al final de "ingredients.db" y agrega el nombre del ingrediente al mapa de datos.
+	 * Devuelve true si se agregó correctamente.
+	 * Si hay un problema al escribir en el archivo, devuelve false.</p>
 	 */
     public boolean addIngredient(String parsedString) {
         if (parsedString == null || parsedString.isEmpty()) {
@@ -352,50 +1095,174 @@ public final class Database {
             parsedString += "\n";
         }
         try {
-            raf = new RandomAccessFile("db/ingredients.db", "rw");
-            raf.seek(raf.length());
-            raf.writeUTF(parsedString);
-            dataMap.addData(parseString(parsedString)[0], parsedString.getBytes().length);
+            putIngredient(parseString(parsedString)[0], parsedString);
             return true;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
         } catch (IOException e) {
             e.printStackTrace();
+            recorder.error(StorageOperation.WRITE_INGREDIENT);
         }
         return false;
     }
 
+	/**
+	 * Método que se encarga de importar muchos ingredientes a la vez.
+	 * @param rows Filas con el nombre, tipo y unidad de cada ingrediente
+	 * @return Número de ingredientes importados, o -1 si hay un problema al escribir
+	 * <p> Este método se encarga de importar muchos ingredientes a la vez.
+	 * Agrupa las filas en lotes de {@value #IMPORT_BATCH}; cada lote se escribe al final de "ingredients.db"
+	 * con una sola escritura y se aplica al mapa de datos en memoria bajo el bloqueo de escritura,
+	 * que se libera entre lotes para no bloquear las lecturas durante toda la importación.
+	 * Al terminar sincroniza el registro con el disco una única vez y guarda el mapa de datos como punto de control.
+	 * Si un ingrediente ya existia, se reemplaza igual que en {@link #addIngredient(String, String, String)}.</p>
+	 * <p> La importación no es atómica: si una fila no es válida o falla una escritura, los lotes completos
+	 * anteriores ya están aplicados y se sincronizan y guardan igualmente antes de terminar, mientras que las filas
+	 * del lote en curso se descartan. Para importar todo o nada hay que validar las filas antes de llamar a este método.</p>
+	 * @throws IllegalArgumentException Lanzado si alguna fila no tiene tres campos o alguno está vacío;
+	 * los lotes anteriores a esa fila quedan importados
+	 */
+	public int importIngredients(Iterator<String[]> rows) {
+		long start = recorder.start();
+		try {
+			ArrayList<String> names = new ArrayList<>();
+			ArrayList<String> records = new ArrayList<>();
+			int imported = 0;
+			boolean committed = false;
+			try {
+				while (rows.hasNext()) {
+					String[] row = rows.next();
+					if (row == null || row.length != 3) {
+						throw new IllegalArgumentException("Invalid ingredient row");
+					}
+					if (row[0] == null || row[0].isEmpty() || row[1] == null || row[1].isEmpty()
+							|| row[2] == null || row[2].isEmpty()) {
+						throw new IllegalArgumentException("Empty fields in row");
+					}
+					names.add(row[0]);
+					records.add(buildString(row[0], row[1], row[2]));
+					if (names.size() == IMPORT_BATCH) {
+						importBatch(names, records);
+						imported += names.size();
+						names.clear();
+						records.clear();
+					}
+				}
+				if (!names.isEmpty()) {
+					importBatch(names, records);
+					imported += names.size();
+				}
+				if (imported > 0) {
+					ingredientStore.sync();
+					saveDataMap();
+				}
+				committed = true;
+				return imported;
+			} catch (IOException e) {
+				e.printStackTrace();
+				recorder.error(StorageOperation.IMPORT_INGREDIENTS);
+			} finally {
+				if (!committed && imported > 0) {
+					// Los lotes ya aplicados se quedan: se hacen durables igual que en una importación completa
+					try {
+						ingredientStore.sync();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+					saveDataMap();
+				}
+			}
+			return -1;
+		} finally {
+			recorder.stop(StorageOperation.IMPORT_INGREDIENTS, start);
+		}
+	}
+
+	/**
+	 * Método que se encarga de importar muchos ingredientes a la vez.
+	 * @param rows Flujo de filas con el nombre, tipo y unidad de cada ingrediente
+	 * @return Número de ingredientes importados, o -1 si hay un problema al escribir
+	 * @see #importIngredients(Iterator)
+	 */
+	public int importIngredients(Stream<String[]> rows) {
+		return importIngredients(rows.iterator());
+	}
+
+	/**
+	 * Método que se encarga de importar los ingredientes de un archivo de texto.
+	 * @param file Archivo con un ingrediente por línea en formato "nombreƒtipoƒunidad"
+	 * @return Número de ingredientes importados, o -1 si hay un problema al leer o escribir
+	 * <p> Este método se encarga de importar los ingredientes de un archivo de texto codificado en UTF-8.
+	 * Las líneas vacías se ignoran y el resto se analiza con {@link #parseString(String)}.</p>
+	 * @throws IllegalArgumentException Lanzado si alguna línea no tiene el formato correcto
+	 * @see #importIngredients(Iterator)
+	 */
+	public int importIngredients(File file) {
+		try (Stream<String> lines = Files.lines(file.toPath(), StandardCharsets.UTF_8)) {
+			return importIngredients(lines.filter(line -> !line.isEmpty()).map(this::parseString));
+		} catch (IOException | UncheckedIOException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	/**
+	 * Método que se encarga de escribir un lote de ingredientes en el almacen de ingredientes.
+	 */
+	private void importBatch(ArrayList<String> names, ArrayList<String> records) throws IOException {
+		ingredientLock.writeLock().lock();
+		try {
+			ingredientStore.putAll(names, records);
+			for (String name : names) {
+				ingredientNames.add(name);
+			}
+			scheduleCompaction();
+		} finally {
+			ingredientLock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Método que se encarga de leer un ingrediente de la base de datos.
 	 * @param name Nombre del ingrediente
 	 * @return Arreglo de cadenas que contiene los datos del ingrediente
 	 * <p> Este método se encarga de leer un ingrediente de la base de datos.
-	 * Intenta abrir el archivo "db/ingredients.db" en modo de lectura.
-	 * Busca el nombre del ingrediente en el mapa de datos y si lo encuentra, lee la cadena correspondiente.
-	 * Luego analiza la cadena y la agrega a la lista de ingredientes.
-	 * Finalmente, devuelve el arreglo de cadenas que contiene los datos del ingrediente.
-	 * Si no encuentra el ingrediente, devuelve null.</p>
+	 * Lee el registro del ingrediente del almacen de ingredientes, que lo localiza por su nombre.
+	 * Luego analiza la cadena y devuelve el arreglo de cadenas que contiene los datos del ingrediente.
+	 * Si no encuentra el ingrediente o su registro esta dañado, devuelve null.</p>
 	 */
 	public String[] readIngredient(String name) {
+		long start = recorder.start();
 		try {
-			raf = new RandomAccessFile("db/ingredients.db", "r");
-			
-			String[] data = dataMap.searchData(name);
-
-			if (data != null) {
-				raf.skipBytes((int) (raf.getFilePointer() - Long.parseLong(data[1])));
-				String[] str = parseString(raf.readUTF());
-				ingredients.add(str[0]);
-				return str;
-			} else {
+			ingredientLock.readLock().lock();
+			try {
+				try {
+					String data = ingredientStore.get(name);
+
+					if (data != null) {
+						return parseString(data);
+					} else {
+						return null;
+					}
+				} catch (IOException | CorruptedFile e) {
+					e.printStackTrace();
+					recorder.error(StorageOperation.READ_INGREDIENT);
+				}
 				return null;
+			} finally {
+				ingredientLock.readLock().unlock();
 			}
-			
-
-		} catch (IOException e) {
-			e.printStackTrace();
+		} finally {
+			recorder.stop(StorageOperation.READ_INGREDIENT, start);
 		}
-		return null;
+	}
+
+	/**
+	 * Método que se encarga de seleccionar como se leen los ingredientes de "ingredients.db".
+	 * @param mapped true para leer desde una proyeccion en memoria del archivo, false para leer con accesos al archivo
+	 * <p> Por defecto las lecturas usan la proyeccion en memoria, que convierte cada lectura en un acceso a memoria
+	 * sin llamadas al sistema. La proyeccion se actualiza sola cuando el archivo crece o se compacta.</p>
+	 */
+	public void setMappedReads(boolean mapped) {
+		ingredientStore.setMapped(mapped);
 	}
 
 	/**
@@ -403,43 +1270,403 @@ public final class Database {
 	 * @param name Nombre del ingrediente
 	 * @return true si se elimino correctamente, false si no se encontro el ingrediente
 	 * <p> Este método se encarga de eliminar un ingrediente de la base de datos.
-	 * Invoca al método "removeData" del objeto "dataMap" para eliminar el ingrediente. </p>
+	 * Escribe un registro de borrado al final de "ingredients.db" y quita el ingrediente del mapa de datos del almacen.
+	 * El espacio que ocupaba el registro se recupera en la siguiente compactacion. </p>
 	 * <p> Si el ingrediente se elimina correctamente, devuelve true. </p>
-	 * @see objects.DataMap#removeData(String)
+	 * @see IngredientStore#delete(String)
 	 */
 	public boolean deleteIngredient(String name) {
-		return dataMap.removeData(name);
+		long start = recorder.start();
+		try {
+			ingredientLock.writeLock().lock();
+			try {
+				if (!ingredientStore.delete(name)) {
+					return false;
+				}
+				ingredientNames.remove(name);
+				scheduleCompaction();
+				scheduleCheckpoint();
+			} catch (IOException e) {
+				e.printStackTrace();
+				recorder.error(StorageOperation.DELETE_INGREDIENT);
+				return false;
+			} finally {
+				ingredientLock.writeLock().unlock();
+			}
+			try {
+				ingredientStore.sync();
+				return true;
+			} catch (IOException e) {
+				e.printStackTrace();
+				recorder.error(StorageOperation.DELETE_INGREDIENT);
+			}
+			return false;
+		} finally {
+			recorder.stop(StorageOperation.DELETE_INGREDIENT, start);
+		}
 	}
 
 	/**
 	 * Método que se encarga de obtener la lista de ingredientes.
 	 * @return Lista de ingredientes
+	 * <p> La lista se construye a partir del almacen de ingredientes en cada llamada, por lo que puede modificarse
+	 * sin afectar a la base de datos ni a otros hilos.</p>
 	 */
     public ArrayList<String> getIngredients() {
-        return ingredients;
+        ingredientLock.readLock().lock();
+        try {
+            return ingredientStore.names();
+        } finally {
+            ingredientLock.readLock().unlock();
+        }
+    }
+
+	/**
+	 * Método que se encarga de autocompletar el nombre de un ingrediente.
+	 * @param prefix Comienzo del nombre, sin distinguir mayusculas ni acentos
+	 * @param limit Cantidad maxima de resultados
+	 * @return Lista con los primeros nombres de ingredientes, en orden alfabetico, que empiezan por el prefijo
+	 * <p> Utiliza un indice ordenado de nombres que se mantiene al agregar y eliminar ingredientes,
+	 * por lo que no recorre la lista completa de ingredientes.</p>
+	 */
+    public ArrayList<String> completeIngredient(String prefix, int limit) {
+        long start = recorder.start();
+        try {
+            return ingredientNames.complete(prefix, limit);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de autocompletar el nombre de una receta.
+	 * @param prefix Comienzo del nombre, sin distinguir mayusculas ni acentos
+	 * @param limit Cantidad maxima de resultados
+	 * @return Lista con los primeros nombres de recetas, en orden alfabetico, que empiezan por el prefijo
+	 * @see #completeIngredient(String, int)
+	 */
+    public ArrayList<String> completeRecipe(String prefix, int limit) {
+        long start = recorder.start();
+        try {
+            return recipeNames.complete(prefix, limit);
+        } finally {
+            recorder.stop(StorageOperation.QUERY, start);
+        }
+    }
+
+	/**
+	 * Método que se encarga de obtener las estadisticas de la cache de recetas.
+	 * @return Aciertos, fallos, expulsiones, cantidad de recetas y peso estimado de la cache
+	 */
+    public CacheStats getCacheStats() {
+        return recipes.stats();
+    }
+
+	/**
+	 * Método que se encarga de activar las metricas de las operaciones.
+	 * @return true si las metricas se registraron por JMX, false si solo se pueden consultar con {@link #getMetrics()}
+	 * <p> Mientras estan desactivadas, que es lo predeterminado, las operaciones no miden nada.
+	 * Una vez activadas, cada operacion publica cuenta sus ejecuciones, errores y latencia, y las metricas se registran
+	 * en el servidor de MBeans de la plataforma con el nombre "database:type=StorageMetrics,id=...".</p>
+	 * @see StorageMetricsMBean
+	 */
+    public synchronized boolean enableMetrics() {
+        recorder = metrics;
+        if (metricsName != null) {
+            return true;
+        }
+        try {
+            ObjectName name = new ObjectName("database:type=StorageMetrics,id=" + Integer.toHexString(System.identityHashCode(this)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            metricsName = name;
+            return true;
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+	/**
+	 * Método que se encarga de desactivar las metricas de las operaciones y quitarlas del servidor de MBeans.
+	 * <p> Los valores medidos hasta el momento se conservan y se vuelven a usar si se activan de nuevo.</p>
+	 */
+    public synchronized void disableMetrics() {
+        recorder = Recorder.NOOP;
+        if (metricsName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(metricsName)) {
+                server.unregisterMBean(metricsName);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        metricsName = null;
+    }
+
+	/**
+	 * Método que se encarga de obtener las metricas de la base de datos.
+	 * @return Estadisticas de cada operacion, bytes leidos y escritos, archivos abiertos, cache de recetas y tiempo de arranque
+	 * <p> Los bytes, archivos, cache y tiempo de arranque se cuentan siempre; las estadisticas de las operaciones
+	 * solo incluyen lo ejecutado con las metricas activadas.</p>
+	 * @see #enableMetrics()
+	 */
+    public StorageMetrics.Snapshot getMetrics() {
+        return metrics.snapshot();
+    }
+
+	/**
+	 * Método que se encarga de obtener los bytes leidos por el motor de almacenamiento y de "ingredients.db".
+	 * @return Bytes leidos desde que se abrio la base de datos
+	 */
+    long bytesRead() {
+        return engine.bytesRead() + ingredientStore.bytesRead();
+    }
+
+	/**
+	 * Método que se encarga de obtener los bytes escritos por el motor de almacenamiento y en "ingredients.db".
+	 * @return Bytes escritos desde que se abrio la base de datos
+	 */
+    long bytesWritten() {
+        return engine.bytesWritten() + ingredientStore.bytesWritten();
+    }
+
+	/**
+	 * Método que se encarga de obtener la cantidad de archivos de datos abiertos.
+	 * @return Archivos abiertos por el motor de almacenamiento mas el archivo de ingredientes
+	 */
+    int openFiles() {
+        return engine.openFiles();
     }
 
 	/**
 	 * Método que se encarga de obtener la lista de recetas.
 	 * @return Lista de recetas
 	 * <p> Este método se encarga de obtener la lista de recetas.
-	 * Este método debe de ser llamado despues de cualquier operacion de escritura o borrado de archivos.
-	 * Esto es para que la lista de archivos se mantenga actualizada.</p>
-	 * @see #populateArrayLists()
+	 * Las recetas que no estan en la cache se leen de los segmentos en este momento,
+	 * por lo que la primera llamada puede tardar; ver {@link #warmUp()}.
+	 * Este método debe de ser llamado despues de cualquier operacion de escritura o borrado de recetas.
+	 * Esto es para que la lista de recetas se mantenga actualizada.
+	 * Para recorrer todo el catalogo sin tenerlo entero en memoria, utilizar {@link #streamRecipes()}.</p>
 	 */
     public ArrayList<Recipe> getRecipes() {
-        return recipes;
+        ArrayList<String> names = engine.names();
+        ArrayList<Recipe> list = new ArrayList<>(names.size());
+        for (String name : names) {
+            Recipe recipe = recipe(name);
+            if (recipe != null) {
+                list.add(recipe);
+            }
+        }
+        return list;
+    }
+
+	/**
+	 * Método que se encarga de recorrer todas las recetas sin cargarlas todas en memoria.
+	 * @return Flujo de recetas
+	 * @see #streamRecipes(RecipeFilter)
+	 */
+    public Stream<Recipe> streamRecipes() {
+        return streamRecipes(new RecipeFilter());
+    }
+
+	/**
+	 * Método que se encarga de recorrer las recetas que cumplen un filtro sin cargarlas todas en memoria.
+	 * @param filter Condiciones sobre el nombre, los tiempos y los ingredientes de las recetas
+	 * @return Flujo de recetas que cumplen el filtro
+	 * <p> Las condiciones del filtro se resuelven primero con los indices de nombres, tiempos e ingredientes,
+	 * y solo se leen las recetas que las cumplen. Cada receta se lee de los segmentos al llegar a ella, o se toma
+	 * de la cache si ya estaba, y no se guarda en la cache, por lo que un recorrido completo ocupa memoria
+	 * solo para los nombres de las recetas y las que se esten procesando.
+	 * El flujo se puede recorrer en paralelo con {@link Stream#parallel()}.
+	 * Las recetas escritas despues de llamar a este método no se incluyen, y las eliminadas despues se omiten.</p>
+	 */
+    public Stream<Recipe> streamRecipes(RecipeFilter filter) {
+        ArrayList<String> names = null;
+        if (filter.getNamePrefix() != null) {
+            names = intersect(names, recipeNames.complete(filter.getNamePrefix(), Integer.MAX_VALUE));
+        }
+        for (Map.Entry<TimeField, int[]> e : filter.getTimes().entrySet()) {
+            int[] range = e.getValue();
+            names = intersect(names, timeIndex.query(e.getKey(), range[0], range[1], e.getKey(), false, 0, Integer.MAX_VALUE));
+        }
+        if (!filter.getIngredients().isEmpty()) {
+            names = intersect(names, ingredientIndex.query(filter.getIngredients(), Collections.emptyList(), Collections.emptyList()));
+        }
+        if (names == null) {
+            names = engine.names();
+        }
+        String[] array = names.toArray(new String[0]);
+        return StreamSupport.stream(new RecipeSpliterator(array, 0, array.length, this::streamedRecipe, filter), false);
+    }
+
+	/**
+	 * Método que se encarga de quedarse con los nombres de una lista que estan tambien en otra.
+	 * @return La lista con los nombres comunes, o la segunda lista si la primera es null
+	 */
+    private static ArrayList<String> intersect(ArrayList<String> names, ArrayList<String> other) {
+        if (names == null) {
+            return other;
+        }
+        HashSet<String> keep = new HashSet<>(other);
+        names.removeIf(name -> !keep.contains(name));
+        return names;
+    }
+
+	/**
+	 * Método que se encarga de obtener una receta para un recorrido, sin guardarla en la cache.
+	 * @param name Nombre de la receta
+	 * @return Receta, o null si no existe o su registro esta dañado
+	 */
+    private Recipe streamedRecipe(String name) {
+        Recipe recipe = recipes.peek(name);
+        if (recipe != null) {
+            return recipe;
+        }
+        long start = recorder.start();
+        try {
+            return engine.get(name);
+        } catch (IOException | CorruptedFile e) {
+            e.printStackTrace();
+            recorder.error(StorageOperation.READ_RECIPE);
+        } finally {
+            recorder.stop(StorageOperation.READ_RECIPE, start);
+        }
+        return null;
     }
 
 	/**
-	 * Método que se encarga de obtener la lista de archivos.
-	 * @return Lista de archivos
-	 * <p> Este método se encarga de obtener la lista de archivos.
-	 * Este método debe de ser llamado despues de cualquier operacion de escritura o borrado de archivos.
-	 * Esto es para que la lista de archivos se mantenga actualizada.</p>
-	 * @see #populateArrayLists()
+	 * Método que se encarga de construir la lista de la compra de un plan de recetas.
+	 * @param plan Nombres de las recetas con la cantidad de veces que se prepara cada una
+	 * @return Lista de la compra con los ingredientes de todas las recetas sumados y convertidos a unidades comunes
+	 * <p> Las recetas se leen y se suman en paralelo en el pool de fork-join comun. Las recetas que no existen
+	 * o estan dañadas se omiten.</p>
+	 * @see ShoppingList
 	 */
-    public ArrayList<File> getFiles() {
-        return files;
+    public ShoppingList buildShoppingList(Map<String, ? extends Number> plan) {
+        Collector<Map.Entry<String, ? extends Number>, ShoppingList, ShoppingList> collector = Collector.of(ShoppingList::new,
+                (list, e) -> {
+                    Recipe recipe = recipe(e.getKey());
+                    if (recipe != null) {
+                        list.add(recipe, e.getValue().doubleValue());
+                    }
+                }, ShoppingList::merge, Collector.Characteristics.UNORDERED);
+        return plan.entrySet().parallelStream().collect(collector);
     }
+
+	/**
+	 * Método que se encarga de guardar una copia de seguridad de la base de datos en un solo archivo.
+	 * @param archive Archivo en el que se guarda la copia
+	 * @return true si se guardo correctamente, false si no
+	 * <p> La copia contiene los segmentos de recetas y "ingredients.db" tal como estaban en un mismo instante,
+	 * comprimidos y con un CRC32 por archivo. Los tamaños de todos los archivos se anotan a la vez, con las escrituras
+	 * de ingredientes detenidas y el bloqueo del almacen de recetas, y despues se copian sin ningun bloqueo: los archivos
+	 * solo crecen, y cada uno se abre de nuevo para la copia, por lo que una compactacion que lo reemplace tampoco
+	 * afecta a la copia. Ni las lecturas ni las escrituras esperan a que termine la copia.
+	 * Los datos se pasan de los archivos al compresor con {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+	 * La copia se escribe en un archivo temporal que se sincroniza con el disco y solo entonces reemplaza a "archive",
+	 * por lo que una copia interrumpida no deja un archivo a medias.
+	 * Los archivos los anota el motor de almacenamiento con {@link StorageEngine#capture()}; si el motor no admite
+	 * copias de seguridad, como {@link StorageEngine#FILES} y {@link StorageEngine#MEMORY}, devuelve false.</p>
+	 * @see #restoreSnapshot(File, File)
+	 */
+    public boolean snapshot(File archive) {
+        long start = recorder.start();
+        ArrayList<StorageEngine.Part> parts = null;
+        try {
+            // Las recetas y los ingredientes se anotan en el mismo instante y se copian fuera de los bloqueos
+            ingredientLock.readLock().lock();
+            try {
+                parts = engine.capture();
+            } finally {
+                ingredientLock.readLock().unlock();
+            }
+            if (parts == null) {
+                return false;
+            }
+            try (SnapshotArchive out = new SnapshotArchive(archive)) {
+                for (StorageEngine.Part part : parts) {
+                    out.add(part);
+                }
+                out.commit();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            recorder.error(StorageOperation.SNAPSHOT);
+        } finally {
+            if (parts != null) {
+                for (StorageEngine.Part part : parts) {
+                    try {
+                        part.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            recorder.stop(StorageOperation.SNAPSHOT, start);
+        }
+        return false;
+    }
+
+	/**
+	 * Método que se encarga de restaurar una copia de seguridad en el directorio "db/".
+	 * @param archive Copia guardada con {@link #snapshot(File)}
+	 * @return true si se restauro correctamente, false si la copia esta dañada o hay un problema al escribir
+	 * @see #restoreSnapshot(File, File)
+	 */
+    public static boolean restoreSnapshot(File archive) {
+        return restoreSnapshot(archive, new File("db/"));
+    }
+
+	/**
+	 * Método que se encarga de restaurar una copia de seguridad en un directorio.
+	 * @param archive Copia guardada con {@link #snapshot(File)}
+	 * @param dir Directorio de la base de datos
+	 * @return true si se restauro correctamente, false si la copia esta dañada o hay un problema al escribir
+	 * <p> Debe llamarse sin ninguna instancia de Database abierta sobre "dir". La copia se lee de forma secuencial
+	 * una sola vez y se extrae a un directorio temporal; solo si todos los CRC coinciden reemplaza los segmentos de recetas,
+	 * "ingredients.db" y los indices guardados. Los indices se reconstruyen al abrir la base de datos con el motor
+	 * {@link StorageEngine#SEGMENTS}. Si la copia esta dañada o falla el cambio de archivos, "dir" queda como estaba.</p>
+	 */
+    public static boolean restoreSnapshot(File archive, File dir) {
+        try {
+            SnapshotArchive.restore(archive, dir);
+            return true;
+        } catch (IOException | CorruptedFile e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+	/**
+	 * Método que se encarga de cerrar la base de datos.
+	 * <p> Detiene la compactacion y los puntos de control en segundo plano, guarda el mapa de datos y el indice de texto
+	 * y cierra el motor de almacenamiento, que cierra tambien su almacen de ingredientes.
+	 * Si se estaba vigilando el directorio, deja de hacerlo. Si las metricas estaban activadas, las quita del servidor de MBeans.</p>
+	 */
+	public void close() {
+		stopWatching();
+		disableMetrics();
+		maintenance.shutdown();
+		try {
+			maintenance.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ingredientLock.writeLock().lock();
+		try {
+			saveDataMap();
+			try {
+				textIndex.save();
+				engine.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		} finally {
+			ingredientLock.writeLock().unlock();
+		}
+	}
 }
@@ -0,0 +1,186 @@
+package database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vigila un directorio y entrega por lotes los archivos .dat que aparecen, cambian o desaparecen en el
+ *
+ * <p>
+ * Los eventos del sistema de archivos se acumulan hasta que pasa un tiempo
+ * sin eventos nuevos, de forma que una rafaga de escrituras sobre los mismos
+ * archivos se procesa una sola vez y un archivo no se lee mientras otro
+ * proceso todavia lo esta escribiendo. Para que una rafaga continua no
+ * retrase el lote indefinidamente, se entrega en todo caso cuando el evento
+ * mas antiguo supera {@value #MAX_DELAY_FACTOR} veces ese tiempo. Si el
+ * sistema pierde eventos, se avisa con {@link Listener#lost()} para que se
+ * vuelva a listar el directorio completo.</p>
+ *
+ * <p>
+ * Un archivo se entrega como cambiado si existe al entregar el lote y como
+ * eliminado si no, independientemente de los eventos que lo hayan incluido.
+ * Los lotes se entregan desde el hilo propio del vigilante.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class DirectoryWatcher implements AutoCloseable {
+
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    private final Path dir;
+    private final long quietNanos;
+    private final Listener listener;
+    private final WatchService service;
+    private final Thread thread;
+
+    /**
+     * Recibe los cambios del directorio vigilado
+     */
+    interface Listener {
+
+        /**
+         * Recibe un lote de cambios
+         *
+         * @param changed Archivos .dat creados o modificados que existen
+         * @param removed Archivos .dat eliminados
+         */
+        void changed(ArrayList<File> changed, ArrayList<File> removed);
+
+        /**
+         * Avisa de que el sistema ha perdido eventos y hay que volver a listar el directorio
+         */
+        void lost();
+    }
+
+    /**
+     * Constructor de la clase DirectoryWatcher
+     *
+     * <p>
+     * Empieza a vigilar el directorio en un hilo en segundo plano.</p>
+     *
+     * @param dir Directorio a vigilar
+     * @param quietMillis Tiempo sin eventos nuevos que se espera antes de entregar un lote
+     * @param listener Recibe cada lote de cambios
+     * @throws IOException Si no se puede vigilar el directorio
+     */
+    DirectoryWatcher(File dir, long quietMillis, Listener listener) throws IOException {
+        this.dir = dir.toPath();
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        this.listener = listener;
+        service = FileSystems.getDefault().newWatchService();
+        this.dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        thread = new Thread(this::run, "database-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Deja de vigilar el directorio y espera a que termine el lote en curso
+     *
+     * <p>
+     * Los eventos acumulados que todavia no se han entregado se descartan.</p>
+     */
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        // Ordenados por el primer evento de cada archivo
+        LinkedHashMap<Path, Long> pending = new LinkedHashMap<>();
+        long lastEvent = 0;
+        boolean lost = false;
+        long lostAt = 0;
+        try {
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty() && !lost) {
+                    key = service.take();
+                } else {
+                    long now = System.nanoTime();
+                    long oldest = lost ? lostAt : pending.values().iterator().next();
+                    long wait = Math.min(lastEvent + quietNanos, oldest + MAX_DELAY_FACTOR * quietNanos) - now;
+                    key = wait > 0 ? service.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (key == null) {
+                        deliver(pending, lost);
+                        lost = false;
+                        continue;
+                    }
+                }
+                lastEvent = System.nanoTime();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // El listado completo sustituye a los eventos acumulados
+                        pending.clear();
+                        if (!lost) {
+                            lost = true;
+                            lostAt = lastEvent;
+                        }
+                    } else if (!lost) {
+                        add(pending, dir.resolve((Path) event.context()), lastEvent);
+                    }
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // close() detiene el vigilante
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void add(LinkedHashMap<Path, Long> pending, Path path, long time) {
+        if (path.getFileName().toString().endsWith(".dat")) {
+            pending.putIfAbsent(path, time);
+        }
+    }
+
+    private void deliver(LinkedHashMap<Path, Long> pending, boolean lost) {
+        ArrayList<File> changed = new ArrayList<>(pending.size());
+        ArrayList<File> removed = new ArrayList<>();
+        for (Path path : pending.keySet()) {
+            File file = path.toFile();
+            if (file.isFile()) {
+                changed.add(file);
+            } else if (!file.exists()) {
+                removed.add(file);
+            }
+        }
+        pending.clear();
+        if (!lost && changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        try {
+            if (lost) {
+                listener.lost();
+            } else {
+                listener.changed(changed, removed);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
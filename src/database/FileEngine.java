@@ -0,0 +1,212 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import objects.Recipe;
+
+/**
+ * Motor de almacenamiento con un archivo .dat por receta
+ *
+ * <p>
+ * Es el formato de las primeras versiones de la base de datos: cada receta
+ * se guarda en "nombre.dat" dentro del directorio de la base de datos,
+ * serializada con {@link ObjectOutputStream}. Los archivos que escribe este
+ * motor se pueden leer con {@link Database#readRecipe(File)} y con las
+ * versiones anteriores, y al abrirlo se usan los que ya hubiera.</p>
+ *
+ * <p>
+ * Cada receta se escribe en un archivo temporal que se sincroniza con el
+ * disco y se renombra de forma atomica sobre el definitivo, sincronizando
+ * despues el directorio, por lo que una caida no deja una receta a medias ni
+ * pierde una escritura o un borrado ya terminados.</p>
+ *
+ * <p>
+ * Los ingredientes se guardan en un {@link IngredientLog} sobre
+ * "ingredients.db", como con {@link StorageEngine#SEGMENTS}. Este motor no
+ * admite copias de seguridad.</p>
+ *
+ * <p>
+ * Los nombres de las recetas se obtienen del directorio al abrir el motor.
+ * Los archivos que otros procesos crean o borran despues se registran con
+ * {@link #adopt(String)} y {@link #delete(String)} al vigilar el directorio;
+ * ver {@link Database#startWatching(long)}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class FileEngine implements StorageEngine {
+
+    private static final String EXTENSION = ".dat";
+
+    private final File dir;
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final IngredientLog ingredientLog;
+
+    /**
+     * Constructor de la clase FileEngine
+     *
+     * @param dir Directorio donde se guardan los archivos .dat y "ingredients.db"
+     * @throws IOException Si no se puede abrir "ingredients.db"
+     */
+    FileEngine(File dir) throws IOException {
+        this.dir = dir;
+        File[] found = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+        if (found != null) {
+            for (File f : found) {
+                if (f.isFile()) {
+                    names.add(f.getName().substring(0, f.getName().length() - EXTENSION.length()));
+                }
+            }
+        }
+        ingredientLog = new IngredientLog(new File(dir, "ingredients.db"));
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    @Override
+    public void put(Recipe recipe) throws IOException {
+        File file = file(recipe.getName());
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                ObjectOutputStream oof = new ObjectOutputStream(new BufferedOutputStream(fos));
+                oof.writeObject(recipe);
+                oof.flush();
+                fos.getFD().sync();
+            }
+            bytesWritten.add(tmp.length());
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmp.delete();
+        }
+        AtomicFile.syncDirectory(dir);
+        names.add(recipe.getName());
+    }
+
+    @Override
+    public Recipe get(String name) throws IOException, CorruptedFile {
+        if (!names.contains(name)) {
+            return null;
+        }
+        File file = file(name);
+        try (ObjectInputStream oif = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Recipe recipe = (Recipe) oif.readObject();
+            bytesRead.add(file.length());
+            return recipe;
+        } catch (FileNotFoundException e) {
+            // La receta se elimino mientras se leia
+            return null;
+        } catch (ClassNotFoundException | ClassCastException | EOFException | ObjectStreamException e) {
+            throw new CorruptedFile();
+        }
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        if (!names.remove(name)) {
+            return false;
+        }
+        Files.deleteIfExists(file(name).toPath());
+        AtomicFile.syncDirectory(dir);
+        return true;
+    }
+
+    /**
+     * Registra una receta cuyo archivo ha escrito otro proceso en el directorio
+     *
+     * @param name Nombre de la receta, que coincide con el del archivo sin la extension
+     */
+    void adopt(String name) {
+        names.add(name);
+    }
+
+    /**
+     * Indica si un archivo es el que usa este motor para guardar una receta
+     *
+     * @param file Archivo del directorio
+     * @param name Nombre de la receta que contiene
+     * @return true si el archivo es "nombre.dat" en el directorio del motor
+     */
+    boolean owns(File file, String name) {
+        return file.getAbsoluteFile().equals(file(name).getAbsoluteFile());
+    }
+
+    @Override
+    public ArrayList<String> names() {
+        return new ArrayList<>(names);
+    }
+
+    @Override
+    public long stamp() {
+        return -1;
+    }
+
+    @Override
+    public void sync() {
+        // Cada escritura y cada borrado ya son durables al terminar
+    }
+
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public int openFiles() {
+        return 1;
+    }
+
+    @Override
+    public long deadBytes() {
+        return 0;
+    }
+
+    @Override
+    public void compact() {
+    }
+
+    @Override
+    public IngredientStore ingredients() {
+        return ingredientLog;
+    }
+
+    @Override
+    public ArrayList<Part> capture() {
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ingredientLog.close();
+    }
+
+    private File file(String name) {
+        return new File(dir, name + EXTENSION);
+    }
+
+}
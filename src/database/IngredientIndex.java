@@ -0,0 +1,219 @@
+package database;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import objects.Ingredient;
+import objects.IngredientTable;
+import objects.Recipe;
+
+/**
+ * Indice invertido que asocia cada ingrediente con las recetas que lo usan
+ *
+ * <p>
+ * Cada receta recibe un identificador entero, y cada ingrediente una lista de
+ * recetas guardada como un {@link BitSet} indexado por ese identificador. Los
+ * identificadores de las recetas eliminadas se reutilizan, de forma que los
+ * conjuntos se mantienen densos. Las consultas combinan los conjuntos con
+ * operaciones de bits, sin leer ninguna receta.</p>
+ *
+ * <p>
+ * Los nombres de los ingredientes se comparan sin distinguir mayusculas ni
+ * espacios al principio o al final.</p>
+ *
+ * <p>
+ * El indice se construye la primera vez que se consulta; ver
+ * {@link RecipeIndex}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class IngredientIndex extends RecipeIndex {
+
+    private final HashMap<String, Integer> recipeIds = new HashMap<>();
+    private final ArrayList<String> recipeNames = new ArrayList<>();
+    private final ArrayList<int[]> recipeIngredients = new ArrayList<>();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+
+    private final HashMap<String, Integer> ingredientIds = new HashMap<>();
+    private final ArrayList<BitSet> postings = new ArrayList<>();
+
+    /**
+     * Constructor de la clase IngredientIndex
+     *
+     * @param store Almacen del que se leen las recetas al construir el indice
+     */
+    IngredientIndex(StorageEngine store) {
+        super(store);
+    }
+
+    /**
+     * Busca las recetas que cumplen una combinacion de ingredientes
+     *
+     * @param all Ingredientes que deben estar todos en la receta
+     * @param any Ingredientes de los que debe estar al menos uno; si esta vacio no se tiene en cuenta
+     * @param none Ingredientes que no deben estar en la receta
+     * @return Nombres de las recetas que cumplen la consulta
+     */
+    ArrayList<String> query(Collection<String> all, Collection<String> any, Collection<String> none) {
+        build();
+        lock.readLock().lock();
+        try {
+            BitSet result = (BitSet) live.clone();
+            for (String ingredient : all) {
+                BitSet posting = posting(ingredient);
+                if (posting == null) {
+                    return new ArrayList<>();
+                }
+                result.and(posting);
+            }
+            if (!any.isEmpty()) {
+                BitSet union = new BitSet();
+                for (String ingredient : any) {
+                    BitSet posting = posting(ingredient);
+                    if (posting != null) {
+                        union.or(posting);
+                    }
+                }
+                result.and(union);
+            }
+            for (String ingredient : none) {
+                BitSet posting = posting(ingredient);
+                if (posting != null) {
+                    result.andNot(posting);
+                }
+            }
+            return names(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca las recetas cuyos ingredientes estan todos en una despensa
+     *
+     * @param pantry Ingredientes disponibles
+     * @return Nombres de las recetas que solo usan ingredientes disponibles,
+     * sin contar las recetas que no tienen ingredientes
+     */
+    ArrayList<String> cookable(Collection<String> pantry) {
+        build();
+        lock.readLock().lock();
+        try {
+            int[] hits = new int[recipeNames.size()];
+            BitSet touched = new BitSet();
+            for (String ingredient : pantry.stream().map(IngredientIndex::key).distinct().collect(Collectors.toList())) {
+                Integer id = ingredientIds.get(ingredient);
+                if (id == null) {
+                    continue;
+                }
+                BitSet posting = postings.get(id);
+                for (int r = posting.nextSetBit(0); r >= 0; r = posting.nextSetBit(r + 1)) {
+                    hits[r]++;
+                }
+                touched.or(posting);
+            }
+            BitSet result = new BitSet();
+            for (int r = touched.nextSetBit(0); r >= 0; r = touched.nextSetBit(r + 1)) {
+                if (hits[r] == recipeIngredients.get(r).length) {
+                    result.set(r);
+                }
+            }
+            return names(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    void index(Recipe recipe) {
+        unindex(recipe.getName());
+        int id;
+        if (freeIds.isEmpty()) {
+            id = recipeNames.size();
+            recipeNames.add(recipe.getName());
+            recipeIngredients.add(null);
+        } else {
+            id = freeIds.pop();
+            recipeNames.set(id, recipe.getName());
+        }
+        int[] ingredients = ingredientNames(recipe)
+                .filter(Objects::nonNull)
+                .map(IngredientIndex::key)
+                .distinct()
+                .mapToInt(this::ingredientId)
+                .toArray();
+        for (int ingredient : ingredients) {
+            postings.get(ingredient).set(id);
+        }
+        recipeIngredients.set(id, ingredients);
+        recipeIds.put(recipe.getName(), id);
+        live.set(id);
+    }
+
+    @Override
+    void unindex(String name) {
+        Integer id = recipeIds.remove(name);
+        if (id == null) {
+            return;
+        }
+        for (int ingredient : recipeIngredients.get(id)) {
+            postings.get(ingredient).clear(id);
+        }
+        recipeIngredients.set(id, null);
+        recipeNames.set(id, null);
+        live.clear(id);
+        freeIds.push(id);
+    }
+
+    private int ingredientId(String key) {
+        Integer id = ingredientIds.get(key);
+        if (id == null) {
+            id = postings.size();
+            postings.add(new BitSet());
+            ingredientIds.put(key, id);
+        }
+        return id;
+    }
+
+    private BitSet posting(String ingredient) {
+        Integer id = ingredientIds.get(key(ingredient));
+        return id == null ? null : postings.get(id);
+    }
+
+    private ArrayList<String> names(BitSet ids) {
+        ArrayList<String> list = new ArrayList<>(ids.cardinality());
+        for (int r = ids.nextSetBit(0); r >= 0; r = ids.nextSetBit(r + 1)) {
+            list.add(recipeNames.get(r));
+        }
+        return list;
+    }
+
+    /**
+     * Nombres de los ingredientes de una receta, leidos del arreglo empaquetado si lo tiene para no crear la lista
+     */
+    static Stream<String> ingredientNames(Recipe recipe) {
+        int[] packed = recipe.getPackedIngredients();
+        if (packed != null) {
+            IngredientTable table = recipe.getIngredientTable();
+            return IntStream.range(0, IngredientTable.count(packed)).mapToObj(i -> table.name(packed, i));
+        }
+        ArrayList<Ingredient> list = recipe.getIngredients();
+        return list == null ? Stream.empty() : list.stream().map(Ingredient::getName);
+    }
+
+    /**
+     * Clave con la que se indexa un ingrediente: sin espacios alrededor y en minusculas
+     */
+    static String key(String ingredient) {
+        return ingredient.trim().toLowerCase(Locale.ROOT);
+    }
+
+}
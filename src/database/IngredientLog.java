@@ -0,0 +1,920 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import objects.DataMap;
+
+/**
+ * Almacen de ingredientes estructurado como un registro de solo escritura al final
+ *
+ * <p>
+ * El archivo empieza con una cabecera (numero magico y generacion) seguida de
+ * registros con el formato: longitud del contenido (int), CRC32 (int), tipo
+ * (byte) y contenido en UTF-8. Cada registro se localiza por la posicion
+ * exacta en la que empieza, que se guarda en un {@link DataMap} propio del
+ * registro. Las eliminaciones se guardan como registros de borrado y el
+ * espacio se recupera compactando el archivo.</p>
+ *
+ * <p>
+ * Por defecto las lecturas se hacen sobre una proyeccion en memoria del
+ * archivo ({@link MappedByteBuffer}), que se vuelve a proyectar cuando el
+ * archivo crece o se reemplaza al compactarlo.</p>
+ *
+ * <p>
+ * El mapa de datos y el archivo se protegen con un bloqueo de
+ * lectura/escritura: las lecturas de distintos hilos no se bloquean entre si,
+ * y las escrituras solo lo mantienen mientras escriben al final del archivo y
+ * actualizan el mapa. La sincronizacion con el disco se hace despues, sin el
+ * bloqueo, y la compactacion solo lo toma para copiar lo escrito mientras
+ * copiaba y reemplazar el archivo.</p>
+ *
+ * <p>
+ * El punto de control del mapa de datos se guarda en "datamap.db", junto al
+ * archivo del registro.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class IngredientLog implements IngredientStore {
+
+    /**
+     * Numero magico con el que empieza el archivo ("PIL1")
+     */
+    private static final int MAGIC = 0x50494C31;
+
+    /**
+     * Tamaño de la cabecera: numero magico y generacion
+     */
+    static final int HEADER_SIZE = 12;
+
+    /**
+     * Tamaño fijo de cada registro sin contar el contenido
+     */
+    static final int RECORD_OVERHEAD = 9;
+
+    /**
+     * Cantidad minima de bytes muertos para que convenga compactar
+     */
+    static final long COMPACTION_MIN_DEAD_BYTES = 64 * 1024;
+
+    /**
+     * Margen minimo, en bytes, que se proyecta en memoria despues del final del registro
+     */
+    static final long MAP_MIN_HEADROOM = 64 * 1024;
+
+    static final byte PUT = 0;
+    static final byte DELETE = 1;
+
+    private static final char SEPARATOR = 'ƒ';
+
+    private final File file;
+    private final File checkpoint;
+    private volatile RandomAccessFile raf;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private DataMap map;
+    private long generation;
+    private long deadBytes;
+    private volatile long end;
+    private volatile boolean mapped = true;
+    private volatile MappedByteBuffer mapping;
+    private final Object maintenance = new Object();
+    private final Object commitLock = new Object();
+    private long durable;
+    private boolean syncing;
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[256]);
+    private final ThreadLocal<CRC32> checksum = ThreadLocal.withInitial(CRC32::new);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * Constructor de la clase IngredientLog
+     *
+     * <p>
+     * Si el archivo no existe lo crea. Si existe pero fue escrito con el
+     * formato antiguo (registros de "writeUTF" sin cabecera), lo convierte al
+     * formato actual. Despues carga el mapa de datos desde el ultimo punto de
+     * control; ver {@link #load()}.</p>
+     *
+     * @param file Archivo del registro de ingredientes
+     * @throws IOException Si no se puede abrir, convertir o leer el archivo
+     */
+    IngredientLog(File file) throws IOException {
+        this.file = file;
+        this.checkpoint = new File(file.getAbsoluteFile().getParentFile(), "datamap.db");
+        if (file.exists() && file.length() > 0 && !hasHeader(file)) {
+            migrateLegacy();
+        }
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() == 0) {
+            raf.writeInt(MAGIC);
+            raf.writeLong(0);
+        }
+        raf.seek(4);
+        generation = raf.readLong();
+        end = raf.length();
+        map = load();
+    }
+
+    /**
+     * Añade un ingrediente al final del registro
+     *
+     * <p>
+     * Si el ingrediente ya existia, el registro anterior queda muerto.</p>
+     *
+     * @param name Nombre del ingrediente
+     * @param record Cadena con los datos del ingrediente en formato "nombreƒtipoƒunidad"
+     * @throws IOException Si ocurre un error de escritura
+     */
+    @Override
+    public void put(String name, String record) throws IOException {
+        lock.writeLock().lock();
+        try {
+            long start = write(PUT, record);
+            replace(name, start, (int) (end - start));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Añade varios ingredientes al final del registro con una sola escritura
+     *
+     * <p>
+     * Los registros se codifican en un unico buffer que se escribe de una vez,
+     * en el mismo orden en el que se reciben.</p>
+     *
+     * @param names Nombres de los ingredientes
+     * @param records Cadenas con los datos de cada ingrediente en formato "nombreƒtipoƒunidad"
+     * @throws IOException Si ocurre un error de escritura
+     */
+    @Override
+    public void putAll(List<String> names, List<String> records) throws IOException {
+        int n = records.size();
+        byte[][] data = new byte[n][];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            data[i] = records.get(i).getBytes(StandardCharsets.UTF_8);
+            total += RECORD_OVERHEAD + data[i].length;
+        }
+        byte[] buf = new byte[total];
+        int off = 0;
+        for (int i = 0; i < n; i++) {
+            int length = data[i].length;
+            writeInt(buf, off, length);
+            buf[off + 8] = PUT;
+            System.arraycopy(data[i], 0, buf, off + RECORD_OVERHEAD, length);
+            writeInt(buf, off + 4, crc(buf, off + 8, length + 1));
+            off += RECORD_OVERHEAD + length;
+        }
+        lock.writeLock().lock();
+        try {
+            long start = end;
+            raf.seek(start);
+            raf.write(buf);
+            end = start + total;
+            bytesWritten.add(total);
+            long pos = start;
+            for (int i = 0; i < n; i++) {
+                int size = RECORD_OVERHEAD + data[i].length;
+                replace(names.get(i), pos, size);
+                pos += size;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lee un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @return Cadena con los datos del ingrediente, o null si no existe
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si el registro no supera la verificacion de CRC
+     */
+    @Override
+    public String get(String name) throws IOException, CorruptedFile {
+        lock.readLock().lock();
+        try {
+            DataMap.Entry entry = map.searchData(name);
+            return entry == null ? null : read(entry.loc(), entry.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Añade un registro de borrado para un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @return true si se elimino, false si no existia
+     * @throws IOException Si ocurre un error de escritura
+     */
+    @Override
+    public boolean delete(String name) throws IOException {
+        lock.writeLock().lock();
+        try {
+            DataMap.Entry old = map.searchData(name);
+            if (old == null) {
+                return false;
+            }
+            long start = write(DELETE, name);
+            deadBytes += old.size() + (end - start);
+            map.removeData(name);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve los nombres de los ingredientes vivos
+     *
+     * @return Lista de nombres, que se puede modificar sin afectar al registro
+     */
+    @Override
+    public ArrayList<String> names() {
+        lock.readLock().lock();
+        try {
+            return map.getData();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Espera a que todo lo escrito hasta ahora este sincronizado con el disco
+     *
+     * @throws IOException Si ocurre un error al sincronizar
+     * @see #commit(long)
+     */
+    @Override
+    public void sync() throws IOException {
+        commit(end);
+    }
+
+    /**
+     * Guarda el mapa de datos en "datamap.db"
+     *
+     * <p>
+     * Con el bloqueo de lectura solo se copia el mapa y se registra en la
+     * copia la generacion y el tamaño actual del registro, para poder
+     * detectar al cargarlo si esta desactualizado. La copia se escribe
+     * despues, sin el bloqueo, con {@link AtomicFile}, por lo que una caida
+     * nunca deja el archivo a medias. Los puntos de control no se solapan
+     * con otros ni con una compactacion, de forma que uno anterior nunca
+     * reemplaza a uno mas reciente.</p>
+     *
+     * @throws IOException Si ocurre un error de escritura
+     * @see DataMap#write(java.io.DataOutput)
+     */
+    @Override
+    public void checkpoint() throws IOException {
+        synchronized (maintenance) {
+            DataMap copy;
+            lock.readLock().lock();
+            try {
+                copy = map.copy();
+                copy.setStamp(generation, end);
+            } finally {
+                lock.readLock().unlock();
+            }
+            AtomicFile.write(checkpoint, copy::write);
+        }
+    }
+
+    /**
+     * Indica si conviene compactar
+     *
+     * @return true si hay al menos {@value #COMPACTION_MIN_DEAD_BYTES} bytes
+     * muertos y son al menos la mitad del archivo
+     */
+    @Override
+    public boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return deadBytes >= COMPACTION_MIN_DEAD_BYTES && deadBytes * 2 >= end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Activa o desactiva las lecturas sobre la proyeccion en memoria del archivo
+     *
+     * @param mapped true para leer desde la proyeccion en memoria, false para
+     * leer con accesos al archivo
+     */
+    @Override
+    public void setMapped(boolean mapped) {
+        this.mapped = mapped;
+        if (!mapped) {
+            mapping = null;
+        }
+    }
+
+    /**
+     * Reescribe el archivo dejando solo los registros vivos y lo reemplaza de forma atomica
+     *
+     * <p>
+     * La copia se hace en dos fases. Primero se anotan los registros vivos y
+     * el final del archivo con el bloqueo de lectura, y se copian sin ningun
+     * bloqueo, por lo que las lecturas y escrituras siguen mientras tanto.
+     * Despues, con el bloqueo de escritura, se copian tal cual los registros
+     * escritos desde que se anoto el final (incluidos los de borrado), se
+     * aplican al nuevo mapa de datos y se reemplaza el archivo. Las
+     * compactaciones no se solapan entre si.</p>
+     *
+     * <p>
+     * Antes de cerrar el archivo anterior espera a que termine la
+     * sincronizacion en curso, y no deja empezar otra hasta que el archivo
+     * compactado esta abierto. Como el archivo compactado ya esta
+     * sincronizado, despues del cambio todo su contenido es durable.</p>
+     *
+     * <p>
+     * Si algo falla antes de reemplazar el archivo, se borra el archivo
+     * temporal y el registro sigue abierto sobre el archivo original, sin
+     * perder lo que ya era durable.</p>
+     *
+     * @throws IOException Si ocurre un error de escritura
+     * @throws CorruptedFile Si alguno de los registros vivos esta dañado
+     */
+    @Override
+    public void compact() throws IOException, CorruptedFile {
+        synchronized (maintenance) {
+            File tmp = new File(file.getPath() + ".tmp");
+            boolean swapped = false;
+            RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+            try {
+                ArrayList<DataMap.Entry> live;
+                long cut;
+                DataMap compacted;
+                lock.readLock().lock();
+                try {
+                    live = map.getEntries();
+                    cut = end;
+                    compacted = new DataMap(map.getId());
+                } finally {
+                    lock.readLock().unlock();
+                }
+                // Solo la compactacion reemplaza el archivo, por lo que el canal sigue siendo valido
+                FileChannel channel = raf.getChannel();
+                out.setLength(0);
+                out.writeInt(MAGIC);
+                out.writeLong(generation + 1);
+                for (DataMap.Entry entry : live) {
+                    byte[] buf = new byte[entry.size()];
+                    readFully(channel, buf, entry.loc());
+                    if (crc(buf, 8, buf.length - 8) != readInt(buf, 4)) {
+                        throw new CorruptedFile();
+                    }
+                    compacted.addData(entry.name(), out.getFilePointer(), buf.length);
+                    out.write(buf);
+                }
+                lock.writeLock().lock();
+                try {
+                    byte[] tail = new byte[(int) (end - cut)];
+                    readFully(channel, tail, cut);
+                    apply(compacted, tail, out.getFilePointer());
+                    out.write(tail);
+                    out.getChannel().force(true);
+                    out.close();
+                    awaitSync();
+                    long length = -1;
+                    try {
+                        raf.close();
+                        mapping = null;
+                        try {
+                            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                            swapped = true;
+                        } finally {
+                            // Si no se pudo reemplazar, el archivo original sigue intacto y se vuelve a abrir
+                            raf = new RandomAccessFile(file, "rw");
+                        }
+                        generation++;
+                        length = raf.length();
+                        end = length;
+                        map = compacted;
+                        deadBytes = deadBytes(compacted, length);
+                        AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile());
+                    } finally {
+                        synchronized (commitLock) {
+                            syncing = false;
+                            if (length >= 0) {
+                                durable = length;
+                            }
+                            commitLock.notifyAll();
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                out.close();
+                if (!swapped) {
+                    tmp.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Devuelve la generacion del archivo, que aumenta en cada compactacion
+     *
+     * @return Generacion del archivo
+     */
+    long getGeneration() {
+        lock.readLock().lock();
+        try {
+            return generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve el tamaño actual del archivo
+     *
+     * @return Tamaño en bytes
+     */
+    long length() {
+        return end;
+    }
+
+    /**
+     * Devuelve la cantidad de bytes ocupados por registros muertos
+     *
+     * @return Bytes muertos
+     */
+    long getDeadBytes() {
+        lock.readLock().lock();
+        try {
+            return deadBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de bytes leidos de registros desde que se abrio el archivo
+     *
+     * @return Bytes leidos
+     */
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Devuelve la cantidad de bytes escritos en el archivo desde que se abrio
+     *
+     * @return Bytes escritos
+     */
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Anota el estado actual del registro para una copia de seguridad
+     *
+     * <p>
+     * Quien llama debe impedir que se escriba en el registro mientras se
+     * anota, pero no mientras se copia: el registro solo crece y la parte
+     * tiene su propio canal, que sigue leyendo el archivo anterior si una
+     * compactacion lo reemplaza.</p>
+     *
+     * @return Parte abierta, que quien llama debe cerrar
+     * @throws IOException Si no se puede abrir el registro
+     */
+    StorageEngine.Part capture() throws IOException {
+        lock.readLock().lock();
+        try {
+            return StorageEngine.Part.open(file, end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cierra el archivo del registro
+     *
+     * <p>
+     * Antes de cerrarlo recorta el margen de ceros que haya dejado la
+     * proyeccion en memoria. Si el sistema no permite recortarlo mientras
+     * sigue proyectado, el margen se descarta al volver a abrirlo.</p>
+     *
+     * @throws IOException Si ocurre un error al cerrar
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            awaitSync();
+            try {
+                mapping = null;
+                try {
+                    if (raf.length() > end) {
+                        raf.setLength(end);
+                    }
+                } catch (IOException e) {
+                    // Se descarta en la siguiente apertura; ver replay()
+                }
+                raf.close();
+            } finally {
+                synchronized (commitLock) {
+                    syncing = false;
+                    commitLock.notifyAll();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Carga el mapa de datos desde el ultimo punto de control
+     *
+     * <p>
+     * Si "datamap.db" corresponde a la generacion actual del registro, se le
+     * aplican los registros escritos despues de su punto de control. Si no
+     * existe, esta dañado o incompleto, no tiene el formato binario (por
+     * ejemplo, un mapa antiguo guardado con serializacion de Java) o es de
+     * otra generacion, se reconstruye recorriendo todo el registro.</p>
+     *
+     * @return Mapa de datos con la posicion de cada ingrediente vivo
+     * @throws IOException Si ocurre un error de lectura del registro
+     */
+    private DataMap load() throws IOException {
+        DataMap loaded = null;
+        if (checkpoint.exists()) {
+            try (DataInputStream in = AtomicFile.open(checkpoint)) {
+                loaded = DataMap.read(in);
+            } catch (CorruptedFile | IOException e) {
+                loaded = null;
+            }
+        }
+        if (loaded != null && loaded.getGeneration() == generation
+                && loaded.getPosition() >= HEADER_SIZE && loaded.getPosition() <= end) {
+            replay(loaded, loaded.getPosition());
+            return loaded;
+        }
+        loaded = new DataMap("datamap");
+        replay(loaded, HEADER_SIZE);
+        return loaded;
+    }
+
+    /**
+     * Aplica sobre un mapa de datos los registros escritos a partir de una posicion
+     *
+     * <p>
+     * Se usa para recuperar el estado a partir del ultimo punto de control
+     * del mapa de datos. Un registro incompleto o con CRC invalido al final
+     * del archivo se considera una escritura interrumpida y se descarta
+     * truncando el archivo, despues de copiar lo descartado a
+     * "quarantine/". Si lo que queda son solo ceros, es el margen de la
+     * proyeccion en memoria de una ejecucion que no se cerro bien, y se
+     * recorta sin copiarlo.</p>
+     *
+     * @param live Mapa de datos al que se aplican los registros
+     * @param from Posicion del primer registro a aplicar
+     * @throws IOException Si ocurre un error de lectura
+     */
+    private void replay(DataMap live, long from) throws IOException {
+        long pos = from;
+        long length = raf.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipNBytes(from);
+            while (pos + RECORD_OVERHEAD <= length) {
+                int size = in.readInt();
+                int crc = in.readInt();
+                if (size < 0 || pos + RECORD_OVERHEAD + size > length) {
+                    break;
+                }
+                byte[] buf = new byte[size + 1];
+                in.readFully(buf);
+                if (crc(buf, 0, buf.length) != crc) {
+                    break;
+                }
+                String payload = new String(buf, 1, size, StandardCharsets.UTF_8);
+                if (buf[0] == PUT) {
+                    live.addData(nameOf(payload), pos, RECORD_OVERHEAD + size);
+                } else {
+                    live.removeData(payload);
+                }
+                pos += RECORD_OVERHEAD + size;
+            }
+        }
+        if (pos < length) {
+            if (!zeros(raf.getChannel(), pos, length)) {
+                Quarantine.copy(file.getAbsoluteFile().getParentFile(), file.getName(), raf.getChannel(), pos, length);
+            }
+            mapping = null;
+            raf.setLength(pos);
+        }
+        end = pos;
+        deadBytes = deadBytes(live, pos);
+    }
+
+    /**
+     * Indica si una parte del archivo contiene solo ceros
+     */
+    private static boolean zeros(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = from;
+        while (pos < to) {
+            buf.clear().limit((int) Math.min(buf.capacity(), to - pos));
+            int n = channel.read(buf, pos);
+            if (n <= 0) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) != 0) {
+                    return false;
+                }
+            }
+            pos += n;
+        }
+        return true;
+    }
+
+    /**
+     * Aplica sobre un mapa de datos los registros copiados al final de un archivo
+     *
+     * @param live Mapa de datos al que se aplican los registros
+     * @param buf Registros completos, tal como estaban en el archivo
+     * @param base Posicion del archivo en la que empieza el primer registro
+     */
+    private static void apply(DataMap live, byte[] buf, long base) {
+        int off = 0;
+        while (off < buf.length) {
+            int length = readInt(buf, off);
+            String payload = new String(buf, off + RECORD_OVERHEAD, length, StandardCharsets.UTF_8);
+            if (buf[off + 8] == PUT) {
+                live.addData(nameOf(payload), base + off, RECORD_OVERHEAD + length);
+            } else {
+                live.removeData(payload);
+            }
+            off += RECORD_OVERHEAD + length;
+        }
+    }
+
+    /**
+     * Calcula los bytes muertos de un archivo a partir de su mapa de datos
+     *
+     * @param live Mapa de datos con los registros vivos
+     * @param length Tamaño del archivo
+     * @return Bytes que no ocupan la cabecera ni los registros vivos
+     */
+    private static long deadBytes(DataMap live, long length) {
+        long used = 0;
+        for (DataMap.Entry entry : live.getEntries()) {
+            used += entry.size();
+        }
+        return length - HEADER_SIZE - used;
+    }
+
+    /**
+     * Espera a que todo lo escrito hasta una posicion este sincronizado con el disco
+     *
+     * <p>
+     * Implementa una confirmacion en grupo: el primer hilo que llega
+     * sincroniza el archivo completo y los hilos que llegan mientras tanto
+     * esperan a esa sincronizacion o a la siguiente, en lugar de hacer una
+     * cada uno.</p>
+     *
+     * <p>
+     * La sincronizacion se hace sin el bloqueo del registro, para no frenar
+     * las escrituras. {@link #compact()} y {@link #close()} esperan a que
+     * termine antes de cerrar el archivo, por lo que no puede cambiar mientras
+     * se sincroniza.</p>
+     *
+     * @param position Posicion final del ultimo registro que debe ser durable
+     * @throws IOException Si ocurre un error al sincronizar
+     */
+    private void commit(long position) throws IOException {
+        synchronized (commitLock) {
+            while (durable < position && syncing) {
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (durable >= position) {
+                return;
+            }
+            syncing = true;
+        }
+        long target = 0;
+        try {
+            RandomAccessFile current = raf;
+            // Sin el bloqueo del registro, que puede tener compact() esperando a esta sincronizacion
+            long length = end;
+            current.getChannel().force(false);
+            target = length;
+        } finally {
+            synchronized (commitLock) {
+                syncing = false;
+                durable = Math.max(durable, target);
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Espera a que termine la sincronizacion en curso y bloquea las siguientes
+     *
+     * <p>
+     * Quien la llama debe volver a permitirlas poniendo "syncing" a false con
+     * el bloqueo de las confirmaciones.</p>
+     *
+     * @throws InterruptedIOException Si se interrumpe la espera
+     */
+    private void awaitSync() throws InterruptedIOException {
+        synchronized (commitLock) {
+            while (syncing) {
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            syncing = true;
+        }
+    }
+
+    /**
+     * Apunta en el mapa de datos la posicion de un ingrediente escrito
+     *
+     * <p>
+     * Quien la llama debe tener el bloqueo de escritura.</p>
+     */
+    private void replace(String name, long loc, int size) {
+        DataMap.Entry old = map.searchData(name);
+        if (old != null) {
+            deadBytes += old.size();
+        }
+        map.addData(name, loc, size);
+    }
+
+    /**
+     * Lee el contenido de un registro
+     *
+     * @param loc Posicion de inicio del registro
+     * @param size Tamaño total del registro
+     * @return Contenido del registro
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si el registro no supera la verificacion de CRC
+     */
+    private String read(long loc, int size) throws IOException, CorruptedFile {
+        byte[] buf = scratch.get();
+        if (buf.length < size) {
+            buf = new byte[Math.max(size, buf.length * 2)];
+            scratch.set(buf);
+        }
+        MappedByteBuffer view = mapping;
+        if (mapped && loc + size <= Integer.MAX_VALUE) {
+            if (view == null || loc + size > view.capacity()) {
+                view = remap();
+            }
+            if (loc + size > view.capacity()) {
+                throw new CorruptedFile();
+            }
+            view.get((int) loc, buf, 0, size);
+        } else {
+            readFully(raf.getChannel(), ByteBuffer.wrap(buf, 0, size), loc);
+        }
+        bytesRead.add(size);
+        int length = readInt(buf, 0);
+        CRC32 crc = checksum.get();
+        crc.reset();
+        crc.update(buf, 8, size - 8);
+        if (length != size - RECORD_OVERHEAD || (int) crc.getValue() != readInt(buf, 4) || buf[8] != PUT) {
+            throw new CorruptedFile();
+        }
+        return new String(buf, RECORD_OVERHEAD, length, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, byte[] buf, long loc) throws IOException, CorruptedFile {
+        readFully(channel, ByteBuffer.wrap(buf), loc);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer dst, long loc) throws IOException, CorruptedFile {
+        int start = dst.position();
+        while (dst.hasRemaining() && channel.read(dst, loc + dst.position() - start) > 0) {
+            // Una lectura posicional puede devolver menos bytes de los pedidos
+        }
+        if (dst.hasRemaining()) {
+            throw new CorruptedFile();
+        }
+    }
+
+    /**
+     * Vuelve a proyectar el archivo en memoria dejando margen para que pueda crecer
+     *
+     * <p>
+     * La proyeccion cubre el final del registro mas la mitad de su tamaño
+     * (al menos {@value #MAP_MIN_HEADROOM} bytes), para que leer un registro
+     * recien escrito no obligue a proyectar de nuevo. Proyectar mas alla del
+     * final extiende el archivo con ceros, que las escrituras van ocupando;
+     * ver {@link #replay(DataMap, long)} y {@link #close()}.</p>
+     *
+     * @return Proyeccion actual del archivo
+     * @throws IOException Si no se puede proyectar el archivo
+     */
+    private synchronized MappedByteBuffer remap() throws IOException {
+        long length = end;
+        if (mapping == null || mapping.capacity() < length) {
+            long capacity = Math.min(length + Math.max(MAP_MIN_HEADROOM, length / 2), Integer.MAX_VALUE);
+            mapping = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+        }
+        return mapping;
+    }
+
+    private long write(byte kind, String payload) throws IOException {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+        byte[] buf = new byte[RECORD_OVERHEAD + data.length];
+        writeInt(buf, 0, data.length);
+        buf[8] = kind;
+        System.arraycopy(data, 0, buf, RECORD_OVERHEAD, data.length);
+        writeInt(buf, 4, crc(buf, 8, data.length + 1));
+        long start = end;
+        raf.seek(start);
+        raf.write(buf);
+        end = start + buf.length;
+        bytesWritten.add(buf.length);
+        return start;
+    }
+
+    private void migrateLegacy() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+                RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeLong(0);
+            raf = out;
+            end = HEADER_SIZE;
+            while (in.getFilePointer() < in.length()) {
+                write(PUT, in.readUTF());
+            }
+            out.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    private static boolean hasHeader(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return in.length() >= HEADER_SIZE && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Devuelve el nombre del ingrediente de un registro
+     *
+     * @param payload Cadena con los datos del ingrediente en formato "nombreƒtipoƒunidad"
+     * @return Nombre del ingrediente
+     */
+    private static String nameOf(String payload) {
+        int end = payload.indexOf(SEPARATOR);
+        return end == -1 ? payload : payload.substring(0, end);
+    }
+
+    private static int crc(byte[] buf, int off, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, off, len);
+        return (int) crc.getValue();
+    }
+
+    private static int readInt(byte[] buf, int off) {
+        return ((buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16) | ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] buf, int off, int v) {
+        buf[off] = (byte) (v >>> 24);
+        buf[off + 1] = (byte) (v >>> 16);
+        buf[off + 2] = (byte) (v >>> 8);
+        buf[off + 3] = (byte) v;
+    }
+
+}
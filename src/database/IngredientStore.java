@@ -0,0 +1,145 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Almacen de los ingredientes de {@link Database}, proporcionado por el motor de almacenamiento
+ *
+ * <p>
+ * Guarda cada ingrediente por su nombre como una cadena en formato
+ * "nombreƒtipoƒunidad". Como se localiza cada ingrediente y como se recupera
+ * el espacio de los reemplazados o borrados es cosa de cada almacen.</p>
+ *
+ * <p>
+ * Las implementaciones deben poder usarse desde varios hilos. La base de
+ * datos nunca escribe ni borra ingredientes desde dos hilos a la vez, pero
+ * las lecturas, los puntos de control y la compactacion pueden coincidir con
+ * cualquier escritura.</p>
+ *
+ * @author Grupo C [Backend]
+ * @see StorageEngine#ingredients()
+ */
+public interface IngredientStore extends Closeable {
+
+    /**
+     * Escribe un ingrediente, reemplazando el que tenga el mismo nombre
+     *
+     * <p>
+     * La escritura no es durable hasta llamar a {@link #sync()}.</p>
+     *
+     * @param name Nombre del ingrediente
+     * @param record Cadena con los datos del ingrediente en formato "nombreƒtipoƒunidad"
+     * @throws IOException Si ocurre un error de escritura
+     */
+    void put(String name, String record) throws IOException;
+
+    /**
+     * Escribe varios ingredientes con una sola escritura
+     *
+     * <p>
+     * Las escrituras no son durables hasta llamar a {@link #sync()}.</p>
+     *
+     * @param names Nombres de los ingredientes
+     * @param records Cadenas con los datos de cada ingrediente en formato "nombreƒtipoƒunidad", en el mismo orden
+     * @throws IOException Si ocurre un error de escritura
+     */
+    void putAll(List<String> names, List<String> records) throws IOException;
+
+    /**
+     * Lee un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @return Cadena con los datos del ingrediente en formato "nombreƒtipoƒunidad", o null si no existe
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si el ingrediente guardado esta dañado
+     */
+    String get(String name) throws IOException, CorruptedFile;
+
+    /**
+     * Elimina un ingrediente
+     *
+     * <p>
+     * El borrado no es durable hasta llamar a {@link #sync()}.</p>
+     *
+     * @param name Nombre del ingrediente
+     * @return true si se elimino, false si no existia
+     * @throws IOException Si ocurre un error de escritura
+     */
+    boolean delete(String name) throws IOException;
+
+    /**
+     * Devuelve los nombres de todos los ingredientes guardados
+     *
+     * @return Lista de nombres, que se puede modificar sin afectar al almacen
+     */
+    ArrayList<String> names();
+
+    /**
+     * Espera a que todas las escrituras y borrados hechos hasta ahora sean durables
+     *
+     * <p>
+     * Se llama sin ningun bloqueo de la base de datos, para que los hilos
+     * que escriben a la vez puedan compartir una misma sincronizacion.</p>
+     *
+     * @throws IOException Si ocurre un error al sincronizar
+     */
+    void sync() throws IOException;
+
+    /**
+     * Guarda un punto de control que acorta la apertura del almacen
+     *
+     * <p>
+     * Los almacenes que no se conservan al cerrarlos no hacen nada.</p>
+     *
+     * @throws IOException Si ocurre un error de escritura
+     */
+    void checkpoint() throws IOException;
+
+    /**
+     * Indica si los ingredientes reemplazados o borrados ocupan suficiente espacio como para compactar
+     *
+     * @return true si conviene llamar a {@link #compact()}
+     */
+    boolean needsCompaction();
+
+    /**
+     * Recupera el espacio de los ingredientes reemplazados o borrados
+     *
+     * <p>
+     * Los almacenes que no dejan espacio sin usar no hacen nada.</p>
+     *
+     * @throws IOException Si ocurre un error de lectura o escritura
+     * @throws CorruptedFile Si alguno de los ingredientes vivos esta dañado
+     */
+    void compact() throws IOException, CorruptedFile;
+
+    /**
+     * Activa o desactiva las lecturas sobre una proyeccion en memoria de los datos
+     *
+     * <p>
+     * Los almacenes que no leen de archivos no hacen nada.</p>
+     *
+     * @param mapped true para leer desde la proyeccion en memoria, false para
+     * leer con accesos al archivo
+     */
+    void setMapped(boolean mapped);
+
+    /**
+     * Devuelve la cantidad de bytes leidos desde que se abrio el almacen
+     *
+     * @return Bytes leidos
+     */
+    long bytesRead();
+
+    /**
+     * Devuelve la cantidad de bytes escritos desde que se abrio el almacen
+     *
+     * @return Bytes escritos
+     */
+    long bytesWritten();
+
+}
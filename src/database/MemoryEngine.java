@@ -0,0 +1,122 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import objects.IngredientTable;
+import objects.Recipe;
+import objects.RecipeCodec;
+
+/**
+ * Motor de almacenamiento que guarda las recetas en memoria
+ *
+ * <p>
+ * Cada receta se guarda codificada con {@link RecipeCodec}, de forma que
+ * ocupa lo mismo que en los segmentos y que los cambios que se hagan despues
+ * sobre el objeto escrito no afectan a la receta guardada. Los ingredientes
+ * se guardan en un {@link MemoryIngredientStore}. Nada se escribe en disco:
+ * las recetas y los ingredientes se pierden al cerrar el motor, y no se
+ * pueden hacer copias de seguridad.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class MemoryEngine implements StorageEngine {
+
+    private final ConcurrentHashMap<String, byte[]> recipes = new ConcurrentHashMap<>();
+    private final ThreadLocal<RecipeCodec> codecs;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final MemoryIngredientStore ingredientStore = new MemoryIngredientStore();
+
+    /**
+     * Constructor de la clase MemoryEngine
+     *
+     * @param ingredients Tabla en la que se empaquetan los ingredientes de las recetas leidas
+     */
+    MemoryEngine(IngredientTable ingredients) {
+        this.codecs = ThreadLocal.withInitial(() -> new RecipeCodec(ingredients));
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return recipes.containsKey(name);
+    }
+
+    @Override
+    public void put(Recipe recipe) {
+        byte[] body = codecs.get().encode(recipe);
+        recipes.put(recipe.getName(), body);
+        bytesWritten.add(body.length);
+    }
+
+    @Override
+    public Recipe get(String name) throws CorruptedFile {
+        byte[] body = recipes.get(name);
+        if (body == null) {
+            return null;
+        }
+        bytesRead.add(body.length);
+        return codecs.get().decode(body, 0, body.length);
+    }
+
+    @Override
+    public boolean delete(String name) {
+        return recipes.remove(name) != null;
+    }
+
+    @Override
+    public ArrayList<String> names() {
+        return new ArrayList<>(recipes.keySet());
+    }
+
+    @Override
+    public long stamp() {
+        return -1;
+    }
+
+    @Override
+    public void sync() {
+    }
+
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public int openFiles() {
+        return 0;
+    }
+
+    @Override
+    public long deadBytes() {
+        return 0;
+    }
+
+    @Override
+    public void compact() {
+    }
+
+    @Override
+    public IngredientStore ingredients() {
+        return ingredientStore;
+    }
+
+    @Override
+    public ArrayList<Part> capture() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        recipes.clear();
+        ingredientStore.close();
+    }
+
+}
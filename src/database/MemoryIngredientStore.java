@@ -0,0 +1,93 @@
+package database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Almacen de ingredientes en memoria
+ *
+ * <p>
+ * Guarda cada ingrediente por su nombre en un mapa concurrente. Nada se
+ * escribe en disco: los ingredientes se pierden al cerrar el almacen, y no
+ * hay nada que sincronizar ni compactar.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class MemoryIngredientStore implements IngredientStore {
+
+    private final ConcurrentHashMap<String, String> ingredients = new ConcurrentHashMap<>();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    @Override
+    public void put(String name, String record) {
+        ingredients.put(name, record);
+        bytesWritten.add(record.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Override
+    public void putAll(List<String> names, List<String> records) {
+        for (int i = 0; i < names.size(); i++) {
+            put(names.get(i), records.get(i));
+        }
+    }
+
+    @Override
+    public String get(String name) {
+        String record = ingredients.get(name);
+        if (record != null) {
+            bytesRead.add(record.getBytes(StandardCharsets.UTF_8).length);
+        }
+        return record;
+    }
+
+    @Override
+    public boolean delete(String name) {
+        return ingredients.remove(name) != null;
+    }
+
+    @Override
+    public ArrayList<String> names() {
+        return new ArrayList<>(ingredients.keySet());
+    }
+
+    @Override
+    public void sync() {
+    }
+
+    @Override
+    public void checkpoint() {
+    }
+
+    @Override
+    public boolean needsCompaction() {
+        return false;
+    }
+
+    @Override
+    public void compact() {
+    }
+
+    @Override
+    public void setMapped(boolean mapped) {
+    }
+
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public void close() {
+        ingredients.clear();
+    }
+
+}
@@ -0,0 +1,87 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Indice ordenado de nombres para autocompletar
+ *
+ * <p>
+ * Cada nombre se guarda como una clave formada por el nombre en minusculas y
+ * sin acentos ({@link TextIndex#fold(String)}) seguido del nombre original,
+ * en un conjunto ordenado. Las claves que empiezan por un prefijo estan
+ * seguidas en el conjunto, por lo que obtener las primeras k es O(log n + k)
+ * y no depende de la cantidad de nombres.</p>
+ *
+ * <p>
+ * El conjunto es concurrente: las busquedas no toman bloqueos y pueden
+ * ejecutarse mientras se añaden o eliminan nombres.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class PrefixIndex {
+
+    /**
+     * Separa el nombre normalizado del original; es menor que cualquier otro caracter
+     */
+    private static final char SEPARATOR = '\0';
+
+    private final ConcurrentSkipListSet<String> keys = new ConcurrentSkipListSet<>();
+
+    /**
+     * Constructor de la clase PrefixIndex
+     *
+     * @param names Nombres con los que se inicializa el indice
+     */
+    PrefixIndex(Collection<String> names) {
+        for (String name : names) {
+            add(name);
+        }
+    }
+
+    /**
+     * Añade un nombre al indice; si ya estaba no hace nada
+     *
+     * @param name Nombre a añadir
+     */
+    void add(String name) {
+        keys.add(key(name));
+    }
+
+    /**
+     * Quita un nombre del indice
+     *
+     * @param name Nombre a quitar
+     */
+    void remove(String name) {
+        keys.remove(key(name));
+    }
+
+    /**
+     * Devuelve los primeros nombres, en orden alfabetico, que empiezan por un prefijo
+     *
+     * @param prefix Prefijo a completar, sin distinguir mayusculas ni acentos
+     * @param limit Cantidad maxima de resultados
+     * @return Nombres originales que empiezan por el prefijo
+     */
+    ArrayList<String> complete(String prefix, int limit) {
+        String folded = TextIndex.fold(prefix);
+        ArrayList<String> result = new ArrayList<>(Math.max(0, Math.min(limit, 16)));
+        if (limit <= 0) {
+            return result;
+        }
+        for (String key : keys.tailSet(folded)) {
+            if (!key.startsWith(folded) || result.size() >= limit) {
+                break;
+            }
+            result.add(key.substring(key.indexOf(SEPARATOR) + 1));
+        }
+        return result;
+    }
+
+    private static String key(String name) {
+        return TextIndex.fold(name) + SEPARATOR + name;
+    }
+
+}
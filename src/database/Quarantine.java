@@ -0,0 +1,85 @@
+package database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Aparta los datos dañados en el subdirectorio "quarantine/" de la base de datos
+ *
+ * <p>
+ * Al arrancar, los datos que no superan la comprobacion de CRC no detienen
+ * la base de datos: se copian o se mueven aqui para poder examinarlos o
+ * recuperarlos a mano, y la base de datos sigue con el resto. Cada archivo
+ * apartado lleva en el nombre el momento en que se aparto, para no
+ * sobrescribir otros anteriores. No se escribe nada en la consola: los
+ * metodos devuelven el archivo apartado y basta con listar el
+ * subdirectorio para saber que se ha apartado.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class Quarantine {
+
+    private Quarantine() {
+    }
+
+    /**
+     * Copia el final de un archivo que se va a descartar
+     *
+     * @param dir Directorio de la base de datos
+     * @param name Nombre del archivo, que se usa en el de la copia
+     * @param channel Canal del archivo
+     * @param from Posicion del primer byte descartado
+     * @param to Posicion final del archivo
+     * @return Archivo con la copia
+     * @throws IOException Si no se puede escribir la copia
+     */
+    static File copy(File dir, String name, FileChannel channel, long from, long to) throws IOException {
+        File target = target(dir, name + "@" + from);
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = from;
+            while (position < to) {
+                long copied = channel.transferTo(position, to - position, out);
+                if (copied <= 0) {
+                    break;
+                }
+                position += copied;
+            }
+            out.force(true);
+        }
+        AtomicFile.syncDirectory(target.getParentFile());
+        return target;
+    }
+
+    /**
+     * Mueve un archivo dañado completo
+     *
+     * @param dir Directorio de la base de datos
+     * @param file Archivo dañado
+     * @return Nueva ubicacion del archivo
+     * @throws IOException Si no se puede mover el archivo
+     */
+    static File move(File dir, File file) throws IOException {
+        File target = target(dir, file.getName());
+        Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        AtomicFile.syncDirectory(target.getParentFile());
+        AtomicFile.syncDirectory(dir);
+        return target;
+    }
+
+    private static File target(File dir, String name) throws IOException {
+        File quarantine = new File(dir, "quarantine");
+        Files.createDirectories(quarantine.toPath());
+        long time = System.currentTimeMillis();
+        File target = new File(quarantine, name + "." + time + ".bad");
+        // Dos archivos apartados en el mismo milisegundo no se sobrescriben
+        for (int n = 1; target.exists(); n++) {
+            target = new File(quarantine, name + "." + time + "-" + n + ".bad");
+        }
+        return target;
+    }
+
+}
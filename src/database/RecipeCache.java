@@ -0,0 +1,422 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import objects.Ingredient;
+import objects.IngredientTable;
+import objects.Recipe;
+
+/**
+ * Cache de recetas leidas, limitada por el peso estimado en memoria
+ *
+ * <p>
+ * Las entradas se reparten en {@value #SHARDS} particiones segun el hash del
+ * nombre, cada una con su propio bloqueo y una parte proporcional del peso
+ * maximo. Dentro de cada particion las entradas se mantienen en orden de uso
+ * y se expulsa la menos usada recientemente.</p>
+ *
+ * <p>
+ * Con la politica {@link Database.CachePolicy#TINY_LFU} cada particion cuenta
+ * ademas la frecuencia aproximada de acceso a cada nombre con un sketch
+ * count-min de contadores de 4 bits que se reducen a la mitad
+ * periodicamente, y reserva el {@value #WINDOW_PERCENT}% de su peso para una
+ * ventana LRU en la que entra toda receta nueva. La receta que sale de la
+ * ventana solo pasa a la parte principal si se ha pedido mas veces que las
+ * que tendria que expulsar de ella, de forma que un recorrido puntual de
+ * muchas recetas no desplaza a las que se usan a menudo, pero una receta que
+ * se pide varias veces seguidas tiene tiempo de acumular frecuencia.</p>
+ *
+ * <p>
+ * Las recetas con los ingredientes empaquetados se pesan solo con el arreglo
+ * empaquetado. Para que sigan pesando lo mismo, la cache nunca entrega la
+ * instancia que guarda, sino una copia que comparte el arreglo
+ * ({@link #share(Recipe)}): crear la lista de ingredientes de la copia no la
+ * crea en la receta guardada.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class RecipeCache {
+
+    private static final int SHARDS = 16;
+
+    /**
+     * Porcentaje del peso de cada particion reservado para la ventana de admision de TinyLFU
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    private final Shard[] shards;
+    private final Database.CachePolicy policy;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Node(Recipe recipe, long weight) {
+    }
+
+    private static final class Shard {
+
+        final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<String, Node> map = new LinkedHashMap<>(16, 0.75f, true);
+        final long capacity;
+        final long windowCapacity;
+        final FrequencySketch sketch;
+        /**
+         * Peso de todas las entradas, incluidas las de la ventana
+         */
+        long weight;
+        long windowWeight;
+
+        Shard(long capacity, long windowCapacity, FrequencySketch sketch) {
+            this.capacity = capacity;
+            this.windowCapacity = windowCapacity;
+            this.sketch = sketch;
+        }
+
+        Node get(String name) {
+            Node node = window.get(name);
+            return node != null ? node : map.get(name);
+        }
+
+        Node remove(String name) {
+            Node node = window.remove(name);
+            if (node != null) {
+                windowWeight -= node.weight();
+            } else {
+                node = map.remove(name);
+            }
+            if (node != null) {
+                weight -= node.weight();
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Constructor de la clase RecipeCache
+     *
+     * @param maxWeight Peso maximo estimado, en bytes, de las recetas guardadas
+     * @param policy Politica de admision y expulsion
+     */
+    RecipeCache(long maxWeight, Database.CachePolicy policy) {
+        this.policy = policy;
+        shards = new Shard[SHARDS];
+        long capacity = Math.max(0, maxWeight / SHARDS);
+        for (int i = 0; i < SHARDS; i++) {
+            if (policy == Database.CachePolicy.TINY_LFU) {
+                shards[i] = new Shard(capacity, capacity * WINDOW_PERCENT / 100, new FrequencySketch(capacity));
+            } else {
+                shards[i] = new Shard(capacity, 0, null);
+            }
+        }
+    }
+
+    /**
+     * Devuelve una receta de la cache
+     *
+     * @param name Nombre de la receta
+     * @return Receta, o null si no esta en la cache
+     */
+    Recipe get(String name) {
+        Shard shard = shard(name);
+        Node node;
+        synchronized (shard) {
+            if (shard.sketch != null) {
+                shard.sketch.increment(name);
+            }
+            node = shard.get(name);
+        }
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return share(node.recipe());
+    }
+
+    /**
+     * Devuelve una receta de la cache sin contarla en las estadisticas
+     *
+     * <p>
+     * No cambia la frecuencia de la politica TinyLFU ni los contadores de
+     * aciertos y fallos, de forma que un recorrido completo del catalogo no
+     * falsea las estadisticas de la cache.</p>
+     *
+     * @param name Nombre de la receta
+     * @return Receta, o null si no esta en la cache
+     */
+    Recipe peek(String name) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            Node node = shard.get(name);
+            return node == null ? null : share(node.recipe());
+        }
+    }
+
+    /**
+     * Guarda una receta en la cache si no habia otra con el mismo nombre
+     *
+     * @param name Nombre de la receta
+     * @param recipe Receta leida
+     * @return La receta que ya estaba en la cache, o null si no habia ninguna
+     */
+    Recipe putIfAbsent(String name, Recipe recipe) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            Node node = shard.get(name);
+            if (node != null) {
+                return share(node.recipe());
+            }
+            insert(shard, name, recipe);
+            return null;
+        }
+    }
+
+    /**
+     * Guarda una receta en la cache, reemplazando la que hubiera con el mismo nombre
+     *
+     * @param name Nombre de la receta
+     * @param recipe Receta escrita
+     */
+    void put(String name, Recipe recipe) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            shard.remove(name);
+            insert(shard, name, recipe);
+        }
+    }
+
+    /**
+     * Quita una receta de la cache
+     *
+     * @param name Nombre de la receta
+     */
+    void invalidate(String name) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            shard.remove(name);
+        }
+    }
+
+    /**
+     * Quita una receta de la cache solo si es la instancia dada
+     *
+     * @param name Nombre de la receta
+     * @param recipe Receta que se espera encontrar
+     */
+    void invalidate(String name, Recipe recipe) {
+        Shard shard = shard(name);
+        synchronized (shard) {
+            Node old = shard.get(name);
+            if (old != null && old.recipe() == recipe) {
+                shard.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Devuelve los contadores y la ocupacion actual de la cache
+     *
+     * @return Estadisticas de la cache
+     */
+    Database.CacheStats stats() {
+        long weight = 0;
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                weight += shard.weight;
+                size += shard.map.size() + shard.window.size();
+            }
+        }
+        return new Database.CacheStats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
+    }
+
+    /**
+     * Estima el tamaño en memoria de una receta
+     *
+     * <p>
+     * Cuenta las cabeceras de los objetos y un byte por caracter, que es lo
+     * que ocupan las cadenas compactas de Java con texto latino. Los
+     * ingredientes empaquetados en una {@link IngredientTable} solo cuentan su
+     * arreglo, porque las cadenas estan en los diccionarios compartidos.</p>
+     *
+     * @param recipe Receta
+     * @return Peso estimado en bytes
+     */
+    static long weigh(Recipe recipe) {
+        long weight = 64 + weigh(recipe.getName()) + weigh(recipe.getDescription()) + weigh(recipe.getInstructions());
+        int[] packed = recipe.getPackedIngredients();
+        if (packed != null) {
+            weight += 16 + 4L * packed.length;
+        } else if (recipe.getIngredients() != null) {
+            weight += 24 + 8L * recipe.getIngredients().size();
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                weight += 32 + weigh(ingredient.getName()) + weigh(ingredient.getType()) + weigh(ingredient.getUnit());
+            }
+        }
+        return weight;
+    }
+
+    private static long weigh(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    /**
+     * Receta que se entrega en lugar de la guardada en la cache
+     *
+     * <p>
+     * Si la receta tiene los ingredientes empaquetados se entrega una copia
+     * que comparte el arreglo, para que la receta guardada siga pesando lo
+     * que se estimo al guardarla.</p>
+     *
+     * @param recipe Receta guardada en la cache
+     * @return Copia de la receta, o la misma receta si usa una lista de ingredientes
+     */
+    static Recipe share(Recipe recipe) {
+        Recipe copy = recipe.sharePacked();
+        return copy != null ? copy : recipe;
+    }
+
+    private void insert(Shard shard, String name, Recipe recipe) {
+        long weight = weigh(recipe);
+        if (weight > shard.capacity) {
+            return;
+        }
+        Node node = new Node(recipe, weight);
+        if (shard.sketch == null) {
+            shard.map.put(name, node);
+            shard.weight += weight;
+            Iterator<Node> eldest = shard.map.values().iterator();
+            while (shard.weight > shard.capacity && eldest.hasNext()) {
+                Node victim = eldest.next();
+                if (victim == node) {
+                    break;
+                }
+                eldest.remove();
+                shard.weight -= victim.weight();
+                evictions.increment();
+            }
+            return;
+        }
+        shard.window.put(name, node);
+        shard.weight += weight;
+        shard.windowWeight += weight;
+        Iterator<Map.Entry<String, Node>> eldest = shard.window.entrySet().iterator();
+        while (shard.windowWeight > shard.windowCapacity && eldest.hasNext()) {
+            Map.Entry<String, Node> candidate = eldest.next();
+            eldest.remove();
+            shard.weight -= candidate.getValue().weight();
+            shard.windowWeight -= candidate.getValue().weight();
+            admit(shard, candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * Pasa a la parte principal de una particion TinyLFU una receta que sale de la ventana
+     *
+     * <p>
+     * Si no cabe, solo entra si se ha pedido mas veces que cada una de las
+     * recetas menos usadas recientemente que tendria que expulsar; si no, se
+     * descarta ella y la parte principal queda como estaba.</p>
+     */
+    private void admit(Shard shard, String name, Node node) {
+        long capacity = shard.capacity - shard.windowCapacity;
+        long needed = shard.weight - shard.windowWeight + node.weight() - capacity;
+        if (node.weight() > capacity) {
+            evictions.increment();
+            return;
+        }
+        ArrayList<String> victims = new ArrayList<>();
+        int frequency = shard.sketch.frequency(name);
+        for (Map.Entry<String, Node> victim : shard.map.entrySet()) {
+            if (needed <= 0) {
+                break;
+            }
+            if (frequency <= shard.sketch.frequency(victim.getKey())) {
+                evictions.increment();
+                return;
+            }
+            victims.add(victim.getKey());
+            needed -= victim.getValue().weight();
+        }
+        for (String victim : victims) {
+            shard.weight -= shard.map.remove(victim).weight();
+            evictions.increment();
+        }
+        shard.map.put(name, node);
+        shard.weight += node.weight();
+    }
+
+    private Shard shard(String name) {
+        int h = name.hashCode();
+        return shards[(h ^ (h >>> 16)) & (SHARDS - 1)];
+    }
+
+    /**
+     * Sketch count-min con contadores de 4 bits que estima cuantas veces se ha pedido cada nombre
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long capacity) {
+            // Se estima una receta de unos 2 KB para dimensionar el sketch
+            int entries = (int) Math.min(1 << 22, Math.max(64, capacity / 2048));
+            int size = Integer.highestOneBit(entries - 1) << 1;
+            table = new long[size];
+            mask = size - 1;
+            sampleSize = 10 * entries;
+        }
+
+        void increment(String name) {
+            int h = name.hashCode();
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = index(h, i);
+                int offset = counter(h, i);
+                if (((table[index] >>> offset) & 0xF) < 15) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String name) {
+            int h = name.hashCode();
+            int min = 15;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, (int) ((table[index(h, i)] >>> counter(h, i)) & 0xF));
+            }
+            return min;
+        }
+
+        private int index(int h, int i) {
+            long x = (h + SEEDS[i]) * SEEDS[i];
+            return (int) (x >>> 32) & mask;
+        }
+
+        private int counter(int h, int i) {
+            long x = (h ^ SEEDS[i]) * 0x2545F4914F6CDD1DL;
+            return (int) ((x >>> 60) << 2);
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+            }
+            additions /= 2;
+        }
+    }
+
+}
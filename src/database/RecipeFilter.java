@@ -0,0 +1,127 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import objects.Recipe;
+import objects.TimeField;
+
+/**
+ * Condiciones que deben cumplir las recetas recorridas con
+ * {@link Database#streamRecipes(RecipeFilter)}
+ *
+ * <p>
+ * Las condiciones se combinan con "y". La base de datos las resuelve con sus
+ * indices antes de leer ninguna receta, de forma que solo se decodifican las
+ * recetas que las cumplen: el prefijo del nombre con el indice de nombres,
+ * los rangos de tiempo con el indice de tiempos y los ingredientes con el
+ * indice invertido de ingredientes.</p>
+ *
+ * <pre>{@code
+ * RecipeFilter filter = new RecipeFilter().namePrefix("tarta").time(TimeField.TOTAL_TIME, 0, 45).ingredient("manzana");
+ * }</pre>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class RecipeFilter {
+
+    private String namePrefix;
+    private String foldedPrefix;
+    private final EnumMap<TimeField, int[]> times = new EnumMap<>(TimeField.class);
+    private final ArrayList<String> ingredients = new ArrayList<>();
+
+    /**
+     * Crea un filtro sin condiciones, que admite todas las recetas
+     */
+    public RecipeFilter() {
+    }
+
+    /**
+     * Exige que el nombre de la receta empiece por un prefijo
+     *
+     * @param prefix Comienzo del nombre, sin distinguir mayusculas ni acentos
+     * @return Este mismo filtro
+     */
+    public RecipeFilter namePrefix(String prefix) {
+        namePrefix = prefix;
+        foldedPrefix = prefix == null ? null : TextIndex.fold(prefix);
+        return this;
+    }
+
+    /**
+     * Exige que un tiempo de la receta este dentro de un rango
+     *
+     * <p>
+     * Si se llama varias veces con el mismo campo, se queda el ultimo
+     * rango.</p>
+     *
+     * @param field Campo de tiempo
+     * @param min Tiempo minimo, incluido
+     * @param max Tiempo maximo, incluido
+     * @return Este mismo filtro
+     */
+    public RecipeFilter time(TimeField field, int min, int max) {
+        times.put(field, new int[]{min, max});
+        return this;
+    }
+
+    /**
+     * Exige que la receta use un ingrediente
+     *
+     * @param name Nombre del ingrediente, sin distinguir mayusculas
+     * @return Este mismo filtro
+     */
+    public RecipeFilter ingredient(String name) {
+        ingredients.add(name);
+        return this;
+    }
+
+    String getNamePrefix() {
+        return namePrefix;
+    }
+
+    Map<TimeField, int[]> getTimes() {
+        return Collections.unmodifiableMap(times);
+    }
+
+    List<String> getIngredients() {
+        return Collections.unmodifiableList(ingredients);
+    }
+
+    /**
+     * Comprueba si una receta cumple todas las condiciones
+     *
+     * <p>
+     * Se usa sobre cada receta leida, por si cambio entre la consulta a los
+     * indices y su lectura.</p>
+     *
+     * @param recipe Receta leida
+     * @return true si la receta cumple el filtro
+     */
+    boolean test(Recipe recipe) {
+        if (foldedPrefix != null && !TextIndex.fold(recipe.getName()).startsWith(foldedPrefix)) {
+            return false;
+        }
+        for (Map.Entry<TimeField, int[]> e : times.entrySet()) {
+            int time = e.getKey().of(recipe);
+            if (time < e.getValue()[0] || time > e.getValue()[1]) {
+                return false;
+            }
+        }
+        if (!ingredients.isEmpty()) {
+            Set<String> used = IngredientIndex.ingredientNames(recipe).filter(Objects::nonNull).map(IngredientIndex::key).collect(Collectors.toSet());
+            for (String ingredient : ingredients) {
+                if (!used.contains(IngredientIndex.key(ingredient))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,145 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import objects.Recipe;
+
+/**
+ * Base de los indices secundarios que se calculan a partir del contenido de las recetas
+ *
+ * <p>
+ * El indice se construye la primera vez que se consulta, leyendo las
+ * recetas del almacen en paralelo por tandas, y a partir de ahi se actualiza con cada
+ * escritura y borrado de recetas. Mientras no se ha construido, las
+ * actualizaciones se ignoran porque la construccion ya las vera en el
+ * almacen.</p>
+ *
+ * <p>
+ * Las subclases guardan sus datos protegidos por {@link #lock}:
+ * {@link #index(Recipe)} y {@link #unindex(String)} se llaman con el bloqueo
+ * de escritura tomado, y las consultas deben llamar a {@link #build()} y
+ * despues tomar el bloqueo de lectura.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+abstract class RecipeIndex {
+
+    /**
+     * Cantidad de recetas que se leen en paralelo antes de registrarlas en el indice
+     */
+    static final int BUILD_BATCH = 1024;
+
+    final StorageEngine store;
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    boolean built;
+
+    /**
+     * Constructor de la clase RecipeIndex
+     *
+     * @param store Almacen del que se leen las recetas al construir el indice
+     */
+    RecipeIndex(StorageEngine store) {
+        this.store = store;
+    }
+
+    /**
+     * Registra una receta en el indice, reemplazando la anterior con el mismo nombre
+     *
+     * @param recipe Receta escrita
+     */
+    final void add(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                index(recipe);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita una receta del indice
+     *
+     * @param name Nombre de la receta eliminada
+     */
+    final void remove(String name) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                unindex(name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Construye el indice leyendo todas las recetas, si todavia no se habia construido
+     *
+     * <p>
+     * Las recetas se leen en paralelo en tandas de {@link #BUILD_BATCH} y se
+     * registran al terminar cada tanda, de forma que nunca hay mas que una
+     * tanda de recetas en memoria. Todo se hace con el bloqueo de escritura
+     * tomado, por lo que las escrituras y borrados que lleguen mientras tanto
+     * esperan y se aplican despues.</p>
+     */
+    final void build() {
+        lock.readLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+            ArrayList<String> names = store.names();
+            for (int from = 0; from < names.size(); from += BUILD_BATCH) {
+                List<Recipe> batch = names.subList(from, Math.min(from + BUILD_BATCH, names.size())).parallelStream()
+                        .map(this::load)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                for (Recipe recipe : batch) {
+                    index(recipe);
+                }
+            }
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registra una receta en las estructuras del indice, quitando antes la anterior con el mismo nombre
+     *
+     * @param recipe Receta a registrar
+     */
+    abstract void index(Recipe recipe);
+
+    /**
+     * Quita una receta de las estructuras del indice, si estaba
+     *
+     * @param name Nombre de la receta
+     */
+    abstract void unindex(String name);
+
+    private Recipe load(String name) {
+        try {
+            return store.get(name);
+        } catch (IOException | CorruptedFile e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+}
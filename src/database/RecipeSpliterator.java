@@ -0,0 +1,84 @@
+package database;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import objects.Recipe;
+
+/**
+ * Recorre una lista de recetas leyendolas de una en una
+ *
+ * <p>
+ * Solo guarda los nombres de las recetas; cada receta se lee y decodifica al
+ * llegar a ella y puede liberarse en cuanto se procesa, por lo que un
+ * recorrido completo del catalogo no lo carga entero en memoria. Las recetas
+ * que ya no existen o no cumplen el filtro se saltan. Se divide por mitades
+ * para los recorridos en paralelo.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class RecipeSpliterator implements Spliterator<Recipe> {
+
+    /**
+     * Cantidad minima de nombres para dividir el recorrido
+     */
+    private static final int MIN_SPLIT = 64;
+
+    private final String[] names;
+    private int from;
+    private final int to;
+    private final Function<String, Recipe> reader;
+    private final RecipeFilter filter;
+
+    /**
+     * Constructor de la clase RecipeSpliterator
+     *
+     * @param names Nombres de las recetas a recorrer
+     * @param from Primera posicion, incluida
+     * @param to Ultima posicion, excluida
+     * @param reader Funcion que lee una receta por su nombre, o devuelve null si no existe
+     * @param filter Condiciones que deben cumplir las recetas
+     */
+    RecipeSpliterator(String[] names, int from, int to, Function<String, Recipe> reader, RecipeFilter filter) {
+        this.names = names;
+        this.from = from;
+        this.to = to;
+        this.reader = reader;
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Recipe> action) {
+        while (from < to) {
+            Recipe recipe = reader.apply(names[from++]);
+            if (recipe != null && filter.test(recipe)) {
+                action.accept(recipe);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<Recipe> trySplit() {
+        int remaining = to - from;
+        if (remaining < MIN_SPLIT) {
+            return null;
+        }
+        int mid = from + remaining / 2;
+        RecipeSpliterator prefix = new RecipeSpliterator(names, from, mid, reader, filter);
+        from = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | DISTINCT;
+    }
+
+}
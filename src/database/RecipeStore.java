@@ -0,0 +1,819 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import objects.DataMap;
+import objects.IngredientTable;
+import objects.Recipe;
+import objects.RecipeCodec;
+
+/**
+ * Almacen de recetas en unos pocos archivos de segmento grandes
+ *
+ * <p>
+ * Las recetas se escriben al final del segmento activo ("recipes-NNNN.seg").
+ * Cuando el segmento supera {@link #SEGMENT_SIZE} se abre uno nuevo. Cada
+ * registro tiene el formato: longitud del contenido (int), CRC32 (int),
+ * version del formato (byte), tipo (byte) y contenido, que empieza por el
+ * nombre de la receta. Las recetas se codifican con {@link RecipeCodec}. Un
+ * {@link DataMap} guardado en "recipes.idx" asocia
+ * cada nombre con su segmento y posicion.</p>
+ *
+ * <p>
+ * Los segmentos se sincronizan con el disco por lotes de {@link #SYNC_BATCH}
+ * escrituras. El indice solo se guarda al llamar a {@link #sync()} o al
+ * cerrar el almacen; si no corresponde al estado de los segmentos se
+ * reconstruye leyendo todos los segmentos en paralelo y comprobando el CRC de
+ * cada registro; los registros dañados se apartan con {@link Quarantine} en
+ * lugar de impedir que se abra el almacen. El indice se guarda con
+ * {@link AtomicFile}, por lo que nunca queda a medio escribir.</p>
+ *
+ * <p>
+ * Los registros reemplazados o borrados siguen ocupando espacio hasta que
+ * {@link #compact()} reescribe los segmentos cerrados con solo los registros
+ * vivos. Los nombres de las recetas se guardan con una longitud de 16 bits,
+ * en los registros en UTF-8 y en el indice en el UTF-8 modificado de
+ * {@link java.io.DataOutput#writeUTF(String)}, por lo que no pueden ocupar
+ * mas de {@link #MAX_KEY_LENGTH} bytes en ninguno de los dos.</p>
+ *
+ * <p>
+ * Las escrituras al final del segmento activo estan sincronizadas. El indice
+ * se protege con un bloqueo de lectura/escritura que solo se mantiene
+ * mientras se consulta o modifica en memoria, de forma que las lecturas de
+ * distintos hilos no se bloquean entre si ni esperan a la escritura en
+ * disco de otro hilo.</p>
+ *
+ * <p>
+ * Es el motor de almacenamiento {@link StorageEngine#SEGMENTS}, el que usa
+ * la base de datos por defecto. Los ingredientes se guardan en un
+ * {@link IngredientLog} sobre "ingredients.db" en el mismo directorio.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class RecipeStore implements StorageEngine {
+
+    /**
+     * Numero magico con el que empieza cada segmento ("PRS1")
+     */
+    private static final int MAGIC = 0x50525331;
+
+    private static final int SEGMENT_HEADER = 4;
+
+    /**
+     * Tamaño fijo de cada registro sin contar el contenido
+     */
+    static final int RECORD_OVERHEAD = 10;
+
+    /**
+     * Tamaño a partir del cual se abre un nuevo segmento
+     */
+    static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Cantidad de escrituras que se agrupan en una sola sincronizacion con el disco
+     */
+    static final int SYNC_BATCH = 64;
+
+    /**
+     * Version del formato de registro basado en {@link RecipeCodec}
+     */
+    static final byte VERSION_CODEC = 2;
+
+    static final byte PUT = 0;
+    static final byte DELETE = 1;
+
+    /**
+     * Longitud maxima en bytes del nombre de una receta, en UTF-8 y en UTF-8 modificado
+     */
+    static final int MAX_KEY_LENGTH = 0xFFFF;
+
+    private static final int OFFSET_BITS = 40;
+
+    private final File dir;
+    private final long segmentSize;
+    private final File indexFile;
+    private final CopyOnWriteArrayList<RandomAccessFile> segments;
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    /**
+     * Bloqueo de los archivos de los segmentos: las lecturas lo toman para
+     * leer, y la compactacion para cambiar un segmento por su version compacta
+     */
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Object compaction = new Object();
+    private DataMap index;
+    /**
+     * Bytes de registros vivos de cada segmento, modificado con el bloqueo del almacen
+     */
+    private long[] live = new long[0];
+    private int pending;
+    private final ThreadLocal<RecipeCodec> codecs;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final IngredientLog ingredientLog;
+
+    /**
+     * Constructor de la clase RecipeStore
+     *
+     * @param dir Directorio donde se guardan los segmentos y el indice
+     * @param ingredients Tabla en la que se empaquetan los ingredientes de las recetas leidas
+     * @throws IOException Si no se pueden abrir los segmentos o "ingredients.db"
+     */
+    RecipeStore(File dir, IngredientTable ingredients) throws IOException {
+        this(dir, ingredients, SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor de la clase RecipeStore con un tamaño de segmento dado, para las pruebas
+     *
+     * @param dir Directorio donde se guardan los segmentos y el indice
+     * @param ingredients Tabla en la que se empaquetan los ingredientes de las recetas leidas
+     * @param segmentSize Tamaño a partir del cual se abre un nuevo segmento
+     * @throws IOException Si no se pueden abrir los segmentos o "ingredients.db"
+     */
+    RecipeStore(File dir, IngredientTable ingredients, long segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.codecs = ThreadLocal.withInitial(() -> new RecipeCodec(ingredients));
+        this.indexFile = new File(dir, "recipes.idx");
+        this.segments = new CopyOnWriteArrayList<>();
+        File[] leftover = dir.listFiles((d, name) -> name.startsWith("recipes-") && name.endsWith(".seg.tmp"));
+        if (leftover != null) {
+            // Copias de una compactacion interrumpida antes de cambiar el segmento
+            for (File f : leftover) {
+                f.delete();
+            }
+        }
+        File[] found = dir.listFiles((d, name) -> name.startsWith("recipes-") && name.endsWith(".seg"));
+        if (found != null) {
+            Arrays.sort(found, Comparator.comparing(File::getName));
+            for (File f : found) {
+                segments.add(new RandomAccessFile(f, "rw"));
+            }
+        }
+        if (segments.isEmpty()) {
+            openSegment();
+        }
+        index = loadIndex();
+        if (index == null) {
+            index = scan();
+        }
+        live = new long[segments.size()];
+        for (DataMap.Entry entry : index.getEntries()) {
+            live[segment(entry.loc())] += entry.size();
+        }
+        ingredientLog = new IngredientLog(new File(dir, "ingredients.db"));
+    }
+
+    /**
+     * Indica si existe una receta con el nombre dado
+     *
+     * @param name Nombre de la receta
+     * @return true si existe, false si no
+     */
+    @Override
+    public boolean contains(String name) {
+        indexLock.readLock().lock();
+        try {
+            return index.searchData(name) != null;
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Escribe una receta al final del segmento activo
+     *
+     * @param recipe Receta a escribir
+     * @throws IOException Si ocurre un error de escritura
+     * @throws IllegalArgumentException Si el nombre ocupa mas de {@link #MAX_KEY_LENGTH} bytes
+     */
+    @Override
+    public void put(Recipe recipe) throws IOException {
+        byte[] key = key(recipe.getName());
+        byte[] body = codecs.get().encode(recipe);
+        synchronized (this) {
+            DataMap.Entry entry = write(PUT, recipe.getName(), key, body);
+            DataMap.Entry old;
+            indexLock.writeLock().lock();
+            try {
+                old = index.searchData(recipe.getName());
+                index.addData(recipe.getName(), entry.loc(), entry.size());
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+            if (old != null) {
+                live[segment(old.loc())] -= old.size();
+            }
+            live[segment(entry.loc())] += entry.size();
+            afterWrite();
+        }
+    }
+
+    /**
+     * Lee una receta
+     *
+     * <p>
+     * Solo la busqueda en el indice se hace con el bloqueo del indice; la
+     * lectura y decodificacion del registro pueden ejecutarse en paralelo
+     * desde varios hilos. La lectura del registro solo espera a una
+     * compactacion mientras esta cambia un segmento por su version
+     * compacta.</p>
+     *
+     * @param name Nombre de la receta
+     * @return Receta leida, o null si no existe
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si el registro esta dañado
+     */
+    @Override
+    public Recipe get(String name) throws IOException, CorruptedFile {
+        swapLock.readLock().lock();
+        try {
+            DataMap.Entry entry;
+            indexLock.readLock().lock();
+            try {
+                entry = index.searchData(name);
+            } finally {
+                indexLock.readLock().unlock();
+            }
+            if (entry == null) {
+                return null;
+            }
+            return read(entry, segments.get(segment(entry.loc())).getChannel());
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina una receta escribiendo un registro de borrado
+     *
+     * @param name Nombre de la receta
+     * @return true si se elimino, false si no existia
+     * @throws IOException Si ocurre un error de escritura
+     */
+    @Override
+    public synchronized boolean delete(String name) throws IOException {
+        DataMap.Entry old;
+        indexLock.readLock().lock();
+        try {
+            old = index.searchData(name);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+        if (old == null) {
+            return false;
+        }
+        write(DELETE, name, key(name), new byte[0]);
+        indexLock.writeLock().lock();
+        try {
+            index.removeData(name);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        live[segment(old.loc())] -= old.size();
+        afterWrite();
+        return true;
+    }
+
+    /**
+     * Devuelve los nombres de todas las recetas guardadas
+     *
+     * @return Lista de nombres
+     */
+    @Override
+    public ArrayList<String> names() {
+        indexLock.readLock().lock();
+        try {
+            return index.getData();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve una marca del estado actual de los segmentos
+     *
+     * <p>
+     * La marca combina el segmento activo y su tamaño, y cambia con cada
+     * escritura o borrado. Sirve para saber si un indice derivado de las
+     * recetas y guardado aparte sigue correspondiendo a los segmentos.</p>
+     *
+     * @return Marca del estado de los segmentos
+     * @throws IOException Si no se puede consultar el tamaño del segmento activo
+     */
+    @Override
+    public synchronized long stamp() throws IOException {
+        return pack(segments.size() - 1, active().length());
+    }
+
+    /**
+     * Sincroniza el segmento activo con el disco y guarda el indice
+     *
+     * @throws IOException Si ocurre un error de escritura
+     */
+    @Override
+    public synchronized void sync() throws IOException {
+        active().getChannel().force(false);
+        pending = 0;
+        // Solo este método, con el bloqueo del almacen, modifica la marca del indice
+        indexLock.readLock().lock();
+        try {
+            index.setStamp(segments.size() - 1, active().length());
+            AtomicFile.write(indexFile, index::write);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de bytes leidos de registros desde que se abrio el almacen
+     *
+     * @return Bytes leidos
+     */
+    @Override
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Devuelve la cantidad de bytes escritos en los segmentos desde que se abrio el almacen
+     *
+     * @return Bytes escritos
+     */
+    @Override
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Devuelve la cantidad de segmentos abiertos mas "ingredients.db"
+     *
+     * @return Archivos abiertos
+     */
+    @Override
+    public int openFiles() {
+        return segments.size() + 1;
+    }
+
+    /**
+     * Devuelve la cantidad de bytes de los segmentos cerrados que ocupan
+     * registros reemplazados o borrados
+     *
+     * <p>
+     * Es el espacio que recupera {@link #compact()}. Los registros muertos
+     * del segmento activo no se cuentan, porque no se compacta hasta que se
+     * cierra.</p>
+     *
+     * @return Bytes muertos de los segmentos cerrados
+     * @throws IOException Si no se puede consultar el tamaño de los segmentos
+     */
+    @Override
+    public synchronized long deadBytes() throws IOException {
+        long dead = 0;
+        for (int s = 0; s < segments.size() - 1; s++) {
+            dead += segments.get(s).length() - SEGMENT_HEADER - live[s];
+        }
+        return dead;
+    }
+
+    /**
+     * Reescribe los segmentos cerrados dejando solo los registros vivos
+     *
+     * <p>
+     * Cada segmento con registros muertos se copia a "recipes-NNNN.seg.tmp"
+     * con los registros a los que apunta el indice, y la copia se renombra de
+     * forma atomica sobre el segmento. Los registros de borrado se descartan:
+     * como los segmentos se compactan en orden, los segmentos anteriores ya
+     * no contienen la receta que borraban. El numero de cada segmento no
+     * cambia, por lo que solo hay que actualizar en el indice la posicion de
+     * los registros copiados.</p>
+     *
+     * <p>
+     * La copia se hace sin bloquear las escrituras ni las lecturas; solo el
+     * cambio de cada segmento por su copia espera a las lecturas en curso. Un
+     * registro que se reemplaza o borra mientras se copia sigue siendo
+     * correcto despues, porque el registro nuevo esta en un segmento
+     * posterior. Antes de cambiar cada segmento se borra "recipes.idx", de
+     * forma que si se interrumpe la compactacion el indice se reconstruye al
+     * abrir el almacen; al terminar se vuelve a guardar.</p>
+     *
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    @Override
+    public void compact() throws IOException {
+        synchronized (compaction) {
+            int sealed;
+            synchronized (this) {
+                sealed = segments.size() - 1;
+            }
+            if (sealed <= 0) {
+                return;
+            }
+            List<ArrayList<DataMap.Entry>> moved = new ArrayList<>();
+            for (int s = 0; s < sealed; s++) {
+                moved.add(new ArrayList<>());
+            }
+            indexLock.readLock().lock();
+            try {
+                for (DataMap.Entry entry : index.getEntries()) {
+                    int s = segment(entry.loc());
+                    if (s < sealed) {
+                        moved.get(s).add(entry);
+                    }
+                }
+            } finally {
+                indexLock.readLock().unlock();
+            }
+            boolean changed = false;
+            for (int s = 0; s < sealed; s++) {
+                ArrayList<DataMap.Entry> entries = moved.get(s);
+                entries.sort(Comparator.comparingLong(DataMap.Entry::loc));
+                long liveBytes = entries.stream().mapToLong(DataMap.Entry::size).sum();
+                if (segments.get(s).length() - SEGMENT_HEADER == liveBytes) {
+                    // Sin registros muertos ni borrados: la copia seria igual al segmento
+                    continue;
+                }
+                compactSegment(s, entries);
+                changed = true;
+            }
+            if (changed) {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * Copia los registros dados de un segmento cerrado a un segmento nuevo y lo cambia por el original
+     *
+     * @param s Numero del segmento
+     * @param entries Registros vivos del segmento, ordenados por posicion
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    private void compactSegment(int s, ArrayList<DataMap.Entry> entries) throws IOException {
+        File file = new File(dir, String.format("recipes-%04d.seg", s));
+        File tmp = new File(dir, file.getName() + ".tmp");
+        long[] locs = new long[entries.size()];
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            FileChannel from = segments.get(s).getChannel();
+            FileChannel to = out.getChannel();
+            long pos = SEGMENT_HEADER;
+            for (int i = 0; i < locs.length; i++) {
+                DataMap.Entry entry = entries.get(i);
+                long offset = entry.loc() & ((1L << OFFSET_BITS) - 1);
+                long copied = 0;
+                while (copied < entry.size()) {
+                    long n = from.transferTo(offset + copied, entry.size() - copied, to.position(pos + copied));
+                    if (n <= 0) {
+                        throw new EOFException(file.getName());
+                    }
+                    copied += n;
+                }
+                bytesRead.add(copied);
+                bytesWritten.add(copied);
+                locs[i] = pack(s, pos);
+                pos += entry.size();
+            }
+            to.force(false);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        swapLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                // Un indice guardado con las posiciones anteriores ya no sirve; se vuelve a guardar al terminar
+                if (Files.deleteIfExists(indexFile.toPath())) {
+                    AtomicFile.syncDirectory(dir);
+                }
+                segments.get(s).close();
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                AtomicFile.syncDirectory(dir);
+                segments.set(s, new RandomAccessFile(file, "rw"));
+                long liveBytes = 0;
+                indexLock.writeLock().lock();
+                try {
+                    for (int i = 0; i < locs.length; i++) {
+                        DataMap.Entry entry = entries.get(i);
+                        DataMap.Entry current = index.searchData(entry.name());
+                        // Si se reemplazo o borro mientras se copiaba, el registro nuevo esta en un segmento posterior
+                        if (current != null && current.loc() == entry.loc()) {
+                            index.addData(entry.name(), locs[i], entry.size());
+                            liveBytes += entry.size();
+                        }
+                    }
+                } finally {
+                    indexLock.writeLock().unlock();
+                }
+                live[s] = liveBytes;
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve el registro de ingredientes "ingredients.db"
+     *
+     * @return Registro de ingredientes
+     */
+    @Override
+    public IngredientStore ingredients() {
+        return ingredientLog;
+    }
+
+    /**
+     * Anota el estado actual de los segmentos y de "ingredients.db" para una copia de seguridad
+     *
+     * <p>
+     * Los segmentos solo crecen, por lo que basta con anotar su tamaño con
+     * el bloqueo del almacen para obtener un estado consistente: la copia
+     * termina en ese punto aunque se sigan escribiendo recetas mientras se
+     * hace. Cada segmento se abre de nuevo para la copia, de forma que una
+     * compactacion posterior puede reemplazarlo sin esperar a que termine.
+     * El registro de ingredientes se anota igual; ver
+     * {@link IngredientLog#capture()}.</p>
+     *
+     * @return Partes abiertas, una por segmento y la de "ingredients.db", que quien llama debe cerrar
+     * @throws IOException Si no se puede abrir algun archivo
+     */
+    @Override
+    public ArrayList<Part> capture() throws IOException {
+        ArrayList<Part> parts = new ArrayList<>();
+        swapLock.readLock().lock();
+        try {
+            synchronized (this) {
+                for (int s = 0; s < segments.size(); s++) {
+                    parts.add(Part.open(new File(dir, String.format("recipes-%04d.seg", s)), segments.get(s).length()));
+                }
+            }
+            parts.add(ingredientLog.capture());
+        } catch (IOException e) {
+            for (Part part : parts) {
+                part.close();
+            }
+            throw e;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        return parts;
+    }
+
+    /**
+     * Sincroniza los datos pendientes y cierra los segmentos y "ingredients.db"
+     *
+     * @throws IOException Si ocurre un error al cerrar
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+            for (RandomAccessFile segment : segments) {
+                segment.close();
+            }
+        } finally {
+            ingredientLog.close();
+        }
+    }
+
+    private void afterWrite() throws IOException {
+        if (++pending >= SYNC_BATCH) {
+            active().getChannel().force(false);
+            pending = 0;
+        }
+    }
+
+    private DataMap.Entry write(byte kind, String name, byte[] key, byte[] body) throws IOException {
+        int length = 2 + key.length + body.length;
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_OVERHEAD + length);
+        buf.putInt(length);
+        buf.putInt(0);
+        buf.put(VERSION_CODEC);
+        buf.put(kind);
+        buf.putShort((short) key.length);
+        buf.put(key);
+        buf.put(body);
+        buf.putInt(4, crc(buf.array(), 8, length + 2));
+        if (active().length() >= segmentSize) {
+            active().getChannel().force(false);
+            openSegment();
+        }
+        RandomAccessFile segment = active();
+        long start = segment.length();
+        segment.seek(start);
+        segment.write(buf.array());
+        bytesWritten.add(buf.capacity());
+        return new DataMap.Entry(name, pack(segments.size() - 1, start), buf.capacity());
+    }
+
+    private Recipe read(DataMap.Entry entry, FileChannel channel) throws IOException, CorruptedFile {
+        long offset = entry.loc() & ((1L << OFFSET_BITS) - 1);
+        ByteBuffer buf = ByteBuffer.allocate(entry.size());
+        while (buf.hasRemaining() && channel.read(buf, offset + buf.position()) > 0) {
+            // Una lectura posicional puede devolver menos bytes de los pedidos
+        }
+        bytesRead.add(buf.position());
+        int length = buf.getInt(0);
+        if (buf.hasRemaining() || length != entry.size() - RECORD_OVERHEAD
+                || crc(buf.array(), 8, length + 2) != buf.getInt(4) || buf.get(9) != PUT) {
+            throw new CorruptedFile();
+        }
+        int keyLength = buf.getShort(10) & 0xFFFF;
+        int bodyStart = 12 + keyLength;
+        return decode(buf.get(8), buf.array(), bodyStart, buf.capacity() - bodyStart);
+    }
+
+    private DataMap loadIndex() {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = AtomicFile.open(indexFile)) {
+            DataMap map = DataMap.read(in);
+            if (map.getGeneration() == segments.size() - 1 && map.getPosition() == active().length()) {
+                return map;
+            }
+        } catch (IOException | CorruptedFile e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private DataMap scan() throws IOException {
+        List<ArrayList<DataMap.Entry>> found;
+        try {
+            found = IntStream.range(0, segments.size()).parallel().mapToObj(this::scanSegment).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        DataMap map = new DataMap("recipes");
+        for (ArrayList<DataMap.Entry> entries : found) {
+            for (DataMap.Entry entry : entries) {
+                if (entry.size() > 0) {
+                    map.addData(entry.name(), entry.loc(), entry.size());
+                } else {
+                    map.removeData(entry.name());
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Lee todos los registros de un segmento comprobando su CRC
+     *
+     * <p>
+     * Se ejecuta en paralelo para todos los segmentos. Si un registro esta
+     * incompleto o dañado, el segmento se trunca en ese punto despues de
+     * copiar el resto a "quarantine/", porque sin un registro valido no se
+     * puede saber donde empieza el siguiente. Un segmento sin cabecera valida
+     * se aparta entero y se deja vacio.</p>
+     *
+     * @param s Numero del segmento
+     * @return Registros validos en orden; los borrados tienen tamaño 0
+     */
+    private ArrayList<DataMap.Entry> scanSegment(int s) {
+        ArrayList<DataMap.Entry> entries = new ArrayList<>();
+        RandomAccessFile segment = segments.get(s);
+        String name = String.format("recipes-%04d.seg", s);
+        try {
+            FileChannel channel = segment.getChannel();
+            long end = channel.size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+            if (end < SEGMENT_HEADER || in.readInt() != MAGIC) {
+                if (end > 0) {
+                    Quarantine.copy(dir, name, channel, 0, end);
+                }
+                synchronized (this) {
+                    segment.setLength(0);
+                    segment.seek(0);
+                    segment.writeInt(MAGIC);
+                }
+                return entries;
+            }
+            long pos = SEGMENT_HEADER;
+            try {
+                while (pos + RECORD_OVERHEAD <= end) {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 2 || pos + RECORD_OVERHEAD + length > end) {
+                        break;
+                    }
+                    byte[] buf = new byte[length + 2];
+                    in.readFully(buf);
+                    if (crc(buf, 0, buf.length) != crc) {
+                        break;
+                    }
+                    int keyLength = ((buf[2] & 0xFF) << 8) | (buf[3] & 0xFF);
+                    String key = new String(buf, 4, keyLength, StandardCharsets.UTF_8);
+                    entries.add(new DataMap.Entry(key, pack(s, pos), buf[1] == PUT ? RECORD_OVERHEAD + length : 0));
+                    pos += RECORD_OVERHEAD + length;
+                }
+            } catch (EOFException e) {
+                // Registro incompleto al final del segmento
+            }
+            if (pos < end) {
+                Quarantine.copy(dir, name, channel, pos, end);
+                segment.setLength(pos);
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        File f = new File(dir, String.format("recipes-%04d.seg", segments.size()));
+        RandomAccessFile segment = new RandomAccessFile(f, "rw");
+        segment.setLength(0);
+        segment.writeInt(MAGIC);
+        segments.add(segment);
+        live = Arrays.copyOf(live, segments.size());
+    }
+
+    private RandomAccessFile active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Recipe decode(byte version, byte[] buf, int off, int len) throws CorruptedFile {
+        if (version != VERSION_CODEC) {
+            throw new CorruptedFile();
+        }
+        return codecs.get().decode(buf, off, len);
+    }
+
+    /**
+     * Codifica el nombre de una receta para guardarlo en un registro
+     *
+     * <p>
+     * Se comprueba la longitud en UTF-8 modificado, que es la que ocupa el
+     * nombre en el indice y nunca es menor que la longitud en UTF-8: cada
+     * caracter suplementario ocupa 6 bytes en lugar de 4, y el caracter nulo 2
+     * en lugar de 1.</p>
+     *
+     * @param name Nombre de la receta
+     * @return Nombre en UTF-8
+     * @throws IllegalArgumentException Si ocupa mas de {@link #MAX_KEY_LENGTH} bytes
+     */
+    private static byte[] key(String name) {
+        if (modifiedUtf8Length(name) > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Recipe name is longer than " + MAX_KEY_LENGTH + " bytes");
+        }
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Cantidad de bytes que ocupa una cadena escrita con {@link java.io.DataOutput#writeUTF(String)}, sin contar la longitud
+     */
+    private static long modifiedUtf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int segment(long loc) {
+        return (int) (loc >>> OFFSET_BITS);
+    }
+
+    private static long pack(int segment, long offset) {
+        return ((long) segment << OFFSET_BITS) | offset;
+    }
+
+    private static int crc(byte[] buf, int off, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, off, len);
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,56 @@
+package database;
+
+/**
+ * Punto de medicion de las operaciones de la base de datos
+ *
+ * <p>
+ * {@link Database} llama a {@link #start()} antes de cada operacion y a
+ * {@link #stop(StorageOperation, long)} al terminarla. Mientras las metricas
+ * estan desactivadas se usa {@link #NOOP}, cuyos métodos no hacen nada y el
+ * compilador JIT elimina por completo.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+interface Recorder {
+
+    /**
+     * Implementacion que no mide nada
+     */
+    Recorder NOOP = new Recorder() {
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void stop(StorageOperation operation, long start) {
+        }
+
+        @Override
+        public void error(StorageOperation operation) {
+        }
+    };
+
+    /**
+     * Marca el inicio de una operacion
+     *
+     * @return Instante de inicio, que se pasa a {@link #stop(StorageOperation, long)}
+     */
+    long start();
+
+    /**
+     * Registra el final de una operacion
+     *
+     * @param operation Operacion terminada
+     * @param start Instante devuelto por {@link #start()}
+     */
+    void stop(StorageOperation operation, long start);
+
+    /**
+     * Registra un error en una operacion
+     *
+     * @param operation Operacion que ha fallado
+     */
+    void error(StorageOperation operation);
+
+}
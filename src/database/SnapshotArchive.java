@@ -0,0 +1,324 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Formato de las copias de seguridad de la base de datos
+ *
+ * <p>
+ * Una copia es un unico archivo comprimido con GZIP que contiene el numero
+ * magico {@link #MAGIC} y una serie de entradas, cada una con el nombre de un
+ * archivo del directorio de la base de datos, su longitud, su contenido y el
+ * CRC32 del contenido. Una entrada con nombre vacio marca el final. Ademas
+ * del CRC de cada entrada, GZIP comprueba el CRC de todo el contenido al
+ * terminar de leerlo.</p>
+ *
+ * <p>
+ * Solo se guardan los segmentos de recetas y el registro de ingredientes;
+ * los indices ("recipes.idx", "datamap.db", "text.idx") se reconstruyen a
+ * partir de ellos la primera vez que se abre la base de datos
+ * restaurada.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class SnapshotArchive implements AutoCloseable {
+
+    /**
+     * Numero magico con el que empieza el contenido de una copia ("PSN1")
+     */
+    private static final int MAGIC = 0x50534E31;
+
+    /**
+     * Nombres de los archivos que puede contener una copia
+     */
+    private static final Pattern ENTRY = Pattern.compile("recipes-\\d{4}\\.seg|ingredients\\.db");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Archivo que se crea en el respaldo cuando ya se han apartado todos los archivos anteriores
+     */
+    private static final String BACKUP_COMPLETE = "complete";
+
+    private final File file;
+    private final File tmp;
+    private final FileOutputStream stream;
+    private final GZIPOutputStream gzip;
+    private final DataOutputStream out;
+    private final CRC32 crc = new CRC32();
+    private final WritableByteChannel channel;
+
+    /**
+     * Empieza a escribir una copia
+     *
+     * <p>
+     * La copia se escribe en un archivo temporal junto al destino, que solo
+     * lo reemplaza al llamar a {@link #commit()}.</p>
+     *
+     * @param file Archivo de destino
+     * @throws IOException Si no se puede crear el archivo temporal
+     */
+    SnapshotArchive(File file) throws IOException {
+        this.file = file;
+        this.tmp = new File(file.getPath() + ".tmp");
+        stream = new FileOutputStream(tmp);
+        gzip = new GZIPOutputStream(stream, BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        out = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_SIZE));
+        channel = Channels.newChannel(new CheckedOutputStream(out, crc));
+        out.writeInt(MAGIC);
+    }
+
+    /**
+     * Añade a la copia una parte anotada
+     *
+     * <p>
+     * Los bytes se pasan del archivo al compresor con
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, sin
+     * leerlos antes en un buffer propio.</p>
+     *
+     * @param part Parte anotada
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    void add(StorageEngine.Part part) throws IOException {
+        String name = part.name();
+        FileChannel source = part.channel();
+        long length = part.length();
+        out.writeUTF(name);
+        out.writeLong(length);
+        crc.reset();
+        long position = 0;
+        while (position < length) {
+            long copied = source.transferTo(position, length - position, channel);
+            if (copied <= 0) {
+                throw new IOException("File shrank while copying " + name);
+            }
+            position += copied;
+        }
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Termina la copia, la sincroniza con el disco y la mueve a su destino
+     *
+     * @throws IOException Si ocurre un error de escritura
+     */
+    void commit() throws IOException {
+        out.writeUTF("");
+        out.flush();
+        gzip.finish();
+        stream.getFD().sync();
+        out.close();
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        AtomicFile.syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Descarta la copia si no se llamo a {@link #commit()}
+     */
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // La copia se descarta de todas formas
+        }
+        tmp.delete();
+    }
+
+    /**
+     * Restaura una copia en un directorio
+     *
+     * <p>
+     * La copia se lee de forma secuencial una sola vez. Las entradas se
+     * extraen primero a un subdirectorio temporal y solo cuando todas han
+     * superado la comprobacion de CRC se mueven a su lugar, reemplazando los
+     * segmentos de recetas, el registro de ingredientes y los indices que
+     * hubiera. Los archivos .dat del directorio no se tocan.</p>
+     *
+     * <p>
+     * Los archivos reemplazados se apartan antes a "restore.bak", que solo
+     * se borra cuando los nuevos ya estan en su lugar y el directorio se ha
+     * sincronizado con el disco. Si algo falla mientras tanto se vuelven a
+     * poner los anteriores. Si una restauracion anterior se interrumpio y
+     * dejo "restore.bak", se deshace antes de empezar.</p>
+     *
+     * @param archive Copia a restaurar
+     * @param dir Directorio de la base de datos
+     * @throws IOException Si ocurre un error de lectura o escritura
+     * @throws CorruptedFile Si la copia no tiene el formato correcto o algun CRC no coincide
+     */
+    static void restore(File archive, File dir) throws IOException, CorruptedFile {
+        File staging = new File(dir, "restore.tmp");
+        File backup = new File(dir, "restore.bak");
+        if (backup.exists()) {
+            rollback(dir, backup);
+        }
+        clear(staging);
+        Files.createDirectories(staging.toPath());
+        ArrayList<File> extracted = new ArrayList<>();
+        try {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(archive), BUFFER_SIZE), BUFFER_SIZE))) {
+                if (in.readInt() != MAGIC) {
+                    throw new CorruptedFile();
+                }
+                byte[] buf = new byte[BUFFER_SIZE];
+                CRC32 crc = new CRC32();
+                for (String name = in.readUTF(); !name.isEmpty(); name = in.readUTF()) {
+                    if (!ENTRY.matcher(name).matches()) {
+                        throw new CorruptedFile();
+                    }
+                    File target = new File(staging, name);
+                    long remaining = in.readLong();
+                    crc.reset();
+                    try (FileOutputStream file = new FileOutputStream(target)) {
+                        while (remaining > 0) {
+                            int n = (int) Math.min(buf.length, remaining);
+                            in.readFully(buf, 0, n);
+                            crc.update(buf, 0, n);
+                            file.write(buf, 0, n);
+                            remaining -= n;
+                        }
+                        file.getFD().sync();
+                    }
+                    if (in.readInt() != (int) crc.getValue()) {
+                        throw new CorruptedFile();
+                    }
+                    extracted.add(target);
+                }
+                // Leer hasta el final hace que GZIP compruebe su propio CRC
+                if (in.read() != -1) {
+                    throw new CorruptedFile();
+                }
+            }
+            swap(dir, extracted, backup);
+        } catch (EOFException | ZipException e) {
+            throw new CorruptedFile();
+        } finally {
+            clear(staging);
+        }
+    }
+
+    /**
+     * Cambia los archivos de la base de datos por los extraidos de una copia
+     *
+     * <p>
+     * Primero aparta los archivos actuales en el respaldo y lo marca como
+     * completo, despues mueve los nuevos y sincroniza el directorio, y solo
+     * entonces borra el respaldo. Si falla algun paso, deshace el cambio.</p>
+     *
+     * @param dir Directorio de la base de datos
+     * @param extracted Archivos extraidos de la copia
+     * @param backup Directorio donde se apartan los archivos actuales
+     * @throws IOException Si ocurre un error al mover los archivos
+     */
+    private static void swap(File dir, List<File> extracted, File backup) throws IOException {
+        Files.createDirectories(backup.toPath());
+        try {
+            File[] current = dir.listFiles((d, name) -> replaced(name));
+            if (current != null) {
+                for (File f : current) {
+                    move(f, backup);
+                }
+            }
+            Files.createFile(new File(backup, BACKUP_COMPLETE).toPath());
+            AtomicFile.syncDirectory(backup);
+            AtomicFile.syncDirectory(dir);
+            for (File f : extracted) {
+                move(f, dir);
+            }
+            AtomicFile.syncDirectory(dir);
+        } catch (IOException e) {
+            try {
+                rollback(dir, backup);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        clear(backup);
+        AtomicFile.syncDirectory(dir);
+    }
+
+    /**
+     * Vuelve a poner los archivos apartados en el respaldo y lo borra
+     *
+     * <p>
+     * Si el respaldo estaba completo, los archivos de la base de datos que
+     * hay en el directorio son de la copia y se borran antes; si no, son
+     * archivos anteriores que todavia no se habian apartado y se
+     * conservan.</p>
+     *
+     * @param dir Directorio de la base de datos
+     * @param backup Directorio donde se apartaron los archivos anteriores
+     * @throws IOException Si ocurre un error al mover o borrar los archivos
+     */
+    private static void rollback(File dir, File backup) throws IOException {
+        if (new File(backup, BACKUP_COMPLETE).exists()) {
+            File[] restored = dir.listFiles((d, name) -> replaced(name));
+            if (restored != null) {
+                for (File f : restored) {
+                    Files.delete(f.toPath());
+                }
+            }
+        }
+        File[] saved = backup.listFiles((d, name) -> replaced(name));
+        if (saved != null) {
+            for (File f : saved) {
+                move(f, dir);
+            }
+        }
+        AtomicFile.syncDirectory(dir);
+        clear(backup);
+    }
+
+    /**
+     * Indica si un archivo del directorio se reemplaza al restaurar una copia
+     */
+    private static boolean replaced(String name) {
+        return ENTRY.matcher(name).matches()
+                || name.equals("recipes.idx") || name.equals("datamap.db") || name.equals("text.idx");
+    }
+
+    private static void move(File file, File dir) throws IOException {
+        Files.move(file.toPath(), new File(dir, file.getName()).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void clear(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+}
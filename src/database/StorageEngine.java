@@ -0,0 +1,258 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import objects.IngredientTable;
+import objects.Recipe;
+
+/**
+ * Motor de almacenamiento de las recetas de {@link Database}
+ *
+ * <p>
+ * La base de datos se encarga de la cache, de los bloqueos por nombre y de
+ * los indices secundarios, y delega en el motor la persistencia de las
+ * recetas y de los ingredientes ({@link #ingredients()}). Cambiar de motor no cambia la API de {@link Database}, por lo que
+ * se puede elegir uno distinto para las pruebas o comparar varios con el
+ * mismo codigo.</p>
+ *
+ * <p>
+ * Motores disponibles:</p>
+ * <ul>
+ * <li>{@link #SEGMENTS}: las recetas en unos pocos archivos de segmento
+ * grandes con un indice y los ingredientes en "ingredients.db"; es el motor
+ * por defecto y el unico que admite copias de seguridad.</li>
+ * <li>{@link #FILES}: un archivo .dat por receta con serializacion de Java,
+ * el formato de las primeras versiones, y los ingredientes en
+ * "ingredients.db".</li>
+ * <li>{@link #MEMORY}: las recetas y los ingredientes en memoria, sin crear
+ * ningun archivo; se pierden al cerrar la base de datos.</li>
+ * </ul>
+ *
+ * <p>
+ * Las implementaciones deben poder usarse desde varios hilos. La base de
+ * datos nunca escribe ni borra a la vez la misma receta desde dos hilos, pero
+ * si recetas distintas, y las lecturas pueden coincidir con cualquier
+ * escritura.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public interface StorageEngine extends Closeable {
+
+    /**
+     * Crea un motor de almacenamiento al abrir la base de datos
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * Abre el motor sobre el directorio de la base de datos
+         *
+         * @param dir Directorio de la base de datos
+         * @param ingredients Tabla en la que se pueden empaquetar los ingredientes de las recetas leidas
+         * @return Motor abierto
+         * @throws IOException Si no se pueden abrir los datos del motor
+         */
+        StorageEngine open(File dir, IngredientTable ingredients) throws IOException;
+    }
+
+    /**
+     * Archivo anotado por {@link #capture()} para copiarlo despues
+     *
+     * <p>
+     * El canal es propio de la parte, abierto al anotarla, por lo que la
+     * copia no depende de que el archivo siga abierto ni de que conserve su
+     * nombre: si una compactacion lo reemplaza mientras tanto, la parte
+     * sigue leyendo el archivo anterior.</p>
+     *
+     * @param name Nombre del archivo dentro del directorio de la base de datos
+     * @param channel Canal de solo lectura del archivo
+     * @param length Cantidad de bytes que se copian desde el principio
+     */
+    record Part(String name, FileChannel channel, long length) implements Closeable {
+
+        /**
+         * Abre un archivo y anota su tamaño actual
+         *
+         * <p>
+         * Quien llama debe impedir que el archivo cambie mientras se anota.</p>
+         *
+         * @param file Archivo
+         * @param length Cantidad de bytes que se copian desde el principio
+         * @return Parte abierta
+         * @throws IOException Si no se puede abrir el archivo
+         */
+        public static Part open(File file, long length) throws IOException {
+            return new Part(file.getName(), FileChannel.open(file.toPath(), StandardOpenOption.READ), length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Segmentos de recetas "recipes-NNNN.seg" con el indice "recipes.idx", e
+     * ingredientes en "ingredients.db" con el punto de control "datamap.db"
+     */
+    Factory SEGMENTS = RecipeStore::new;
+
+    /**
+     * Un archivo "nombre.dat" por receta, compatible con las primeras
+     * versiones, e ingredientes en "ingredients.db"
+     */
+    Factory FILES = (dir, ingredients) -> new FileEngine(dir);
+
+    /**
+     * Recetas e ingredientes en memoria, para pruebas y caches
+     */
+    Factory MEMORY = (dir, ingredients) -> new MemoryEngine(ingredients);
+
+    /**
+     * Indica si existe una receta con el nombre dado
+     *
+     * @param name Nombre de la receta
+     * @return true si existe, false si no
+     */
+    boolean contains(String name);
+
+    /**
+     * Escribe una receta, reemplazando la que tenga el mismo nombre
+     *
+     * @param recipe Receta a escribir
+     * @throws IOException Si ocurre un error de escritura
+     * @throws IllegalArgumentException Si el motor no puede guardar una receta con ese nombre
+     */
+    void put(Recipe recipe) throws IOException;
+
+    /**
+     * Lee una receta
+     *
+     * @param name Nombre de la receta
+     * @return Receta leida, o null si no existe
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si la receta guardada esta dañada
+     */
+    Recipe get(String name) throws IOException, CorruptedFile;
+
+    /**
+     * Elimina una receta
+     *
+     * @param name Nombre de la receta
+     * @return true si se elimino, false si no existia
+     * @throws IOException Si ocurre un error de escritura
+     */
+    boolean delete(String name) throws IOException;
+
+    /**
+     * Devuelve los nombres de todas las recetas guardadas
+     *
+     * @return Lista de nombres, que se puede modificar sin afectar al motor
+     */
+    ArrayList<String> names();
+
+    /**
+     * Devuelve una marca del estado actual de las recetas guardadas
+     *
+     * <p>
+     * La marca debe cambiar con cada escritura o borrado y conservarse al
+     * cerrar y volver a abrir el motor. La base de datos la guarda junto a
+     * los indices derivados de las recetas para saber si siguen
+     * correspondiendo a ellas. Los motores que no pueden calcularla devuelven
+     * -1, y esos indices se reconstruyen cada vez que se abre la base de
+     * datos.</p>
+     *
+     * @return Marca del estado de las recetas, o -1
+     * @throws IOException Si no se puede calcular la marca
+     */
+    long stamp() throws IOException;
+
+    /**
+     * Sincroniza con el disco las escrituras y borrados pendientes
+     *
+     * @throws IOException Si ocurre un error de escritura
+     */
+    void sync() throws IOException;
+
+    /**
+     * Devuelve la cantidad de bytes leidos desde que se abrio el motor
+     *
+     * @return Bytes leidos
+     */
+    long bytesRead();
+
+    /**
+     * Devuelve la cantidad de bytes escritos desde que se abrio el motor
+     *
+     * @return Bytes escritos
+     */
+    long bytesWritten();
+
+    /**
+     * Devuelve la cantidad de archivos que el motor mantiene abiertos
+     *
+     * @return Archivos abiertos
+     */
+    int openFiles();
+
+    /**
+     * Devuelve la cantidad de bytes ocupados por recetas reemplazadas o
+     * borradas que se pueden recuperar con {@link #compact()}
+     *
+     * @return Bytes recuperables, o 0 si el motor no deja espacio sin usar
+     * @throws IOException Si no se puede calcular
+     */
+    long deadBytes() throws IOException;
+
+    /**
+     * Recupera el espacio de las recetas reemplazadas o borradas
+     *
+     * <p>
+     * Se puede llamar mientras se leen y escriben recetas desde otros
+     * hilos. Los motores que no dejan espacio sin usar no hacen nada.</p>
+     *
+     * @throws IOException Si ocurre un error de lectura o escritura
+     */
+    void compact() throws IOException;
+
+    /**
+     * Devuelve el almacen de los ingredientes de la base de datos
+     *
+     * <p>
+     * El motor lo abre junto con las recetas y lo cierra en
+     * {@link #close()}.</p>
+     *
+     * @return Almacen de ingredientes, siempre el mismo
+     */
+    IngredientStore ingredients();
+
+    /**
+     * Anota el estado actual de las recetas y los ingredientes para una copia de seguridad
+     *
+     * <p>
+     * La base de datos lo llama con las escrituras de ingredientes detenidas;
+     * las recetas el motor las debe anotar en un mismo instante aunque se
+     * sigan escribiendo desde otros hilos. Despues se copian las partes sin
+     * ningun bloqueo, por lo que su contenido no debe cambiar hasta que se
+     * cierran. Solo se pueden restaurar los segmentos de recetas y
+     * "ingredients.db"; ver {@link Database#restoreSnapshot(File, File)}.</p>
+     *
+     * @return Partes abiertas, que quien llama debe cerrar, o null si el motor no admite copias de seguridad
+     * @throws IOException Si no se puede abrir alguno de los archivos
+     */
+    ArrayList<Part> capture() throws IOException;
+
+    /**
+     * Sincroniza los datos pendientes y libera los recursos del motor y de su almacen de ingredientes
+     *
+     * @throws IOException Si ocurre un error al cerrar
+     */
+    @Override
+    void close() throws IOException;
+
+}
@@ -0,0 +1,297 @@
+package database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metricas de las operaciones de una base de datos
+ *
+ * <p>
+ * Por cada {@link StorageOperation} cuenta las ejecuciones y los errores y
+ * guarda un histograma de latencias. El histograma es logaritmico-lineal: cada
+ * potencia de dos se divide en {@value #SUB_BUCKETS} intervalos iguales, por
+ * lo que cualquier percentil se obtiene con un error relativo menor al 7% y
+ * un tamaño fijo, sin guardar cada muestra. Los contadores son
+ * {@link LongAdder} y las celdas del histograma se incrementan de forma
+ * atomica, de forma que registrar una operacion no toma bloqueos.</p>
+ *
+ * <p>
+ * Ademas expone los bytes leidos y escritos en los archivos de datos, los
+ * archivos abiertos y las estadisticas de la cache de recetas, tanto con
+ * {@link #snapshot()} como por JMX mediante {@link StorageMetricsMBean}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class StorageMetrics implements Recorder, StorageMetricsMBean {
+
+    private static final int SUB_BITS = 4;
+
+    /**
+     * Cantidad de intervalos en los que se divide cada potencia de dos
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /**
+     * Estadisticas de una operacion
+     *
+     * @param count Cantidad de ejecuciones
+     * @param errors Cantidad de ejecuciones que fallaron
+     * @param totalNanos Suma de las latencias, en nanosegundos
+     * @param p50 Mediana de la latencia, en nanosegundos
+     * @param p90 Percentil 90 de la latencia, en nanosegundos
+     * @param p99 Percentil 99 de la latencia, en nanosegundos
+     * @param p999 Percentil 99.9 de la latencia, en nanosegundos
+     * @param max Latencia maxima, en nanosegundos
+     */
+    public record OperationStats(long count, long errors, long totalNanos, long p50, long p90, long p99, long p999, long max) {
+
+        /**
+         * Devuelve la latencia media
+         *
+         * @return Latencia media en nanosegundos, o 0 si no hubo ejecuciones
+         */
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+    }
+
+    /**
+     * Estado de las metricas en un momento dado
+     *
+     * @param operations Estadisticas de cada operacion que se ha ejecutado alguna vez
+     * @param bytesRead Bytes leidos de los archivos de recetas e ingredientes
+     * @param bytesWritten Bytes escritos en los archivos de recetas e ingredientes
+     * @param openFiles Archivos de datos abiertos
+     * @param cache Estadisticas de la cache de recetas
+     * @param startupNanos Tiempo que tardo en abrirse la base de datos, en nanosegundos
+     */
+    public record Snapshot(Map<StorageOperation, OperationStats> operations, long bytesRead, long bytesWritten,
+            int openFiles, Database.CacheStats cache, long startupNanos) {
+
+        /**
+         * Devuelve la proporcion de lecturas de recetas servidas desde la cache
+         *
+         * @return Valor entre 0 y 1, o 0 si no hubo lecturas
+         */
+        public double cacheHitRate() {
+            long total = cache.hits() + cache.misses();
+            return total == 0 ? 0 : (double) cache.hits() / total;
+        }
+    }
+
+    private final Database database;
+    private final Histogram[] histograms;
+    private volatile long startupNanos;
+
+    /**
+     * Constructor de la clase StorageMetrics
+     *
+     * @param database Base de datos de la que se leen los bytes, archivos y la cache
+     */
+    StorageMetrics(Database database) {
+        this.database = database;
+        histograms = new Histogram[StorageOperation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    @Override
+    public long start() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void stop(StorageOperation operation, long start) {
+        if (start == 0) {
+            // La operacion empezo con las metricas desactivadas
+            return;
+        }
+        histograms[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    @Override
+    public void error(StorageOperation operation) {
+        histograms[operation.ordinal()].errors.increment();
+    }
+
+    /**
+     * Registra el tiempo que tardo en abrirse la base de datos
+     *
+     * @param nanos Tiempo en nanosegundos
+     */
+    void setStartupNanos(long nanos) {
+        startupNanos = nanos;
+    }
+
+    /**
+     * Devuelve el estado actual de las metricas
+     *
+     * <p>
+     * Las operaciones que siguen ejecutandose mientras se toma el estado
+     * pueden aparecer en el contador pero no todavia en los percentiles.</p>
+     *
+     * @return Estado de las metricas
+     */
+    public Snapshot snapshot() {
+        EnumMap<StorageOperation, OperationStats> operations = new EnumMap<>(StorageOperation.class);
+        for (StorageOperation operation : StorageOperation.values()) {
+            OperationStats stats = histograms[operation.ordinal()].stats();
+            if (stats.count() > 0 || stats.errors() > 0) {
+                operations.put(operation, stats);
+            }
+        }
+        return new Snapshot(Collections.unmodifiableMap(operations), database.bytesRead(), database.bytesWritten(),
+                database.openFiles(), database.getCacheStats(), startupNanos);
+    }
+
+    @Override
+    public String[] getOperations() {
+        ArrayList<String> lines = new ArrayList<>();
+        for (Map.Entry<StorageOperation, OperationStats> e : snapshot().operations().entrySet()) {
+            OperationStats s = e.getValue();
+            lines.add(String.format(Locale.ROOT, "%s count=%d errors=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                    e.getKey(), s.count(), s.errors(), s.meanNanos() / 1e3, s.p50() / 1e3, s.p90() / 1e3,
+                    s.p99() / 1e3, s.p999() / 1e3, s.max() / 1e3));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return database.bytesRead();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return database.bytesWritten();
+    }
+
+    @Override
+    public int getOpenFiles() {
+        return database.openFiles();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        Database.CacheStats cache = database.getCacheStats();
+        long total = cache.hits() + cache.misses();
+        return total == 0 ? 0 : (double) cache.hits() / total;
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return database.getCacheStats().evictions();
+    }
+
+    @Override
+    public double getStartupMillis() {
+        return startupNanos / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Devuelve el intervalo del histograma en el que cae una latencia
+     *
+     * @param value Latencia en nanosegundos, no negativa
+     * @return Indice del intervalo
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Devuelve la mayor latencia que cae en un intervalo del histograma
+     *
+     * @param bucket Indice del intervalo
+     * @return Latencia en nanosegundos
+     */
+    static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Contadores e histograma de latencias de una operacion
+     */
+    private static final class Histogram {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets.incrementAndGet(bucket(nanos));
+        }
+
+        OperationStats stats() {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                n += counts[i];
+            }
+            long highest = max.get();
+            return new OperationStats(count.sum(), errors.sum(), total.sum(), percentile(counts, n, 0.50, highest),
+                    percentile(counts, n, 0.90, highest), percentile(counts, n, 0.99, highest),
+                    percentile(counts, n, 0.999, highest), highest);
+        }
+
+        void reset() {
+            count.reset();
+            errors.reset();
+            total.reset();
+            max.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+        }
+
+        private static long percentile(long[] counts, long n, double p, long max) {
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highest(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package database;
+
+/**
+ * Interfaz JMX de {@link StorageMetrics}
+ *
+ * <p>
+ * Se registra con el nombre "database:type=StorageMetrics,id=..." al activar
+ * las metricas con {@link Database#enableMetrics()}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public interface StorageMetricsMBean {
+
+    /**
+     * Devuelve una linea por operacion con su cantidad, errores y percentiles de latencia
+     *
+     * @return Resumen de cada operacion que se ha ejecutado alguna vez
+     */
+    String[] getOperations();
+
+    /**
+     * Devuelve la cantidad de bytes leidos de los archivos de recetas e ingredientes
+     *
+     * @return Bytes leidos
+     */
+    long getBytesRead();
+
+    /**
+     * Devuelve la cantidad de bytes escritos en los archivos de recetas e ingredientes
+     *
+     * @return Bytes escritos
+     */
+    long getBytesWritten();
+
+    /**
+     * Devuelve la cantidad de archivos de datos abiertos
+     *
+     * @return Archivos abiertos
+     */
+    int getOpenFiles();
+
+    /**
+     * Devuelve la proporcion de lecturas de recetas servidas desde la cache
+     *
+     * @return Valor entre 0 y 1
+     */
+    double getCacheHitRate();
+
+    /**
+     * Devuelve la cantidad de recetas expulsadas de la cache
+     *
+     * @return Expulsiones
+     */
+    long getCacheEvictions();
+
+    /**
+     * Devuelve el tiempo que tardo en abrirse la base de datos
+     *
+     * @return Milisegundos
+     */
+    double getStartupMillis();
+
+    /**
+     * Pone a cero los contadores e histogramas de las operaciones
+     */
+    void reset();
+
+}
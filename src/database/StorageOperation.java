@@ -0,0 +1,59 @@
+package database;
+
+/**
+ * Operaciones de la base de datos que se miden con {@link StorageMetrics}
+ *
+ * @author Grupo C [Backend]
+ */
+public enum StorageOperation {
+
+    /**
+     * Lectura de una receta, desde la cache o desde los segmentos
+     */
+    READ_RECIPE,
+    /**
+     * Escritura de una receta
+     */
+    WRITE_RECIPE,
+    /**
+     * Eliminacion de una receta
+     */
+    DELETE_RECIPE,
+    /**
+     * Sincronizacion de los segmentos de recetas con el disco
+     */
+    SYNC,
+    /**
+     * Consulta en los indices secundarios de recetas o de nombres
+     */
+    QUERY,
+    /**
+     * Lectura de un ingrediente
+     */
+    READ_INGREDIENT,
+    /**
+     * Alta o reemplazo de un ingrediente
+     */
+    WRITE_INGREDIENT,
+    /**
+     * Eliminacion de un ingrediente
+     */
+    DELETE_INGREDIENT,
+    /**
+     * Importacion masiva de ingredientes
+     */
+    IMPORT_INGREDIENTS,
+    /**
+     * Punto de control del mapa de datos de ingredientes
+     */
+    CHECKPOINT,
+    /**
+     * Compactacion del archivo de ingredientes
+     */
+    COMPACTION,
+    /**
+     * Copia de seguridad de la base de datos
+     */
+    SNAPSHOT
+
+}
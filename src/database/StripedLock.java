@@ -0,0 +1,43 @@
+package database;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conjunto fijo de bloqueos repartidos por nombre
+ *
+ * <p>
+ * Cada nombre se asocia siempre al mismo bloqueo segun su hash, de forma que
+ * las operaciones sobre un mismo nombre se serializan y las operaciones sobre
+ * nombres distintos rara vez compiten por el mismo bloqueo.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class StripedLock {
+
+    private final ReentrantLock[] locks;
+
+    /**
+     * Constructor de la clase StripedLock
+     *
+     * @param stripes Cantidad de bloqueos, redondeada a la siguiente potencia de dos
+     */
+    StripedLock(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Devuelve el bloqueo asociado a un nombre
+     *
+     * @param name Nombre a bloquear
+     * @return Bloqueo del nombre
+     */
+    ReentrantLock get(String name) {
+        int h = name.hashCode();
+        return locks[(h ^ (h >>> 16)) & (locks.length - 1)];
+    }
+
+}
@@ -0,0 +1,519 @@
+package database;
+
+import exceptions.CorruptedFile;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import objects.Recipe;
+
+/**
+ * Indice de texto completo sobre el nombre, la descripcion y las instrucciones de las recetas
+ *
+ * <p>
+ * El texto se divide en palabras, se pasa a minusculas y se le quitan los
+ * acentos, de forma que "Maíz" y "maiz" son el mismo termino. Cada termino
+ * tiene una lista con las recetas en las que aparece y cuantas veces, y las
+ * palabras del nombre cuentan {@value #NAME_WEIGHT} veces. Los resultados se
+ * ordenan con BM25.</p>
+ *
+ * <p>
+ * Una consulta solo recorre las listas de sus terminos: las puntuaciones se
+ * acumulan en un arreglo reutilizado por cada hilo, anotando las recetas que
+ * se tocan, y los mejores resultados se eligen solo entre ellas. El coste no
+ * depende de la cantidad total de recetas sino de las que contienen algun
+ * termino de la consulta.</p>
+ *
+ * <p>
+ * Las palabras de la consulta que no son un termino exacto se buscan como
+ * prefijo y, si tampoco hay terminos con ese prefijo, permitiendo una o dos
+ * letras distintas. Para no comparar la palabra con todos los terminos, los
+ * terminos se agrupan por longitud y primera letra, y solo se comparan los
+ * grupos con la misma primera letra y una longitud que no difiera en mas
+ * letras de las permitidas; un error en la primera letra no se corrige. La
+ * ultima palabra de la consulta siempre se busca
+ * tambien como prefijo, para poder buscar mientras se escribe.</p>
+ *
+ * <p>
+ * El indice se guarda en un archivo al cerrar la base de datos, junto con la
+ * marca del motor de almacenamiento ({@link StorageEngine#stamp()}). Al abrir
+ * solo se carga si la marca coincide; si no, se reconstruye leyendo todas las
+ * recetas la primera vez que se consulta, como cualquier {@link RecipeIndex}.
+ * Con los motores que no tienen marca no se guarda.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class TextIndex extends RecipeIndex {
+
+    /**
+     * Numero magico con el que empieza el archivo del indice ("PTX1")
+     */
+    private static final int MAGIC = 0x50545831;
+
+    /**
+     * Veces que cuenta cada palabra del nombre de la receta
+     */
+    static final int NAME_WEIGHT = 3;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final double FUZZY_WEIGHT = 0.5;
+    private static final int MAX_EXPANSIONS = 64;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final File file;
+
+    private final HashMap<String, Integer> docIds = new HashMap<>();
+    private final ArrayList<Doc> docs = new ArrayList<>();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private long totalLength;
+
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    /**
+     * Terminos agrupados por longitud y primera letra, para la busqueda aproximada
+     */
+    private final HashMap<Long, ArrayList<String>> buckets = new HashMap<>();
+    private final ArrayList<Posting> postings = new ArrayList<>();
+    private final ThreadLocal<Scores> scratch = ThreadLocal.withInitial(Scores::new);
+
+    /**
+     * Receta indexada: sus terminos, las veces que aparece cada uno y su longitud total
+     */
+    private record Doc(String name, int[] terms, int[] freqs, int length) {
+    }
+
+    /**
+     * Recetas en las que aparece un termino, en arreglos paralelos ordenados por receta
+     *
+     * <p>
+     * Las recetas nuevas tienen el identificador mas alto y se añaden al
+     * final; solo las que reutilizan un identificador libre se insertan en
+     * medio. Los borrados buscan la receta con una busqueda binaria.</p>
+     */
+    private static final class Posting {
+
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            int i = size == 0 || docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+            if (i >= 0 && i < size) {
+                freqs[i] = freq;
+                return;
+            }
+            i = i < 0 ? -i - 1 : i;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            System.arraycopy(docs, i, docs, i + 1, size - i);
+            System.arraycopy(freqs, i, freqs, i + 1, size - i);
+            docs[i] = doc;
+            freqs[i] = freq;
+            size++;
+        }
+
+        void remove(int doc) {
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            if (i < 0) {
+                return;
+            }
+            size--;
+            System.arraycopy(docs, i + 1, docs, i, size - i);
+            System.arraycopy(freqs, i + 1, freqs, i, size - i);
+        }
+    }
+
+    /**
+     * Puntuaciones de una consulta, reutilizadas entre las consultas de un mismo hilo
+     *
+     * <p>
+     * Solo se escriben y se vuelven a poner a cero las posiciones de las
+     * recetas tocadas, que se anotan en "touched".</p>
+     */
+    private static final class Scores {
+
+        double[] scores = new double[0];
+        int[] touched = new int[16];
+        int count;
+
+        void add(int doc, double score) {
+            if (doc >= scores.length) {
+                scores = Arrays.copyOf(scores, Math.max(doc + 1, scores.length * 2));
+            }
+            if (scores[doc] == 0) {
+                if (count == touched.length) {
+                    touched = Arrays.copyOf(touched, count * 2);
+                }
+                touched[count++] = doc;
+            }
+            scores[doc] += score;
+        }
+
+        void reset() {
+            for (int i = 0; i < count; i++) {
+                scores[touched[i]] = 0;
+            }
+            count = 0;
+        }
+    }
+
+    /**
+     * Constructor de la clase TextIndex
+     *
+     * <p>
+     * Carga el indice guardado si corresponde al estado actual de las
+     * recetas guardadas.</p>
+     *
+     * @param store Almacen del que se leen las recetas al construir el indice
+     * @param file Archivo en el que se guarda el indice
+     */
+    TextIndex(StorageEngine store, File file) {
+        super(store);
+        this.file = file;
+        if (file.exists()) {
+            try (DataInputStream in = AtomicFile.open(file)) {
+                load(in);
+            } catch (IOException | CorruptedFile e) {
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Busca las recetas que mejor coinciden con una consulta
+     *
+     * @param query Texto de la consulta
+     * @param limit Cantidad maxima de resultados
+     * @return Nombres de las recetas encontradas, de mayor a menor relevancia
+     */
+    ArrayList<String> search(String query, int limit) {
+        build();
+        List<String> words = tokenize(query);
+        ArrayList<String> result = new ArrayList<>();
+        if (words.isEmpty() || limit <= 0) {
+            return result;
+        }
+        Scores scores = scratch.get();
+        lock.readLock().lock();
+        try {
+            int count = docIds.size();
+            double avgLength = count == 0 ? 1 : (double) totalLength / count;
+            for (int w = 0; w < words.size(); w++) {
+                for (Map.Entry<Integer, Double> term : expand(words.get(w), w == words.size() - 1).entrySet()) {
+                    Posting posting = postings.get(term.getKey());
+                    double idf = Math.log(1 + (count - posting.size + 0.5) / (posting.size + 0.5));
+                    for (int i = 0; i < posting.size; i++) {
+                        int doc = posting.docs[i];
+                        double tf = posting.freqs[i];
+                        double norm = K1 * (1 - B + B * docs.get(doc).length() / avgLength);
+                        scores.add(doc, term.getValue() * idf * tf * (K1 + 1) / (tf + norm));
+                    }
+                }
+            }
+            double[] score = scores.scores;
+            Comparator<Integer> order = (x, y) -> score[x] != score[y] ? Double.compare(score[x], score[y]) : Integer.compare(y, x);
+            PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, scores.count) + 1, order);
+            for (int i = 0; i < scores.count; i++) {
+                int doc = scores.touched[i];
+                // Con la cola llena, solo entra una receta mejor que la peor de la cola
+                if (top.size() < limit) {
+                    top.add(doc);
+                } else if (order.compare(doc, top.peek()) > 0) {
+                    top.poll();
+                    top.add(doc);
+                }
+            }
+            while (!top.isEmpty()) {
+                result.add(docs.get(top.poll()).name());
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            scores.reset();
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Guarda el indice en su archivo, si se ha llegado a construir y el motor tiene marca
+     *
+     * <p>
+     * Debe llamarse antes de cerrar el almacen de recetas y sin escrituras
+     * concurrentes, para que la marca guardada corresponda al indice.</p>
+     *
+     * @throws IOException Si ocurre un error de escritura
+     */
+    void save() throws IOException {
+        lock.readLock().lock();
+        try {
+            long stamp = store.stamp();
+            if (!built || stamp < 0) {
+                return;
+            }
+            AtomicFile.write(file, out -> {
+                out.writeInt(MAGIC);
+                out.writeLong(stamp);
+                out.writeInt(postings.size());
+                String[] terms = new String[postings.size()];
+                termIds.forEach((term, id) -> terms[id] = term);
+                for (String term : terms) {
+                    out.writeUTF(term);
+                }
+                out.writeInt(docIds.size());
+                for (Doc doc : docs) {
+                    if (doc == null) {
+                        continue;
+                    }
+                    out.writeUTF(doc.name());
+                    out.writeInt(doc.terms().length);
+                    for (int i = 0; i < doc.terms().length; i++) {
+                        out.writeInt(doc.terms()[i]);
+                        out.writeInt(doc.freqs()[i]);
+                    }
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Divide un texto en terminos en minusculas y sin acentos
+     *
+     * @param text Texto a dividir
+     * @return Terminos del texto, en orden
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(SEPARATORS.split(fold(text)))
+                .filter(word -> !word.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Pasa un texto a minusculas y le quita los acentos
+     *
+     * @param text Texto a normalizar
+     * @return Texto normalizado
+     */
+    static String fold(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private void load(DataInputStream in) throws IOException, CorruptedFile {
+        if (in.readInt() != MAGIC || in.readLong() != store.stamp()) {
+            throw new CorruptedFile();
+        }
+        int terms = in.readInt();
+        if (terms < 0) {
+            throw new CorruptedFile();
+        }
+        for (int i = 0; i < terms; i++) {
+            String term = in.readUTF();
+            if (term.isEmpty()) {
+                throw new CorruptedFile();
+            }
+            termIds.put(term, i);
+            bucket(term.length(), term.charAt(0)).add(term);
+            postings.add(new Posting());
+        }
+        int count = in.readInt();
+        for (int d = 0; d < count; d++) {
+            String name = in.readUTF();
+            int n = in.readInt();
+            if (n < 0 || n > terms) {
+                throw new CorruptedFile();
+            }
+            int[] ids = new int[n];
+            int[] freqs = new int[n];
+            int length = 0;
+            for (int i = 0; i < n; i++) {
+                ids[i] = in.readInt();
+                freqs[i] = in.readInt();
+                if (ids[i] < 0 || ids[i] >= terms) {
+                    throw new CorruptedFile();
+                }
+                length += freqs[i];
+            }
+            insert(name, ids, freqs, length);
+        }
+        built = true;
+    }
+
+    private void clear() {
+        docIds.clear();
+        docs.clear();
+        freeIds.clear();
+        totalLength = 0;
+        termIds.clear();
+        buckets.clear();
+        postings.clear();
+        built = false;
+    }
+
+    @Override
+    void index(Recipe recipe) {
+        unindex(recipe.getName());
+        HashMap<String, Integer> counts = new HashMap<>();
+        for (String word : tokenize(recipe.getName())) {
+            counts.merge(word, NAME_WEIGHT, Integer::sum);
+        }
+        for (String word : tokenize(recipe.getDescription())) {
+            counts.merge(word, 1, Integer::sum);
+        }
+        for (String word : tokenize(recipe.getInstructions())) {
+            counts.merge(word, 1, Integer::sum);
+        }
+        int[] ids = new int[counts.size()];
+        int[] freqs = new int[counts.size()];
+        int length = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            ids[i] = termId(entry.getKey());
+            freqs[i] = entry.getValue();
+            length += freqs[i];
+            i++;
+        }
+        insert(recipe.getName(), ids, freqs, length);
+    }
+
+    private void insert(String name, int[] ids, int[] freqs, int length) {
+        int doc;
+        Doc value = new Doc(name, ids, freqs, length);
+        if (freeIds.isEmpty()) {
+            doc = docs.size();
+            docs.add(value);
+        } else {
+            doc = freeIds.pop();
+            docs.set(doc, value);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            postings.get(ids[i]).add(doc, freqs[i]);
+        }
+        docIds.put(name, doc);
+        totalLength += length;
+    }
+
+    @Override
+    void unindex(String name) {
+        Integer doc = docIds.remove(name);
+        if (doc == null) {
+            return;
+        }
+        Doc value = docs.get(doc);
+        for (int term : value.terms()) {
+            postings.get(term).remove(doc);
+        }
+        totalLength -= value.length();
+        docs.set(doc, null);
+        freeIds.push(doc);
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = postings.size();
+            postings.add(new Posting());
+            termIds.put(term, id);
+            bucket(term.length(), term.charAt(0)).add(term);
+        }
+        return id;
+    }
+
+    /**
+     * Grupo de los terminos con una longitud y una primera letra
+     */
+    private ArrayList<String> bucket(int length, char first) {
+        return buckets.computeIfAbsent(((long) length << 16) | first, k -> new ArrayList<>());
+    }
+
+    /**
+     * Busca los terminos del indice que corresponden a una palabra de la consulta
+     *
+     * @return Identificadores de los terminos y el peso de cada uno
+     */
+    private HashMap<Integer, Double> expand(String word, boolean last) {
+        HashMap<Integer, Double> terms = new HashMap<>();
+        Integer exact = termIds.get(word);
+        if (exact != null) {
+            terms.put(exact, 1.0);
+        }
+        if (exact == null || last) {
+            for (Map.Entry<String, Integer> entry : termIds.subMap(word, false, word + Character.MAX_VALUE, false).entrySet()) {
+                if (terms.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                terms.put(entry.getValue(), PREFIX_WEIGHT);
+            }
+        }
+        if (terms.isEmpty() && word.length() >= 4) {
+            int max = word.length() >= 8 ? 2 : 1;
+            for (int length = word.length() - max; length <= word.length() + max && terms.size() < MAX_EXPANSIONS; length++) {
+                ArrayList<String> candidates = buckets.get(((long) length << 16) | word.charAt(0));
+                if (candidates == null) {
+                    continue;
+                }
+                for (String term : candidates) {
+                    if (terms.size() >= MAX_EXPANSIONS) {
+                        break;
+                    }
+                    if (distance(word, term, max) <= max) {
+                        terms.put(termIds.get(term), FUZZY_WEIGHT);
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Distancia de edicion entre dos palabras, o max + 1 si es mayor que max
+     */
+    private static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            int best = curr[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                best = Math.min(best, curr[j]);
+            }
+            if (best > max) {
+                return max + 1;
+            }
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
+        }
+        return prev[b.length()];
+    }
+
+}
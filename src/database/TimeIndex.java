@@ -0,0 +1,169 @@
+package database;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import objects.Recipe;
+import objects.TimeField;
+
+/**
+ * Indices ordenados de las recetas por tiempo de preparacion, de coccion y total
+ *
+ * <p>
+ * Cada campo tiene un arreglo ordenado de enteros largos en el que cada
+ * elemento empaqueta el tiempo (32 bits altos) y el identificador de la
+ * receta (32 bits bajos), de forma que el orden de los enteros es el orden
+ * por tiempo. Un rango se localiza con dos busquedas binarias y una pagina de
+ * k recetas cuesta O(log n + k), sin crear ningun objeto {@link Recipe}. Los
+ * tiempos de cada receta se guardan tambien por identificador, para poder
+ * filtrar por un campo mientras se recorre el orden de otro.</p>
+ *
+ * <p>
+ * Insertar o eliminar una receta desplaza la parte del arreglo que queda por
+ * detras, lo que es O(n) pero se reduce a copiar memoria contigua.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class TimeIndex extends RecipeIndex {
+
+    private static final int FIELDS = TimeField.values().length;
+
+    private final HashMap<String, Integer> recipeIds = new HashMap<>();
+    private final ArrayList<String> recipeNames = new ArrayList<>();
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+
+    private final long[][] sorted = new long[FIELDS][16];
+    private int count;
+    private final int[][] times = new int[FIELDS][16];
+
+    /**
+     * Constructor de la clase TimeIndex
+     *
+     * @param store Almacen del que se leen las recetas al construir el indice
+     */
+    TimeIndex(StorageEngine store) {
+        super(store);
+    }
+
+    /**
+     * Busca las recetas con un tiempo dentro de un rango, ordenadas por otro campo de tiempo
+     *
+     * @param filter Campo por el que se filtra
+     * @param min Tiempo minimo, incluido
+     * @param max Tiempo maximo, incluido
+     * @param order Campo por el que se ordena
+     * @param descending true para ordenar de mayor a menor, false de menor a mayor
+     * @param offset Cantidad de recetas que se saltan, para paginar
+     * @param limit Cantidad maxima de recetas devueltas
+     * @return Nombres de las recetas encontradas, en orden
+     * @throws IllegalArgumentException Si offset es negativo
+     */
+    ArrayList<String> query(TimeField filter, int min, int max, TimeField order, boolean descending, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+        build();
+        ArrayList<String> result = new ArrayList<>();
+        if (min > max || limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            long[] keys = sorted[order.ordinal()];
+            int from = 0;
+            int to = count;
+            int skipped = 0;
+            if (filter == order) {
+                // El rango es un tramo contiguo del arreglo y la pagina empieza directamente en offset
+                from = lowerBound(keys, (long) min << 32);
+                to = max == Integer.MAX_VALUE ? count : lowerBound(keys, ((long) max + 1) << 32);
+                skipped = offset;
+            }
+            int[] values = times[filter.ordinal()];
+            for (int i = skipped; i < to - from && result.size() < limit; i++) {
+                long key = keys[descending ? to - 1 - i : from + i];
+                int id = (int) key;
+                if (filter != order && (values[id] < min || values[id] > max)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                result.add(recipeNames.get(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    void index(Recipe recipe) {
+        unindex(recipe.getName());
+        int id;
+        if (freeIds.isEmpty()) {
+            id = recipeNames.size();
+            recipeNames.add(recipe.getName());
+        } else {
+            id = freeIds.pop();
+            recipeNames.set(id, recipe.getName());
+        }
+        if (count == sorted[0].length || id >= times[0].length) {
+            int capacity = Math.max(sorted[0].length, times[0].length) * 2;
+            for (int f = 0; f < FIELDS; f++) {
+                sorted[f] = Arrays.copyOf(sorted[f], capacity);
+                times[f] = Arrays.copyOf(times[f], capacity);
+            }
+        }
+        for (TimeField field : TimeField.values()) {
+            int f = field.ordinal();
+            int time = field.of(recipe);
+            times[f][id] = time;
+            long key = pack(time, id);
+            int at = lowerBound(sorted[f], key);
+            System.arraycopy(sorted[f], at, sorted[f], at + 1, count - at);
+            sorted[f][at] = key;
+        }
+        count++;
+        recipeIds.put(recipe.getName(), id);
+    }
+
+    @Override
+    void unindex(String name) {
+        Integer id = recipeIds.remove(name);
+        if (id == null) {
+            return;
+        }
+        for (int f = 0; f < FIELDS; f++) {
+            int at = lowerBound(sorted[f], pack(times[f][id], id));
+            System.arraycopy(sorted[f], at + 1, sorted[f], at, count - at - 1);
+        }
+        count--;
+        recipeNames.set(id, null);
+        freeIds.push(id);
+    }
+
+    /**
+     * Posicion del primer elemento mayor o igual que la clave entre los count primeros
+     */
+    private int lowerBound(long[] keys, long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long pack(int time, int id) {
+        return ((long) time << 32) | (id & 0xFFFFFFFFL);
+    }
+
+}
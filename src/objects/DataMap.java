@@ -1,20 +1,53 @@
 package objects;
 
-import java.io.Serializable;
+import exceptions.CorruptedFile;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
  * Guarda el estado de los datos en archivos de acceso aleatorio
  *
+ * <p>
+ * Internamente es una tabla hash de direccionamiento abierto (sondeo lineal)
+ * que asocia el identificador de cada entrada con su localizacion y tamaño,
+ * guardados en arreglos primitivos. La busqueda, insercion y eliminacion son
+ * O(1) en promedio.</p>
+ *
  * @author Grupo C [Backend]
  */
-public class DataMap implements Serializable {
+public class DataMap {
+
+    /**
+     * Numero magico con el que empieza el formato binario ("PDM1")
+     */
+    private static final int MAGIC = 0x50444D31;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Cantidad maxima de entradas; la tabla mas grande posible, de 2^30 posiciones, se mantiene medio vacia
+     */
+    private static final int MAX_ENTRIES = 1 << 29;
 
     private final String id;
-    private final ArrayList<String> data;
-    private final ArrayList<Integer> loc;
-    private final ArrayList<Integer> size;
-    private int byteTotalSize;
+    private String[] keys;
+    private long[] loc;
+    private int[] size;
+    private int count;
+    private long generation;
+    private long position;
+
+    /**
+     * Resultado de una busqueda en el mapa de datos
+     *
+     * @param name Identificador de los datos
+     * @param loc Localizacion en bytes del inicio de los datos
+     * @param size Tamaño en bytes de los datos
+     */
+    public record Entry(String name, long loc, int size) {
+    }
 
     /**
      * Constructor de la clase DataMap
@@ -22,59 +55,87 @@ public class DataMap implements Serializable {
      * @param id Identificador del mapa de datos guardado
      */
     public DataMap(String id) {
+        this(id, INITIAL_CAPACITY);
+    }
+
+    private DataMap(String id, int capacity) {
         this.id = id;
-        data = new ArrayList<>();
-        loc = new ArrayList<>();
-        size = new ArrayList<>();
-        byteTotalSize = 0;
+        keys = new String[capacity];
+        loc = new long[capacity];
+        size = new int[capacity];
+        count = 0;
     }
 
     /**
-     * Añade un nueva entrada al mapa de datos
+     * Añade una nueva entrada al mapa de datos, o reemplaza la existente si el
+     * identificador ya estaba registrado
      *
      * @param data Identificador de los datos
+     * @param loc Localizacion en bytes del inicio de los datos
      * @param size Tamaño en bytes de los datos
      */
-    public void addData(String data, int size) {
-        this.data.add(data);
-        byteTotalSize += size;
-        this.loc.add(byteTotalSize);
-        this.size.add(size);
+    public void addData(String data, long loc, int size) {
+        if ((count + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int slot = slotOf(data);
+        if (keys[slot] == null) {
+            keys[slot] = data;
+            count++;
+        }
+        this.loc[slot] = loc;
+        this.size[slot] = size;
     }
 
     /**
      * Elimina una entrada del mapa de datos
      *
+     * <p>
+     * Utiliza borrado por desplazamiento hacia atras, por lo que no deja
+     * marcas de borrado en la tabla.</p>
+     *
      * @param name Identificador de los datos a eliminar
      * @return true si se ha eliminado correctamente, false si no existe
      */
     public boolean removeData(String name) {
-        int index = data.indexOf(name);
-        if (index != -1) {
-            data.remove(index);
-            loc.remove(index);
-            size.remove(index);
-            return true;
+        int slot = slotOf(name);
+        if (keys[slot] == null) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash(keys[next]) & mask;
+            // La entrada puede ocupar el hueco si su posicion ideal no esta entre el hueco y ella
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                loc[hole] = loc[next];
+                size[hole] = size[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
         }
-        return false;
+        keys[hole] = null;
+        loc[hole] = 0;
+        size[hole] = 0;
+        count--;
+        return true;
     }
 
     /**
      * Busca una entrada en el mapa de datos utilizando su identificador
      *
      * @param name Identificador de los datos a buscar
-     * @return Un array de String con el nombre, la localización y el tamaño de los datos, o null si no se encuentra
-     */
-    public String[] searchData(String name) {
-        int index = data.indexOf(name);
-        if (index != -1) {
-            String[] result = new String[3];
-            result[0] = data.get(index);
-            result[1] = String.valueOf(loc.get(index));
-            result[2] = String.valueOf(size.get(index));
-            return result;
+     * @return La entrada con el nombre, la localizacion y el tamaño de los
+     * datos, o null si no se encuentra
+     */
+    public Entry searchData(String name) {
+        int slot = slotOf(name);
+        if (keys[slot] == null) {
+            return null;
         }
-        return null;
+        return new Entry(keys[slot], loc[slot], size[slot]);
     }
 
     /**
@@ -83,7 +144,56 @@ public class DataMap implements Serializable {
      * @return ArrayList con los identificadores de los datos
      */
     public ArrayList<String> getData() {
-        return data;
+        ArrayList<String> list = new ArrayList<>(count);
+        for (String key : keys) {
+            if (key != null) {
+                list.add(key);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Devuelve todas las entradas del mapa de datos
+     *
+     * @return ArrayList con las entradas del mapa de datos
+     */
+    public ArrayList<Entry> getEntries() {
+        ArrayList<Entry> list = new ArrayList<>(count);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                list.add(new Entry(keys[i], loc[i], size[i]));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Devuelve una copia independiente del mapa de datos
+     *
+     * <p>
+     * Copia los arreglos internos de una vez, sin volver a insertar cada
+     * entrada, por lo que es mucho mas rapido que recorrer el mapa.</p>
+     *
+     * @return Mapa de datos con las mismas entradas, generacion y posicion
+     */
+    public DataMap copy() {
+        DataMap copy = new DataMap(id, 0);
+        copy.keys = keys.clone();
+        copy.loc = loc.clone();
+        copy.size = size.clone();
+        copy.count = count;
+        copy.setStamp(generation, position);
+        return copy;
+    }
+
+    /**
+     * Devuelve el numero de entradas del mapa de datos
+     *
+     * @return Numero de entradas
+     */
+    public int size() {
+        return count;
     }
 
     /**
@@ -95,4 +205,122 @@ public class DataMap implements Serializable {
         return id;
     }
 
+    /**
+     * Devuelve la generacion del archivo de datos que describe este mapa
+     *
+     * @return Generacion del archivo de datos
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Devuelve la posicion del archivo de datos hasta la que este mapa esta actualizado
+     *
+     * @return Posicion en bytes
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Registra la generacion y posicion del archivo de datos que describe este mapa
+     *
+     * @param generation Generacion del archivo de datos
+     * @param position Posicion en bytes hasta la que el mapa esta actualizado
+     */
+    public void setStamp(long generation, long position) {
+        this.generation = generation;
+        this.position = position;
+    }
+
+    /**
+     * Escribe el mapa de datos en formato binario compacto
+     *
+     * <p>
+     * El formato es: numero magico, identificador, generacion y posicion del
+     * archivo de datos, numero de entradas y por cada entrada su
+     * identificador, localizacion y tamaño.</p>
+     *
+     * @param out Destino de los datos
+     * @throws IOException Si ocurre un error de escritura
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(id);
+        out.writeLong(generation);
+        out.writeLong(position);
+        out.writeInt(count);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                out.writeUTF(keys[i]);
+                out.writeLong(loc[i]);
+                out.writeInt(size[i]);
+            }
+        }
+    }
+
+    /**
+     * Lee un mapa de datos escrito con {@link #write(DataOutput)}
+     *
+     * @param in Origen de los datos
+     * @return Mapa de datos leido
+     * @throws IOException Si ocurre un error de lectura
+     * @throws CorruptedFile Si los datos no tienen el formato esperado o la cantidad de entradas supera el maximo
+     */
+    public static DataMap read(DataInput in) throws IOException, CorruptedFile {
+        if (in.readInt() != MAGIC) {
+            throw new CorruptedFile();
+        }
+        String id = in.readUTF();
+        long generation = in.readLong();
+        long position = in.readLong();
+        int entries = in.readInt();
+        if (entries < 0 || entries > MAX_ENTRIES) {
+            throw new CorruptedFile();
+        }
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        DataMap map = new DataMap(id, capacity);
+        for (int i = 0; i < entries; i++) {
+            String name = in.readUTF();
+            long l = in.readLong();
+            int s = in.readInt();
+            map.addData(name, l, s);
+        }
+        map.setStamp(generation, position);
+        return map;
+    }
+
+    private int slotOf(String name) {
+        int mask = keys.length - 1;
+        int slot = hash(name) & mask;
+        while (keys[slot] != null && !keys[slot].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldLoc = loc;
+        int[] oldSize = size;
+        keys = new String[capacity];
+        loc = new long[capacity];
+        size = new int[capacity];
+        count = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                addData(oldKeys[i], oldLoc[i], oldSize[i]);
+            }
+        }
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
 }
@@ -1,11 +1,15 @@
 package objects;
 
+import java.io.Serializable;
+
 /**
  * Almacena los datos correspondientes a un ingrediente
  *
  * @author Grupo C [Backend]
  */
-public class Ingredient {
+public class Ingredient implements Serializable {
+
+    private static final long serialVersionUID = -3582215952615347089L;
 
     /**
      * Nombre del ingrediente
@@ -42,6 +46,12 @@ public class Ingredient {
         this.unit = unit;
     }
 
+    /**
+     * Constructor vacio para las vistas de {@link IngredientTable}, que guardan sus datos fuera del objeto
+     */
+    Ingredient() {
+    }
+
     /**
      * Metodo getter de Name
      *
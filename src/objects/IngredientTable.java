@@ -0,0 +1,272 @@
+package objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tabla de ingredientes en formato de columnas con diccionarios compartidos
+ *
+ * <p>
+ * Los nombres, tipos y unidades de los ingredientes se guardan una sola vez
+ * en tres diccionarios, y cada receta guarda su lista de ingredientes como un
+ * arreglo de enteros con {@value #STRIDE} columnas por ingrediente:
+ * identificador del nombre, del tipo, cantidad e identificador de la unidad.
+ * El identificador 0 representa null.</p>
+ *
+ * <p>
+ * Las vistas devueltas por {@link #view(int[], int)} son objetos
+ * {@link Ingredient} sin campos propios que leen y escriben directamente en
+ * el arreglo, por lo que los getters y setters de siempre siguen
+ * funcionando.</p>
+ *
+ * <p>
+ * Los diccionarios pueden usarse desde varios hilos: las lecturas no toman
+ * bloqueos y las altas de cadenas nuevas estan sincronizadas.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class IngredientTable {
+
+    /**
+     * Cantidad de enteros que ocupa cada ingrediente en un arreglo empaquetado
+     */
+    public static final int STRIDE = 4;
+
+    private static final int NAME = 0;
+    private static final int TYPE = 1;
+    private static final int QUANTITY = 2;
+    private static final int UNIT = 3;
+
+    private final Dictionary names = new Dictionary();
+    private final Dictionary types = new Dictionary();
+    private final Dictionary units = new Dictionary();
+
+    /**
+     * Diccionario de cadenas con identificadores consecutivos
+     */
+    private static final class Dictionary {
+
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private int size = 1;
+
+        String get(int id) {
+            return values[id];
+        }
+
+        synchronized int id(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                String[] current = values;
+                if (size == current.length) {
+                    current = Arrays.copyOf(current, size * 2);
+                }
+                current[size] = value;
+                values = current;
+                id = size++;
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        synchronized int size() {
+            return size - 1;
+        }
+    }
+
+    /**
+     * Crea un arreglo empaquetado vacio para una cantidad de ingredientes
+     *
+     * @param count Cantidad de ingredientes
+     * @return Arreglo con {@value #STRIDE} enteros por ingrediente
+     */
+    public static int[] allocate(int count) {
+        return new int[count * STRIDE];
+    }
+
+    /**
+     * Devuelve la cantidad de ingredientes de un arreglo empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @return Cantidad de ingredientes
+     */
+    public static int count(int[] packed) {
+        return packed.length / STRIDE;
+    }
+
+    /**
+     * Empaqueta una lista de ingredientes
+     *
+     * @param ingredients Lista de ingredientes
+     * @return Arreglo empaquetado con los ingredientes
+     */
+    public int[] pack(List<Ingredient> ingredients) {
+        int[] packed = allocate(ingredients.size());
+        for (int i = 0; i < ingredients.size(); i++) {
+            Ingredient ingredient = ingredients.get(i);
+            set(packed, i, ingredient.getName(), ingredient.getType(), ingredient.getQuantity(), ingredient.getUnit());
+        }
+        return packed;
+    }
+
+    /**
+     * Escribe un ingrediente en una posicion de un arreglo empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @param name Nombre del ingrediente
+     * @param type Tipo de ingrediente
+     * @param quantity Cantidad del ingrediente
+     * @param unit Unidad de medida utilizada
+     */
+    public void set(int[] packed, int index, String name, String type, int quantity, String unit) {
+        int base = index * STRIDE;
+        packed[base + NAME] = names.id(name);
+        packed[base + TYPE] = types.id(type);
+        packed[base + QUANTITY] = quantity;
+        packed[base + UNIT] = units.id(unit);
+    }
+
+    /**
+     * Devuelve una vista de un ingrediente de un arreglo empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Ingrediente que lee y escribe en el arreglo
+     */
+    public Ingredient view(int[] packed, int index) {
+        return new IngredientView(this, packed, index);
+    }
+
+    /**
+     * Devuelve una lista con las vistas de todos los ingredientes de un arreglo empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @return Lista de ingredientes que leen y escriben en el arreglo
+     */
+    public ArrayList<Ingredient> views(int[] packed) {
+        int count = count(packed);
+        ArrayList<Ingredient> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(view(packed, i));
+        }
+        return list;
+    }
+
+    /**
+     * Devuelve el nombre de un ingrediente empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Nombre del ingrediente
+     */
+    public String name(int[] packed, int index) {
+        return names.get(packed[index * STRIDE + NAME]);
+    }
+
+    /**
+     * Devuelve el tipo de un ingrediente empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Tipo de ingrediente
+     */
+    public String type(int[] packed, int index) {
+        return types.get(packed[index * STRIDE + TYPE]);
+    }
+
+    /**
+     * Devuelve la cantidad de un ingrediente empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Cantidad del ingrediente
+     */
+    public static int quantity(int[] packed, int index) {
+        return packed[index * STRIDE + QUANTITY];
+    }
+
+    /**
+     * Devuelve la unidad de un ingrediente empaquetado
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Unidad de medida utilizada
+     */
+    public String unit(int[] packed, int index) {
+        return units.get(packed[index * STRIDE + UNIT]);
+    }
+
+    /**
+     * Devuelve la cantidad de cadenas distintas guardadas en los diccionarios
+     *
+     * @return Suma de nombres, tipos y unidades distintos
+     */
+    public int dictionarySize() {
+        return names.size() + types.size() + units.size();
+    }
+
+    /**
+     * Devuelve el identificador del nombre de un ingrediente empaquetado en el diccionario de esta tabla
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Identificador del nombre, o 0 si es null
+     */
+    static int nameId(int[] packed, int index) {
+        return packed[index * STRIDE + NAME];
+    }
+
+    /**
+     * Devuelve el identificador de la unidad de un ingrediente empaquetado en el diccionario de esta tabla
+     *
+     * @param packed Arreglo empaquetado
+     * @param index Posicion del ingrediente
+     * @return Identificador de la unidad, o 0 si es null
+     */
+    static int unitId(int[] packed, int index) {
+        return packed[index * STRIDE + UNIT];
+    }
+
+    /**
+     * Devuelve el nombre con un identificador del diccionario de nombres
+     *
+     * @param id Identificador del nombre
+     * @return Nombre, o null si el identificador es 0
+     */
+    String nameOf(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Devuelve la unidad con un identificador del diccionario de unidades
+     *
+     * @param id Identificador de la unidad
+     * @return Unidad, o null si el identificador es 0
+     */
+    String unitOf(int id) {
+        return units.get(id);
+    }
+
+    void setName(int[] packed, int index, String name) {
+        packed[index * STRIDE + NAME] = names.id(name);
+    }
+
+    void setType(int[] packed, int index, String type) {
+        packed[index * STRIDE + TYPE] = types.id(type);
+    }
+
+    static void setQuantity(int[] packed, int index, int quantity) {
+        packed[index * STRIDE + QUANTITY] = quantity;
+    }
+
+    void setUnit(int[] packed, int index, String unit) {
+        packed[index * STRIDE + UNIT] = units.id(unit);
+    }
+
+}
@@ -0,0 +1,71 @@
+package objects;
+
+/**
+ * Ingrediente que lee y escribe sus datos en un arreglo de una {@link IngredientTable}
+ *
+ * <p>
+ * No guarda ninguna cadena propia: solo la tabla, el arreglo y la posicion
+ * del ingrediente. Al serializarse se sustituye por un {@link Ingredient}
+ * normal con los mismos datos.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+final class IngredientView extends Ingredient {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient IngredientTable table;
+    private final transient int[] packed;
+    private final transient int index;
+
+    IngredientView(IngredientTable table, int[] packed, int index) {
+        this.table = table;
+        this.packed = packed;
+        this.index = index;
+    }
+
+    @Override
+    public String getName() {
+        return table.name(packed, index);
+    }
+
+    @Override
+    public String getType() {
+        return table.type(packed, index);
+    }
+
+    @Override
+    public int getQuantity() {
+        return IngredientTable.quantity(packed, index);
+    }
+
+    @Override
+    public String getUnit() {
+        return table.unit(packed, index);
+    }
+
+    @Override
+    public void setName(String name) {
+        table.setName(packed, index, name);
+    }
+
+    @Override
+    public void setType(String type) {
+        table.setType(packed, index, type);
+    }
+
+    @Override
+    public void setQuantity(int quantity) {
+        IngredientTable.setQuantity(packed, index, quantity);
+    }
+
+    @Override
+    public void setUnit(String unit) {
+        table.setUnit(packed, index, unit);
+    }
+
+    private Object writeReplace() {
+        return new Ingredient(getName(), getType(), getQuantity(), getUnit());
+    }
+
+}
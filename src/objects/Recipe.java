@@ -1,5 +1,7 @@
 package objects;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -10,6 +12,8 @@ import java.util.ArrayList;
  */
 public class Recipe implements Serializable {
 
+    private static final long serialVersionUID = -6703496254226956999L;
+
     ArrayList<Ingredient> ingredients;
     String name;
     String description;
@@ -17,6 +21,8 @@ public class Recipe implements Serializable {
     int prepTime;
     int cookTime;
     int totalTime;
+    private transient IngredientTable table;
+    private transient int[] packed;
 
     /**
      * Constructor de la clase Recipe
@@ -38,12 +44,38 @@ public class Recipe implements Serializable {
         this.totalTime = prepTime + cookTime;
     }
 
+    /**
+     * Constructor de la clase Recipe con los ingredientes empaquetados en una {@link IngredientTable}
+     *
+     * <p>
+     * La lista de ingredientes no se crea hasta que se pide con
+     * {@link #getIngredients()}, y entonces esta formada por vistas sobre el
+     * arreglo empaquetado.</p>
+     *
+     * @param name Nombre de la receta
+     * @param description Descripcion corta de la reeta
+     * @param table Tabla con los diccionarios de los ingredientes
+     * @param ingredients Ingredientes empaquetados, ver {@link IngredientTable#STRIDE}
+     * @param instructions Instrucciones de la preparacion de la receta
+     * @param prepTime Tiempo de preparacion
+     * @param cookTime Tiempo de coccion
+     */
+    public Recipe(String name, String description, IngredientTable table, int[] ingredients, String instructions, int prepTime, int cookTime) {
+        this(name, description, (ArrayList<Ingredient>) null, instructions, prepTime, cookTime);
+        this.table = table;
+        this.packed = ingredients;
+    }
+
     /**
      * Metodo getter de Ingredients
      *
      * @return Lista de ingredientes, en formato ArrayList
      */
-    public ArrayList<Ingredient> getIngredients() {
+    public synchronized ArrayList<Ingredient> getIngredients() {
+        if (packed != null) {
+            ingredients = table.views(packed);
+            packed = null;
+        }
         return ingredients;
     }
 
@@ -52,8 +84,48 @@ public class Recipe implements Serializable {
      *
      * @param ingredients Lista de ingredientes, en formato ArrayList
      */
-    public void setIngredients(ArrayList<Ingredient> ingredients) {
+    public synchronized void setIngredients(ArrayList<Ingredient> ingredients) {
         this.ingredients = ingredients;
+        this.packed = null;
+    }
+
+    /**
+     * Devuelve los ingredientes empaquetados, si todavia no se ha creado la lista de ingredientes
+     *
+     * <p>
+     * Permite recorrer los ingredientes con {@link #getIngredientTable()}
+     * sin crear ningun objeto.</p>
+     *
+     * @return Arreglo empaquetado, o null si la receta usa una lista de ingredientes
+     */
+    public synchronized int[] getPackedIngredients() {
+        return packed;
+    }
+
+    /**
+     * Crea una copia de la receta que comparte sus ingredientes empaquetados
+     *
+     * <p>
+     * Pedir la lista de ingredientes de la copia no la crea en esta receta,
+     * que sigue ocupando solo el arreglo empaquetado. Los cambios en los
+     * ingredientes de la copia se escriben en el arreglo compartido.</p>
+     *
+     * @return Copia de la receta, o null si la receta usa una lista de ingredientes
+     */
+    public synchronized Recipe sharePacked() {
+        if (packed == null) {
+            return null;
+        }
+        return new Recipe(name, description, table, packed, instructions, prepTime, cookTime);
+    }
+
+    /**
+     * Devuelve la tabla con la que se empaquetaron los ingredientes
+     *
+     * @return Tabla de ingredientes, o null si la receta se creo con una lista
+     */
+    public IngredientTable getIngredientTable() {
+        return table;
     }
 
     /**
@@ -122,10 +194,14 @@ public class Recipe implements Serializable {
     /**
      * Metodo setter de PrepTime
      *
+     * <p>
+     * Actualiza tambien el tiempo total.</p>
+     *
      * @param prepTime Tiempo de preparacion
      */
     public void setPrepTime(int prepTime) {
         this.prepTime = prepTime;
+        this.totalTime = prepTime + cookTime;
     }
 
     /**
@@ -140,10 +216,14 @@ public class Recipe implements Serializable {
     /**
      * Metodo setter de CookTime
      *
+     * <p>
+     * Actualiza tambien el tiempo total.</p>
+     *
      * @param cookTime Tiempo de coccion
      */
     public void setCookTime(int cookTime) {
         this.cookTime = cookTime;
+        this.totalTime = prepTime + cookTime;
     }
 
     /**
@@ -154,4 +234,10 @@ public class Recipe implements Serializable {
     public int getTotalTime() {
         return totalTime;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // Los ingredientes empaquetados no se serializan; se guardan como lista
+        getIngredients();
+        out.defaultWriteObject();
+    }
 }
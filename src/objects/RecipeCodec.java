@@ -0,0 +1,278 @@
+package objects;
+
+import exceptions.CorruptedFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Codifica y decodifica recetas en un formato binario compacto
+ *
+ * <p>
+ * El formato empieza con la version del esquema, seguida de una tabla de
+ * cadenas (cantidad y, por cada cadena, su longitud y sus bytes en UTF-8) y
+ * de los campos de la receta. Las cadenas se referencian por su posicion en
+ * la tabla, de forma que los nombres, tipos y unidades repetidos de los
+ * ingredientes se guardan una sola vez. Los enteros se escriben como varints
+ * (los que pueden ser negativos, en zigzag). No se usa reflexion.</p>
+ *
+ * <p>
+ * Si se crea con una {@link IngredientTable}, las recetas decodificadas
+ * guardan sus ingredientes empaquetados en esa tabla en lugar de crear un
+ * objeto {@link Ingredient} por ingrediente.</p>
+ *
+ * <p>
+ * Una instancia reutiliza sus buffers internos entre llamadas, por lo que no
+ * debe compartirse entre hilos.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class RecipeCodec {
+
+    /**
+     * Version del esquema escrita al inicio de cada receta codificada
+     */
+    public static final byte SCHEMA_VERSION = 1;
+
+    private final HashMap<String, Integer> table = new HashMap<>();
+    private final ArrayList<byte[]> strings = new ArrayList<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private final IngredientTable ingredientTable;
+
+    /**
+     * Constructor de la clase RecipeCodec
+     *
+     * <p>
+     * Las recetas decodificadas usan una lista de objetos
+     * {@link Ingredient}.</p>
+     */
+    public RecipeCodec() {
+        this(null);
+    }
+
+    /**
+     * Constructor de la clase RecipeCodec
+     *
+     * @param ingredientTable Tabla en la que se empaquetan los ingredientes de
+     * las recetas decodificadas, o null para usar listas de {@link Ingredient}
+     */
+    public RecipeCodec(IngredientTable ingredientTable) {
+        this.ingredientTable = ingredientTable;
+    }
+
+    /**
+     * Codifica una receta en el buffer dado, a partir de su posicion actual
+     *
+     * @param recipe Receta a codificar
+     * @param out Buffer de destino
+     * @throws BufferOverflowException Si la receta no cabe en el buffer
+     */
+    public void encode(Recipe recipe, ByteBuffer out) {
+        table.clear();
+        strings.clear();
+        int name = intern(recipe.getName());
+        int description = intern(recipe.getDescription());
+        int instructions = intern(recipe.getInstructions());
+        int[] packed = recipe.getPackedIngredients();
+        IngredientTable source = recipe.getIngredientTable();
+        ArrayList<Ingredient> ingredients = packed == null ? recipe.getIngredients() : null;
+        boolean present = packed != null || ingredients != null;
+        int count = packed != null ? IngredientTable.count(packed) : ingredients == null ? 0 : ingredients.size();
+        int[] refs = new int[count * 4];
+        for (int i = 0; i < count; i++) {
+            if (packed != null) {
+                refs[i * 4] = intern(source.name(packed, i));
+                refs[i * 4 + 1] = intern(source.type(packed, i));
+                refs[i * 4 + 2] = IngredientTable.quantity(packed, i);
+                refs[i * 4 + 3] = intern(source.unit(packed, i));
+            } else {
+                Ingredient ingredient = ingredients.get(i);
+                refs[i * 4] = intern(ingredient.getName());
+                refs[i * 4 + 1] = intern(ingredient.getType());
+                refs[i * 4 + 2] = ingredient.getQuantity();
+                refs[i * 4 + 3] = intern(ingredient.getUnit());
+            }
+        }
+
+        out.put(SCHEMA_VERSION);
+        putVarint(out, strings.size());
+        for (byte[] s : strings) {
+            putVarint(out, s.length);
+            out.put(s);
+        }
+        putVarint(out, name);
+        putVarint(out, description);
+        putVarint(out, instructions);
+        putVarint(out, zigzag(recipe.getPrepTime()));
+        putVarint(out, zigzag(recipe.getCookTime()));
+        putVarint(out, present ? count + 1 : 0);
+        for (int i = 0; i < count; i++) {
+            putVarint(out, refs[i * 4]);
+            putVarint(out, refs[i * 4 + 1]);
+            putVarint(out, zigzag(refs[i * 4 + 2]));
+            putVarint(out, refs[i * 4 + 3]);
+        }
+    }
+
+    /**
+     * Codifica una receta en un arreglo de bytes nuevo
+     *
+     * <p>
+     * Utiliza un buffer interno que crece cuando una receta no cabe.</p>
+     *
+     * @param recipe Receta a codificar
+     * @return Bytes de la receta codificada
+     */
+    public byte[] encode(Recipe recipe) {
+        while (true) {
+            scratch.clear();
+            try {
+                encode(recipe, scratch);
+                byte[] bytes = new byte[scratch.position()];
+                scratch.flip();
+                scratch.get(bytes);
+                return bytes;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Decodifica una receta a partir de la posicion actual del buffer
+     *
+     * @param in Buffer de origen
+     * @return Receta decodificada
+     * @throws CorruptedFile Si los datos no tienen el formato esperado
+     */
+    public Recipe decode(ByteBuffer in) throws CorruptedFile {
+        try {
+            if (in.get() != SCHEMA_VERSION) {
+                throw new CorruptedFile();
+            }
+            int size = getVarint(in);
+            if (size < 0 || size > in.remaining()) {
+                throw new CorruptedFile();
+            }
+            String[] table = new String[size + 1];
+            for (int i = 1; i <= size; i++) {
+                table[i] = getString(in, getVarint(in));
+            }
+            String name = table[getVarint(in)];
+            String description = table[getVarint(in)];
+            String instructions = table[getVarint(in)];
+            int prepTime = unzigzag(getVarint(in));
+            int cookTime = unzigzag(getVarint(in));
+            int count = getVarint(in);
+            if (count < 0 || count - 1 > in.remaining()) {
+                throw new CorruptedFile();
+            }
+            if (ingredientTable != null) {
+                int[] packed = null;
+                if (count > 0) {
+                    packed = IngredientTable.allocate(count - 1);
+                    for (int i = 0; i < count - 1; i++) {
+                        String ingredient = table[getVarint(in)];
+                        String type = table[getVarint(in)];
+                        int quantity = unzigzag(getVarint(in));
+                        String unit = table[getVarint(in)];
+                        ingredientTable.set(packed, i, ingredient, type, quantity, unit);
+                    }
+                }
+                return new Recipe(name, description, ingredientTable, packed, instructions, prepTime, cookTime);
+            }
+            ArrayList<Ingredient> ingredients = null;
+            if (count > 0) {
+                ingredients = new ArrayList<>(count - 1);
+                for (int i = 0; i < count - 1; i++) {
+                    String ingredient = table[getVarint(in)];
+                    String type = table[getVarint(in)];
+                    int quantity = unzigzag(getVarint(in));
+                    String unit = table[getVarint(in)];
+                    ingredients.add(new Ingredient(ingredient, type, quantity, unit));
+                }
+            }
+            return new Recipe(name, description, ingredients, instructions, prepTime, cookTime);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new CorruptedFile();
+        }
+    }
+
+    /**
+     * Decodifica una receta a partir de una porcion de un arreglo de bytes
+     *
+     * @param buf Arreglo de origen
+     * @param off Posicion de inicio de la receta
+     * @param len Longitud de la receta codificada
+     * @return Receta decodificada
+     * @throws CorruptedFile Si los datos no tienen el formato esperado
+     */
+    public Recipe decode(byte[] buf, int off, int len) throws CorruptedFile {
+        return decode(ByteBuffer.wrap(buf, off, len));
+    }
+
+    /**
+     * Registra una cadena en la tabla y devuelve su referencia, siendo 0 la
+     * referencia de null
+     */
+    private int intern(String s) {
+        if (s == null) {
+            return 0;
+        }
+        Integer ref = table.get(s);
+        if (ref == null) {
+            strings.add(s.getBytes(StandardCharsets.UTF_8));
+            ref = strings.size();
+            table.put(s, ref);
+        }
+        return ref;
+    }
+
+    private static String getString(ByteBuffer in, int length) throws CorruptedFile {
+        if (length < 0 || length > in.remaining()) {
+            throw new CorruptedFile();
+        }
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static void putVarint(ByteBuffer out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static int getVarint(ByteBuffer in) throws CorruptedFile {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new CorruptedFile();
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+}
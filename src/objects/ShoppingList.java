@@ -0,0 +1,344 @@
+package objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collector;
+
+/**
+ * Lista de la compra que suma los ingredientes de varias recetas
+ *
+ * <p>
+ * Cada receta se añade con un multiplicador, por ejemplo 3 para prepararla
+ * tres veces o 0.5 para media receta. Los ingredientes con el mismo nombre,
+ * sin distinguir mayusculas, se suman convirtiendo sus cantidades a una
+ * unidad base: gramos para el peso, mililitros para el volumen y unidades
+ * para los ingredientes que se cuentan. Las unidades desconocidas no se
+ * convierten y se suman aparte, una linea por unidad, sin distinguir
+ * mayusculas ni espacios en la unidad.</p>
+ *
+ * <p>
+ * Cada nombre de ingrediente recibe un identificador entero y las
+ * cantidades se acumulan en arreglos de double indexados por ese
+ * identificador. Para las recetas con ingredientes empaquetados en una
+ * {@link IngredientTable}, el identificador y la conversion de unidad se
+ * resuelven una sola vez por cada nombre y unidad del diccionario, sin
+ * crear cadenas ni objetos por ingrediente.</p>
+ *
+ * <p>
+ * Una instancia no debe usarse desde varios hilos a la vez. Para sumar
+ * muchas recetas en paralelo, {@link #of(Map)} reparte el plan entre
+ * varias listas parciales y las combina con {@link #merge(ShoppingList)}.</p>
+ *
+ * @author Grupo C [Backend]
+ */
+public final class ShoppingList {
+
+    /**
+     * Cantidad de recetas a partir de la cual {@link #of(Map)} suma en paralelo
+     */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private static final int MASS = 0;
+    private static final int VOLUME = 1;
+    private static final int COUNT = 2;
+    private static final int DIMENSIONS = 3;
+
+    private static final String[] BASE_UNITS = {"g", "ml", "unidad"};
+
+    private static final HashMap<String, double[]> CONVERSIONS = new HashMap<>();
+
+    static {
+        unit(MASS, 1, "g", "gr", "gramo", "gramos");
+        unit(MASS, 1000, "kg", "kilo", "kilos", "kilogramo", "kilogramos");
+        unit(MASS, 0.001, "mg", "miligramo", "miligramos");
+        unit(MASS, 453.59237, "lb", "libra", "libras");
+        unit(MASS, 28.349523125, "oz", "onza", "onzas");
+        unit(VOLUME, 1, "ml", "mililitro", "mililitros");
+        unit(VOLUME, 10, "cl", "centilitro", "centilitros");
+        unit(VOLUME, 100, "dl", "decilitro", "decilitros");
+        unit(VOLUME, 1000, "l", "litro", "litros");
+        unit(VOLUME, 240, "taza", "tazas");
+        unit(VOLUME, 15, "cucharada", "cucharadas");
+        unit(VOLUME, 5, "cucharadita", "cucharaditas");
+        unit(COUNT, 1, "unidad", "unidades", "u", "pieza", "piezas");
+    }
+
+    /**
+     * Linea de la lista de la compra
+     *
+     * @param name Nombre del ingrediente, tal como aparece la primera vez
+     * @param quantity Cantidad total
+     * @param unit Unidad de la cantidad
+     */
+    public record Item(String name, double quantity, String unit) {
+    }
+
+    /**
+     * Clave de las cantidades en unidades desconocidas
+     *
+     * @param id Identificador del ingrediente
+     * @param unit Unidad normalizada, o null si el ingrediente no tiene unidad
+     */
+    private record OtherKey(int id, String unit) {
+    }
+
+    /**
+     * Cantidad acumulada en una unidad desconocida, con la unidad tal como aparece la primera vez
+     */
+    private static final class OtherAmount {
+
+        final String unit;
+        double quantity;
+
+        OtherAmount(String unit) {
+            this.unit = unit;
+        }
+    }
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private double[][] totals = new double[DIMENSIONS][16];
+    private byte[] present = new byte[16];
+    private final HashMap<OtherKey, OtherAmount> other = new HashMap<>();
+    private int size;
+
+    private IngredientTable cachedTable;
+    private int[] nameIds = new int[0];
+    private int[] unitCodes = new int[0];
+    private double[] unitFactors = new double[0];
+
+    /**
+     * Crea una lista de la compra vacia
+     */
+    public ShoppingList() {
+    }
+
+    /**
+     * Suma los ingredientes de un plan de recetas
+     *
+     * <p>
+     * Los planes con muchas recetas se suman en paralelo en el pool de
+     * fork-join comun.</p>
+     *
+     * @param plan Recetas con el multiplicador de cada una
+     * @return Lista de la compra del plan
+     */
+    public static ShoppingList of(Map<Recipe, ? extends Number> plan) {
+        Collector<Map.Entry<Recipe, ? extends Number>, ShoppingList, ShoppingList> collector = Collector.of(ShoppingList::new,
+                (list, e) -> list.add(e.getKey(), e.getValue().doubleValue()),
+                ShoppingList::merge, Collector.Characteristics.UNORDERED);
+        if (plan.size() >= PARALLEL_THRESHOLD) {
+            return plan.entrySet().parallelStream().collect(collector);
+        }
+        return plan.entrySet().stream().collect(collector);
+    }
+
+    /**
+     * Añade los ingredientes de una receta
+     *
+     * @param recipe Receta
+     * @param multiplier Cantidad de veces que se prepara la receta
+     * @return Esta misma lista
+     */
+    public ShoppingList add(Recipe recipe, double multiplier) {
+        int[] packed = recipe.getPackedIngredients();
+        if (packed != null) {
+            addPacked(recipe.getIngredientTable(), packed, multiplier);
+            return this;
+        }
+        ArrayList<Ingredient> ingredients = recipe.getIngredients();
+        if (ingredients != null) {
+            for (Ingredient ingredient : ingredients) {
+                add(ingredient.getName(), ingredient.getQuantity() * multiplier, ingredient.getUnit());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Añade una cantidad de un ingrediente
+     *
+     * @param name Nombre del ingrediente
+     * @param quantity Cantidad
+     * @param unit Unidad de la cantidad
+     * @return Esta misma lista
+     */
+    public ShoppingList add(String name, double quantity, String unit) {
+        if (name == null) {
+            return this;
+        }
+        int id = id(name);
+        double[] conversion = unit == null ? null : CONVERSIONS.get(key(unit));
+        if (conversion == null) {
+            addOther(id, unit, quantity);
+        } else {
+            accumulate(id, (int) conversion[0], quantity * conversion[1]);
+        }
+        return this;
+    }
+
+    /**
+     * Suma a esta lista los ingredientes de otra
+     *
+     * @param list Lista a sumar, que no se modifica
+     * @return Esta misma lista
+     */
+    public ShoppingList merge(ShoppingList list) {
+        int[] remap = new int[list.size];
+        for (int i = 0; i < list.size; i++) {
+            remap[i] = id(list.names[i]);
+            for (int d = 0; d < DIMENSIONS; d++) {
+                if ((list.present[i] & (1 << d)) != 0) {
+                    accumulate(remap[i], d, list.totals[d][i]);
+                }
+            }
+        }
+        for (Map.Entry<OtherKey, OtherAmount> e : list.other.entrySet()) {
+            addOther(remap[e.getKey().id()], e.getValue().unit, e.getValue().quantity);
+        }
+        return this;
+    }
+
+    /**
+     * Devuelve las lineas de la lista ordenadas por nombre de ingrediente
+     *
+     * <p>
+     * Los pesos de 1000 g o mas se expresan en kilogramos y los volumenes de
+     * 1000 ml o mas en litros.</p>
+     *
+     * @return Lista de lineas
+     */
+    public ArrayList<Item> items() {
+        ArrayList<Item> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                if ((present[i] & (1 << d)) != 0) {
+                    items.add(item(names[i], d, totals[d][i]));
+                }
+            }
+        }
+        for (Map.Entry<OtherKey, OtherAmount> e : other.entrySet()) {
+            items.add(new Item(names[e.getKey().id()], e.getValue().quantity, e.getValue().unit));
+        }
+        items.sort(Comparator.comparing((Item item) -> item.name().toLowerCase(Locale.ROOT))
+                .thenComparing(Item::unit, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)));
+        return items;
+    }
+
+    /**
+     * Devuelve la cantidad de ingredientes distintos de la lista
+     *
+     * @return Cantidad de ingredientes
+     */
+    public int size() {
+        return size;
+    }
+
+    private void addPacked(IngredientTable table, int[] packed, double multiplier) {
+        if (table != cachedTable) {
+            cachedTable = table;
+            nameIds = new int[0];
+            unitCodes = new int[0];
+            unitFactors = new double[0];
+        }
+        int count = IngredientTable.count(packed);
+        for (int i = 0; i < count; i++) {
+            int nameId = IngredientTable.nameId(packed, i);
+            if (nameId == 0) {
+                continue;
+            }
+            int unitId = IngredientTable.unitId(packed, i);
+            double quantity = IngredientTable.quantity(packed, i) * multiplier;
+            int code = unitCode(table, unitId);
+            if (code < 0) {
+                add(table.nameOf(nameId), quantity, table.unitOf(unitId));
+            } else {
+                accumulate(localId(table, nameId), code, quantity * unitFactors[unitId]);
+            }
+        }
+    }
+
+    /**
+     * Identificador local de un nombre del diccionario de la tabla en cache
+     */
+    private int localId(IngredientTable table, int nameId) {
+        if (nameId >= nameIds.length) {
+            nameIds = Arrays.copyOf(nameIds, Math.max(nameId + 1, nameIds.length * 2));
+        }
+        int id = nameIds[nameId] - 1;
+        if (id < 0) {
+            id = id(table.nameOf(nameId));
+            nameIds[nameId] = id + 1;
+        }
+        return id;
+    }
+
+    /**
+     * Dimension de una unidad del diccionario de la tabla en cache, o -1 si no se conoce; guarda tambien su factor de conversion
+     */
+    private int unitCode(IngredientTable table, int unitId) {
+        if (unitId >= unitCodes.length) {
+            unitCodes = Arrays.copyOf(unitCodes, Math.max(unitId + 1, unitCodes.length * 2));
+            unitFactors = Arrays.copyOf(unitFactors, unitCodes.length);
+        }
+        int code = unitCodes[unitId];
+        if (code == 0) {
+            String unit = table.unitOf(unitId);
+            double[] conversion = unit == null ? null : CONVERSIONS.get(key(unit));
+            code = conversion == null ? -1 : (int) conversion[0] + 1;
+            unitCodes[unitId] = code;
+            unitFactors[unitId] = conversion == null ? 0 : conversion[1];
+        }
+        return code < 0 ? -1 : code - 1;
+    }
+
+    private int id(String name) {
+        return ids.computeIfAbsent(key(name), k -> {
+            if (size == names.length) {
+                int capacity = size * 2;
+                names = Arrays.copyOf(names, capacity);
+                present = Arrays.copyOf(present, capacity);
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    totals[d] = Arrays.copyOf(totals[d], capacity);
+                }
+            }
+            names[size] = name;
+            return size++;
+        });
+    }
+
+    private void addOther(int id, String unit, double quantity) {
+        OtherKey key = new OtherKey(id, unit == null ? null : key(unit));
+        other.computeIfAbsent(key, k -> new OtherAmount(unit)).quantity += quantity;
+    }
+
+    private void accumulate(int id, int dimension, double quantity) {
+        totals[dimension][id] += quantity;
+        present[id] |= (byte) (1 << dimension);
+    }
+
+    private static Item item(String name, int dimension, double quantity) {
+        if (dimension == MASS && quantity >= 1000) {
+            return new Item(name, quantity / 1000, "kg");
+        }
+        if (dimension == VOLUME && quantity >= 1000) {
+            return new Item(name, quantity / 1000, "l");
+        }
+        return new Item(name, quantity, BASE_UNITS[dimension]);
+    }
+
+    private static void unit(int dimension, double factor, String... names) {
+        for (String name : names) {
+            CONVERSIONS.put(name, new double[]{dimension, factor});
+        }
+    }
+
+    private static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,40 @@
+package objects;
+
+/**
+ * Campos de tiempo de una receta por los que se puede filtrar y ordenar
+ *
+ * @author Grupo C [Backend]
+ */
+public enum TimeField {
+
+    /**
+     * Tiempo de preparacion, ver {@link Recipe#getPrepTime()}
+     */
+    PREP_TIME,
+    /**
+     * Tiempo de coccion, ver {@link Recipe#getCookTime()}
+     */
+    COOK_TIME,
+    /**
+     * Tiempo total, ver {@link Recipe#getTotalTime()}
+     */
+    TOTAL_TIME;
+
+    /**
+     * Devuelve el valor de este campo en una receta
+     *
+     * @param recipe Receta
+     * @return Tiempo correspondiente al campo
+     */
+    public int of(Recipe recipe) {
+        switch (this) {
+            case PREP_TIME:
+                return recipe.getPrepTime();
+            case COOK_TIME:
+                return recipe.getCookTime();
+            default:
+                return recipe.getTotalTime();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import exceptions.NameAlreadyInUse;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import objects.Recipe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la fachada asincrona de la base de datos
+ *
+ * @author Grupo C [Backend]
+ */
+class AsyncDatabaseTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void operationsCompleteWithDatabaseResults() {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        try (AsyncDatabase async = new AsyncDatabase(db, 4, 100)) {
+            ArrayList<CompletableFuture<Boolean>> writes = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                writes.add(async.writeRecipe(DatabaseTest.recipe("Receta " + i, i, i, "Tomate")));
+            }
+            writes.forEach(write -> assertTrue(write.join()));
+            assertEquals("Receta 7", async.searchRecipe("Receta 7").join().getName());
+            assertNull(async.searchRecipe("No existe").join());
+            assertEquals(50, async.findRecipes(List.of("tomate"), List.of(), List.of()).join().size());
+            assertEquals("Receta 7", async.searchText("receta 7", 1).join().get(0));
+            assertTrue(async.deleteRecipe("Receta 7").join());
+            assertTrue(async.addIngredient("Tomate", "Vegetal", "kg").join());
+            assertArrayEquals(new String[] {"Tomate", "Vegetal", "kg"}, async.readIngredient("Tomate").join());
+            assertTrue(async.deleteIngredient("Tomate").join());
+            assertTrue(async.sync().join());
+            assertTrue(async.saveDataMap().join());
+            assertEquals(100, async.availablePermits());
+        }
+        db.close();
+    }
+
+    @Test
+    void checkedExceptionsFailTheFuture() {
+        Database db = new Database(dir, StorageEngine.MEMORY);
+        try (AsyncDatabase async = new AsyncDatabase(db, 1, 10)) {
+            assertTrue(async.writeRecipe(DatabaseTest.recipe("Gazpacho", 20, 0)).join());
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> async.writeRecipe(DatabaseTest.recipe("Gazpacho", 20, 0)).join());
+            assertInstanceOf(NameAlreadyInUse.class, e.getCause());
+            assertEquals(10, async.availablePermits());
+        }
+        db.close();
+    }
+
+    @Test
+    void pendingLimitRejectsInsteadOfQueueing() throws Exception {
+        Database db = new Database(dir, StorageEngine.MEMORY);
+        AsyncDatabase async = new AsyncDatabase(db, 1, 2);
+        Recipe blocked = DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate");
+        CompletableFuture<Boolean> first;
+        CompletableFuture<Recipe> second;
+        // La escritura se queda esperando al monitor de la receta mientras se llena la cola
+        synchronized (blocked) {
+            first = async.writeRecipe(blocked);
+            second = async.searchRecipe("Gazpacho");
+            CompletableFuture<Boolean> third = async.sync();
+            CompletionException e = assertThrows(CompletionException.class, third::join);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+            assertEquals(0, async.availablePermits());
+        }
+        assertTrue(first.join());
+        assertEquals("Gazpacho", second.join().getName());
+        assertEquals(2, async.availablePermits());
+
+        async.close();
+        CompletionException e = assertThrows(CompletionException.class, () -> async.sync().join());
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(2, async.availablePermits());
+        db.close();
+    }
+
+    @Test
+    void invalidLimitsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncDatabase(null, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AsyncDatabase(null, 1, 0));
+    }
+
+}
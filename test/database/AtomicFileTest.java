@@ -0,0 +1,79 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import exceptions.CorruptedFile;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la escritura atomica con CRC de los archivos de indices
+ *
+ * @author Grupo C [Backend]
+ */
+class AtomicFileTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void writeReplacesTheWholeFile() throws Exception {
+        File file = new File(dir, "datos.idx");
+        AtomicFile.write(file, out -> {
+            out.writeUTF("primero");
+            out.writeLong(42);
+        });
+        AtomicFile.write(file, out -> out.writeUTF("segundo"));
+        assertFalse(new File(dir, "datos.idx.tmp").exists());
+        try (DataInputStream in = AtomicFile.open(file)) {
+            assertEquals("segundo", in.readUTF());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void failedWriteKeepsThePreviousFile() throws Exception {
+        File file = new File(dir, "datos.idx");
+        AtomicFile.write(file, out -> out.writeInt(7));
+        assertThrows(IOException.class, () -> AtomicFile.write(file, out -> {
+            out.writeInt(8);
+            throw new IOException("disco lleno");
+        }));
+        assertFalse(new File(dir, "datos.idx.tmp").exists());
+        try (DataInputStream in = AtomicFile.open(file)) {
+            assertEquals(7, in.readInt());
+        }
+    }
+
+    @Test
+    void damagedFilesAreRejected() throws Exception {
+        File file = new File(dir, "datos.idx");
+        AtomicFile.write(file, out -> {
+            for (int i = 0; i < 1000; i++) {
+                out.writeInt(i);
+            }
+        });
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        byte[] flipped = data.clone();
+        flipped[100] ^= 1;
+        Files.write(file.toPath(), flipped);
+        assertThrows(CorruptedFile.class, () -> AtomicFile.open(file));
+
+        // Un archivo cortado pierde el final con la marca y el CRC
+        Files.write(file.toPath(), Arrays.copyOf(data, data.length - 3));
+        assertThrows(CorruptedFile.class, () -> AtomicFile.open(file));
+        Files.write(file.toPath(), new byte[4]);
+        assertThrows(CorruptedFile.class, () -> AtomicFile.open(file));
+        Files.write(file.toPath(), new byte[0]);
+        assertThrows(CorruptedFile.class, () -> AtomicFile.open(file));
+    }
+
+}
@@ -0,0 +1,344 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import exceptions.NameAlreadyInUse;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import objects.Ingredient;
+import objects.Recipe;
+import objects.TimeField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de {@link Database} a traves de su API publica
+ *
+ * @author Grupo C [Backend]
+ */
+class DatabaseTest {
+
+    @TempDir
+    File dir;
+
+    static Recipe recipe(String name, int prepTime, int cookTime, String... ingredients) {
+        ArrayList<Ingredient> list = new ArrayList<>();
+        for (String ingredient : ingredients) {
+            list.add(new Ingredient(ingredient, "Vegetal", 1, "kg"));
+        }
+        return new Recipe(name, "Receta de " + name.toLowerCase(), list, "Cocinar " + name.toLowerCase(), prepTime, cookTime);
+    }
+
+    private static List<String> sorted(List<String> names) {
+        return names.stream().sorted().toList();
+    }
+
+    @Test
+    void startupLoadsIndexesAndReadsRecipesOnDemand() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(db.writeRecipe(recipe("Receta " + i, i, 10, "Tomate", "Ajo " + i)));
+        }
+        db.close();
+
+        db = new Database(dir, StorageEngine.SEGMENTS);
+        assertEquals(0, db.getCacheStats().size());
+        assertEquals(List.of("Receta 7"), db.completeRecipe("Receta 7", 10));
+        assertEquals(0, db.getCacheStats().size());
+        Recipe read = db.searchRecipe("Receta 7");
+        assertNotNull(read);
+        assertEquals(7, read.getPrepTime());
+        assertEquals(1, db.getCacheStats().misses());
+        assertEquals(1, db.getCacheStats().size());
+        assertNull(db.searchRecipe("No existe"));
+        db.close();
+
+        db = new Database(dir, StorageEngine.SEGMENTS, true, Database.DEFAULT_CACHE_WEIGHT, Database.CachePolicy.LRU);
+        assertEquals(50, db.getCacheStats().size());
+        db.searchRecipe("Receta 7");
+        assertEquals(1, db.getCacheStats().hits());
+        db.close();
+    }
+
+    @Test
+    void legacyRecipeFilesAreMigrated() throws Exception {
+        Recipe legacy = recipe("Tortilla", 5, 15, "Huevo", "Patata");
+        File file = new File(dir, "Tortilla.dat");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(legacy);
+        }
+        File broken = new File(dir, "Rota.dat");
+        try (FileOutputStream out = new FileOutputStream(broken)) {
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        // Los archivos se dejan en su lugar, porque otras instancias pueden compartir el directorio
+        assertTrue(file.exists());
+        assertTrue(broken.exists());
+        assertFalse(new File(dir, "quarantine").exists());
+        assertEquals(15, db.searchRecipe("Tortilla").getCookTime());
+        assertEquals(List.of("Tortilla"), db.findRecipesWith("huevo"));
+        db.close();
+
+        // La migracion solo se hace una vez: los archivos que aparecen despues no se migran al abrir
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(dir, "Pisto.dat")))) {
+            out.writeObject(recipe("Pisto", 10, 30, "Pimiento"));
+        }
+        assertTrue(file.delete());
+        Database reopened = new Database(dir, StorageEngine.SEGMENTS);
+        assertNull(reopened.searchRecipe("Pisto"));
+        assertEquals(15, reopened.searchRecipe("Tortilla").getCookTime());
+        reopened.close();
+    }
+
+    @Test
+    void deleteUpdatesEverySecondaryIndex() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        db.writeRecipe(recipe("Gazpacho", 20, 0, "Tomate", "Pepino"));
+        db.writeRecipe(recipe("Salmorejo", 15, 0, "Tomate", "Pan"));
+        db.writeRecipe(recipe("Tostada", 2, 3, "Pan"));
+        // Construye los indices antes de borrar, para comprobar que se actualizan y no que se reconstruyen
+        assertEquals(List.of("Gazpacho", "Salmorejo"), sorted(db.findRecipesWith("tomate")));
+        assertEquals(List.of("Gazpacho"), db.searchText("gazpacho", 10));
+        assertEquals(3, db.findRecipesByTime(TimeField.PREP_TIME, 0, 100, 0, 10).size());
+
+        assertTrue(db.deleteRecipe("Gazpacho"));
+        assertFalse(db.deleteRecipe("Gazpacho"));
+        assertNull(db.searchRecipe("Gazpacho"));
+        assertEquals(List.of("Salmorejo"), db.findRecipesWith("tomate"));
+        assertTrue(db.findRecipesWith("pepino").isEmpty());
+        assertTrue(db.searchText("gazpacho", 10).isEmpty());
+        assertEquals(List.of("Tostada", "Salmorejo"), db.findRecipesByTime(TimeField.PREP_TIME, 0, 100, 0, 10));
+        assertTrue(db.completeRecipe("gaz", 10).isEmpty());
+        assertEquals(List.of("Salmorejo", "Tostada"), sorted(db.findRecipesWith("pan")));
+        db.close();
+
+        db = new Database(dir, StorageEngine.SEGMENTS);
+        assertNull(db.searchRecipe("Gazpacho"));
+        assertTrue(db.searchText("gazpacho", 10).isEmpty());
+        assertEquals(List.of("Salmorejo"), db.findRecipesWith("tomate"));
+        db.close();
+    }
+
+    @Test
+    void deleteIngredientUpdatesNameIndex() {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        db.addIngredient("Tomate", "Vegetal", "kg");
+        db.addIngredient("Tomillo", "Especia", "g");
+        assertEquals(List.of("Tomate", "Tomillo"), db.completeIngredient("tom", 10));
+        assertTrue(db.deleteIngredient("Tomate"));
+        assertFalse(db.deleteIngredient("Tomate"));
+        assertNull(db.readIngredient("Tomate"));
+        assertEquals(List.of("Tomillo"), db.completeIngredient("tom", 10));
+        db.close();
+    }
+
+    @Test
+    void concurrentWritersAndReadersSeeConsistentState() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    String name = "Receta " + id + "-" + i;
+                    assertTrue(db.writeRecipe(recipe(name, i, 1, "Tomate")));
+                    assertEquals(name, db.searchRecipe(name).getName());
+                    assertTrue(db.addIngredient("Ingrediente " + id + "-" + i, "Vegetal", "kg"));
+                    if (i % 4 == 0) {
+                        assertTrue(db.deleteRecipe(name));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        int expected = threads * perThread - threads * perThread / 4;
+        assertEquals(expected, db.findRecipesWith("tomate").size());
+        assertEquals(threads * perThread, db.getIngredients().size());
+        db.close();
+
+        Database reopened = new Database(dir, StorageEngine.SEGMENTS);
+        assertEquals(expected, reopened.completeRecipe("receta", Integer.MAX_VALUE).size());
+        assertNotNull(reopened.readIngredient("Ingrediente 3-150"));
+        reopened.close();
+    }
+
+    @Test
+    void racingWritersOfTheSameNameHaveOneWinner() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int round = 0; round < 50; round++) {
+            String name = "Receta " + round;
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger winners = new AtomicInteger();
+            AtomicInteger losers = new AtomicInteger();
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        db.writeRecipe(recipe(name, 1, 1, "Sal"));
+                        winners.incrementAndGet();
+                    } catch (NameAlreadyInUse e) {
+                        losers.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(1, winners.get());
+            assertEquals(threads - 1, losers.get());
+        }
+        pool.shutdown();
+        assertEquals(50, db.findRecipesWith("sal").size());
+        db.close();
+    }
+
+    @Test
+    void commitsRacingCompactionSucceed() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        int threads = 4;
+        int perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        Future<Integer> compactor = pool.submit(() -> {
+            int compactions = 0;
+            while (!done.get()) {
+                assertTrue(db.compactIngredients());
+                compactions++;
+            }
+            return compactions;
+        });
+        ArrayList<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    // Cada ingrediente se reescribe una vez para que la compactacion tenga registros muertos
+                    assertTrue(db.addIngredient("Ingrediente " + id + "-" + i, "Vegetal", "kg"));
+                    assertTrue(db.addIngredient("Ingrediente " + id + "-" + i, "Vegetal", "g"));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        done.set(true);
+        assertTrue(compactor.get() > 0);
+        pool.shutdown();
+        assertTrue(db.compactIngredients());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertEquals("g", db.readIngredient("Ingrediente " + t + "-" + i)[2]);
+            }
+        }
+        db.close();
+
+        Database reopened = new Database(dir, StorageEngine.SEGMENTS);
+        assertEquals(threads * perThread, reopened.getIngredients().size());
+        assertEquals("g", reopened.readIngredient("Ingrediente 2-499")[2]);
+        reopened.close();
+    }
+
+    @Test
+    void bulkImportWritesEveryBatch() {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        db.addIngredient("Ingrediente 5", "Viejo", "kg");
+        int rows = 20_000;
+        int imported = db.importIngredients(IntStream.range(0, rows)
+                .mapToObj(i -> new String[] {"Ingrediente " + i, "Vegetal", "g"}));
+        assertEquals(rows, imported);
+        assertEquals(rows, db.getIngredients().size());
+        assertEquals("Vegetal", db.readIngredient("Ingrediente 5")[1]);
+        assertEquals(List.of("Ingrediente 19999"), db.completeIngredient("ingrediente 19999", 10));
+        db.close();
+
+        Database reopened = new Database(dir, StorageEngine.SEGMENTS);
+        assertEquals(rows, reopened.getIngredients().size());
+        assertEquals("g", reopened.readIngredient("Ingrediente 12345")[2]);
+        reopened.close();
+    }
+
+    @Test
+    void failedBulkImportKeepsCompletedBatches() {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        int rows = 10_000;
+        Stream<String[]> input = IntStream.range(0, rows)
+                .mapToObj(i -> i == rows - 1 ? new String[] {"Roto"} : new String[] {"Ingrediente " + i, "Vegetal", "g"});
+        assertThrows(IllegalArgumentException.class, () -> db.importIngredients(input));
+        // El primer lote completo queda importado y el lote en curso se descarta
+        int batch = db.getIngredients().size();
+        assertTrue(batch > 0 && batch < rows - 1);
+        assertNotNull(db.readIngredient("Ingrediente 0"));
+        assertNull(db.readIngredient("Ingrediente " + (rows - 2)));
+        db.close();
+
+        Database reopened = new Database(dir, StorageEngine.SEGMENTS);
+        assertEquals(batch, reopened.getIngredients().size());
+        reopened.close();
+    }
+
+    @Test
+    void bulkImportFromFileAndInvalidRows() throws IOException {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        File file = new File(dir, "ingredientes.txt");
+        Files.write(file.toPath(), List.of("TomateƒVegetalƒkg", "", "SalƒCondimentoƒpizca"), StandardCharsets.UTF_8);
+        assertEquals(2, db.importIngredients(file));
+        assertNotNull(db.readIngredient("Sal"));
+        assertEquals(-1, db.importIngredients(new File(dir, "no-existe.txt")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> db.importIngredients(Stream.<String[]>of(new String[] {"Ajo", "Vegetal"})));
+        assertThrows(IllegalArgumentException.class,
+                () -> db.importIngredients(Stream.<String[]>of(new String[] {"Ajo", "", "kg"})));
+        assertNull(db.readIngredient("Ajo"));
+        assertEquals(0, db.importIngredients(Stream.empty()));
+        db.close();
+    }
+
+    @Test
+    void ingredientsSurviveReopen() throws IOException {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        assertTrue(db.addIngredient("Tomate", "Vegetal", "kg"));
+        assertTrue(db.addIngredient("Sal", "Condimento", "pizca"));
+        db.close();
+
+        db = new Database(dir, StorageEngine.SEGMENTS);
+        assertEquals("Condimento", db.readIngredient("Sal")[1]);
+        assertEquals(List.of("Sal", "Tomate"), db.getIngredients().stream().sorted().toList());
+        db.close();
+    }
+
+}
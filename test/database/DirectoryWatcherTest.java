@@ -0,0 +1,173 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import objects.Recipe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la importacion de recetas al vigilar el directorio de la base de datos
+ *
+ * @author Grupo C [Backend]
+ */
+class DirectoryWatcherTest {
+
+    @TempDir
+    File dir;
+
+    private File drop(Recipe recipe, String fileName) throws IOException {
+        File file = new File(dir, fileName);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(recipe);
+        }
+        return file;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "tiempo de espera agotado");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void droppedFilesAreImportedUpdatedAndRemoved() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        assertTrue(db.startWatching(50));
+        File file = drop(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate"), "gazpacho.dat");
+        await(() -> db.searchRecipe("Gazpacho") != null);
+        assertTrue(file.exists());
+        assertEquals(List.of("Gazpacho"), db.findRecipesWith("tomate"));
+
+        // Un cambio en el archivo reemplaza la receta sin dejar de encontrarla
+        drop(DatabaseTest.recipe("Gazpacho", 25, 0, "Tomate", "Pepino"), "gazpacho.dat");
+        await(() -> db.findRecipesWith("pepino").size() == 1);
+        assertEquals(25, db.searchRecipe("Gazpacho").getPrepTime());
+
+        // Si el archivo pasa a contener otra receta, la anterior desaparece
+        drop(DatabaseTest.recipe("Salmorejo", 15, 0, "Tomate", "Pan"), "gazpacho.dat");
+        await(() -> db.searchRecipe("Gazpacho") == null);
+        assertEquals(List.of("Salmorejo"), db.findRecipesWith("pan"));
+
+        assertTrue(file.delete());
+        await(() -> db.searchRecipe("Salmorejo") == null);
+        assertTrue(db.findRecipesWith("tomate").isEmpty());
+        assertTrue(db.completeRecipe("s", 10).isEmpty());
+        db.close();
+    }
+
+    @Test
+    void importedFilesSurviveReopenAndAreNotReadAgain() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        assertTrue(db.startWatching(50));
+        File kept = drop(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate"), "gazpacho.dat");
+        File gone = drop(DatabaseTest.recipe("Tostada", 2, 3, "Pan"), "tostada.dat");
+        await(() -> db.searchRecipe("Gazpacho") != null && db.searchRecipe("Tostada") != null);
+        db.close();
+
+        // Con la base de datos cerrada, otro proceso borra un archivo y añade otro
+        assertTrue(gone.delete());
+        drop(DatabaseTest.recipe("Pisto", 10, 30, "Pimiento"), "pisto.dat");
+        Database reopened = new Database(dir, StorageEngine.SEGMENTS);
+        assertTrue(kept.exists());
+        // El archivo nuevo no se migra al abrir, sino que se importa al volver a vigilar, y se deja en su lugar
+        assertNull(reopened.searchRecipe("Pisto"));
+        assertTrue(reopened.startWatching(50));
+        assertTrue(new File(dir, "pisto.dat").exists());
+        assertNull(reopened.searchRecipe("Tostada"));
+        assertEquals(20, reopened.searchRecipe("Gazpacho").getPrepTime());
+        assertEquals(10, reopened.searchRecipe("Pisto").getPrepTime());
+        reopened.close();
+    }
+
+    @Test
+    void filesEngineFollowsItsOwnFiles() throws Exception {
+        Database db = new Database(dir, StorageEngine.FILES);
+        assertTrue(db.writeRecipe(DatabaseTest.recipe("Tortilla", 10, 15, "Huevo", "Patata")));
+        assertTrue(db.startWatching(50));
+
+        // Otro proceso escribe un archivo del motor: se registra sin volver a escribirlo
+        File gazpacho = drop(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate"), "Gazpacho.dat");
+        await(() -> db.searchRecipe("Gazpacho") != null);
+        assertEquals(List.of("Gazpacho"), db.findRecipesWith("tomate"));
+        assertEquals(List.of("Gazpacho.dat", "Tortilla.dat"), db.lsReader().stream().map(File::getName).sorted().toList());
+
+        // Un cambio en el archivo reemplaza la receta en la cache y en los indices
+        drop(DatabaseTest.recipe("Gazpacho", 25, 0, "Tomate", "Pepino"), "Gazpacho.dat");
+        await(() -> db.findRecipesWith("pepino").size() == 1);
+        assertEquals(25, db.searchRecipe("Gazpacho").getPrepTime());
+
+        // Si otro proceso elimina un archivo, la receta desaparece del motor y de los indices
+        assertTrue(new File(dir, "Tortilla.dat").delete());
+        await(() -> db.searchRecipe("Tortilla") == null);
+        assertTrue(db.findRecipesWith("huevo").isEmpty());
+        assertEquals(List.of("Gazpacho"), db.getRecipes().stream().map(Recipe::getName).toList());
+
+        // Las escrituras propias siguen funcionando mientras se vigila
+        assertTrue(db.writeRecipe(DatabaseTest.recipe("Pisto", 10, 30, "Pimiento")));
+        assertTrue(db.deleteRecipe("Gazpacho"));
+        assertFalse(gazpacho.exists());
+        Thread.sleep(300);
+        assertNull(db.searchRecipe("Gazpacho"));
+        assertEquals(10, db.searchRecipe("Pisto").getPrepTime());
+        db.close();
+    }
+
+    @Test
+    void unreadableFilesAreRetriedWhenTheyChange() throws Exception {
+        Database db = new Database(dir, StorageEngine.MEMORY);
+        assertTrue(db.startWatching(50));
+        File file = new File(dir, "rota.dat");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {1, 2, 3});
+        }
+        drop(DatabaseTest.recipe("Tostada", 2, 3, "Pan"), "tostada.dat");
+        await(() -> db.searchRecipe("Tostada") != null);
+        assertTrue(file.exists());
+        drop(DatabaseTest.recipe("Pisto", 10, 30, "Pimiento"), "rota.dat");
+        await(() -> db.searchRecipe("Pisto") != null);
+        db.close();
+    }
+
+    @Test
+    void burstsAreDeliveredTogether() throws Exception {
+        CopyOnWriteArrayList<List<String>> batches = new CopyOnWriteArrayList<>();
+        DirectoryWatcher watcher = new DirectoryWatcher(dir, 300, new DirectoryWatcher.Listener() {
+            @Override
+            public void changed(ArrayList<File> changed, ArrayList<File> removed) {
+                ArrayList<String> names = new ArrayList<>();
+                changed.forEach(file -> names.add("+" + file.getName()));
+                removed.forEach(file -> names.add("-" + file.getName()));
+                batches.add(names.stream().sorted().toList());
+            }
+
+            @Override
+            public void lost() {
+                batches.add(List.of("lost"));
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            drop(DatabaseTest.recipe("Receta " + i, i, i), "receta" + i + ".dat");
+        }
+        drop(DatabaseTest.recipe("Receta 0", 1, 1), "receta0.dat");
+        assertTrue(new File(dir, "receta4.dat").delete());
+        assertTrue(new File(dir, "ignorado.txt").createNewFile());
+        await(() -> !batches.isEmpty());
+        watcher.close();
+        assertEquals(List.of(List.of("+receta0.dat", "+receta1.dat", "+receta2.dat", "+receta3.dat", "-receta4.dat")), batches);
+    }
+
+}
@@ -0,0 +1,96 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import objects.IngredientTable;
+import objects.Recipe;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del indice invertido de ingredientes
+ *
+ * @author Grupo C [Backend]
+ */
+class IngredientIndexTest {
+
+    private MemoryEngine store;
+    private IngredientIndex index;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new MemoryEngine(new IngredientTable());
+        store.put(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate", "Pepino", "Ajo"));
+        store.put(DatabaseTest.recipe("Salmorejo", 15, 0, "Tomate", "Pan", "Ajo"));
+        store.put(DatabaseTest.recipe("Tostada", 2, 3, "Pan", "Tomate"));
+        store.put(DatabaseTest.recipe("Agua", 0, 0));
+        index = new IngredientIndex(store);
+    }
+
+    private static List<String> sorted(List<String> names) {
+        return names.stream().sorted().toList();
+    }
+
+    @Test
+    void queryCombinesAllAnyAndNone() {
+        assertEquals(List.of("Gazpacho", "Salmorejo", "Tostada"), sorted(index.query(List.of("tomate"), List.of(), List.of())));
+        assertEquals(List.of("Gazpacho", "Salmorejo"), sorted(index.query(List.of("Tomate", "AJO"), List.of(), List.of())));
+        assertEquals(List.of("Salmorejo"), index.query(List.of("tomate", "ajo"), List.of(), List.of("pepino")));
+        assertEquals(List.of("Gazpacho", "Salmorejo", "Tostada"), sorted(index.query(List.of(), List.of("pepino", " pan "), List.of())));
+        assertEquals(List.of("Tostada"), index.query(List.of(), List.of("pepino", "pan"), List.of("ajo", "leche")));
+        assertTrue(index.query(List.of("leche"), List.of(), List.of()).isEmpty());
+        assertTrue(index.query(List.of(), List.of("leche"), List.of()).isEmpty());
+        // Sin condiciones coinciden todas las recetas, tambien las que no tienen ingredientes
+        assertEquals(4, index.query(List.of(), List.of(), List.of()).size());
+    }
+
+    @Test
+    void cookableNeedsEveryIngredient() {
+        assertEquals(List.of("Tostada"), index.cookable(List.of("pan", "tomate", "sal")));
+        assertEquals(List.of("Gazpacho", "Salmorejo", "Tostada"),
+                sorted(index.cookable(List.of("Tomate", "pepino", "ajo", "pan", "tomate"))));
+        assertTrue(index.cookable(List.of()).isEmpty());
+    }
+
+    @Test
+    void updatesAfterBuildReplaceAndRemove() throws IOException {
+        assertEquals(3, index.query(List.of("tomate"), List.of(), List.of()).size());
+        Recipe changed = DatabaseTest.recipe("Tostada", 2, 3, "Pan", "Aceite");
+        store.put(changed);
+        index.add(changed);
+        index.remove("Gazpacho");
+        store.delete("Gazpacho");
+        assertEquals(List.of("Salmorejo"), index.query(List.of("tomate"), List.of(), List.of()));
+        assertEquals(List.of("Tostada"), index.query(List.of("aceite"), List.of(), List.of()));
+        assertTrue(index.query(List.of("pepino"), List.of(), List.of()).isEmpty());
+
+        // Los identificadores liberados se reutilizan sin mezclar recetas
+        Recipe nueva = DatabaseTest.recipe("Pisto", 10, 30, "Pimiento", "Tomate");
+        index.add(nueva);
+        assertEquals(List.of("Pisto", "Salmorejo"), sorted(index.query(List.of("tomate"), List.of(), List.of())));
+        assertEquals(List.of("Pisto"), index.cookable(List.of("pimiento", "tomate")));
+    }
+
+    @Test
+    void updatesBeforeBuildAreReadFromStore() throws IOException {
+        Recipe late = DatabaseTest.recipe("Pisto", 10, 30, "Pimiento", "Tomate");
+        store.put(late);
+        index.add(late);
+        assertEquals(List.of("Pisto"), index.query(List.of("pimiento"), List.of(), List.of()));
+    }
+
+    @Test
+    void buildReadsEveryBatch() throws IOException {
+        int count = RecipeIndex.BUILD_BATCH * 2 + 10;
+        for (int i = 0; i < count; i++) {
+            store.put(DatabaseTest.recipe("Ensalada " + i, 5, 0, "Lechuga", i % 2 == 0 ? "Atun" : "Maiz"));
+        }
+        assertEquals(count, index.query(List.of("lechuga"), List.of(), List.of()).size());
+        assertEquals(count / 2, index.query(List.of("lechuga"), List.of(), List.of("maiz")).size());
+        assertEquals(3, index.query(List.of("tomate"), List.of(), List.of()).size());
+    }
+
+}
@@ -0,0 +1,341 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import exceptions.CorruptedFile;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del registro de ingredientes: reproduccion, escrituras interrumpidas y compactacion
+ *
+ * @author Grupo C [Backend]
+ */
+class IngredientLogTest {
+
+    @TempDir
+    File dir;
+
+    private static String record(String name) {
+        return name + "ƒVegetalƒkg";
+    }
+
+    private static int size(String name) {
+        return IngredientLog.RECORD_OVERHEAD + record(name).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Test
+    void reopeningRebuildsLiveEntries() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        log.put("Cebolla", record("Cebolla"));
+        assertTrue(log.delete("Cebolla"));
+        assertFalse(log.delete("Cebolla"));
+        log.putAll(List.of("Ajo", "Sal"), List.of(record("Ajo"), record("Sal")));
+        log.sync();
+        log.close();
+
+        log = new IngredientLog(file);
+        assertEquals(List.of("Ajo", "Sal", "Tomate"), log.names().stream().sorted().toList());
+        assertNull(log.get("Cebolla"));
+        assertEquals(record("Ajo"), log.get("Ajo"));
+        assertEquals(record("Sal"), log.get("Sal"));
+        log.close();
+    }
+
+    @Test
+    void replayAppliesRecordsAfterCheckpoint() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        log.checkpoint();
+        log.put("Ajo", record("Ajo"));
+        log.delete("Tomate");
+        log.close();
+        assertTrue(new File(dir, "datamap.db").exists());
+
+        log = new IngredientLog(file);
+        assertEquals(List.of("Ajo"), log.names());
+        assertNull(log.get("Tomate"));
+        assertEquals(record("Ajo"), log.get("Ajo"));
+        log.close();
+    }
+
+    @Test
+    void tornTailIsTruncatedAndQuarantined() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        log.put("Ajo", record("Ajo"));
+        long good = log.length();
+        log.close();
+        // Un registro a medio escribir: longitud y CRC, pero no todo el contenido
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(good);
+            raf.writeInt(100);
+            raf.writeInt(0);
+            raf.write(new byte[10]);
+        }
+
+        log = new IngredientLog(file);
+        assertEquals(2, log.names().size());
+        assertEquals(record("Ajo"), log.get("Ajo"));
+        assertEquals(good, log.length());
+        File[] quarantined = new File(dir, "quarantine").listFiles();
+        assertNotNull(quarantined);
+        assertEquals(1, quarantined.length);
+        assertEquals(18, quarantined[0].length());
+        log.close();
+    }
+
+    @Test
+    void corruptTailRecordIsDiscarded() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        log.put("Ajo", record("Ajo"));
+        long ajo = log.length() - size("Ajo");
+        log.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(ajo + IngredientLog.RECORD_OVERHEAD);
+            raf.write('X');
+        }
+
+        log = new IngredientLog(file);
+        assertEquals(List.of("Tomate"), log.names());
+        assertNull(log.get("Ajo"));
+        assertEquals(ajo, log.length());
+        log.close();
+    }
+
+    @Test
+    void compactKeepsLiveRecordsOnly() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        for (int i = 0; i < 100; i++) {
+            log.put("Ingrediente " + i, record("Ingrediente " + i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(log.delete("Ingrediente " + i));
+        }
+        long before = log.length();
+        assertTrue(log.getDeadBytes() > 0);
+
+        log.compact();
+        assertEquals(1, log.getGeneration());
+        assertEquals(0, log.getDeadBytes());
+        assertTrue(log.length() < before);
+        assertEquals(50, log.names().size());
+        assertEquals(record("Ingrediente 51"), log.get("Ingrediente 51"));
+        assertNull(log.get("Ingrediente 50"));
+        log.close();
+
+        log = new IngredientLog(file);
+        assertEquals(1, log.getGeneration());
+        assertEquals(50, log.names().size());
+        log.close();
+    }
+
+    @Test
+    void writesDuringCompactionAreKept() throws Exception {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        for (int i = 0; i < 2000; i++) {
+            log.put("Ingrediente " + i, record("Ingrediente " + i));
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            log.delete("Ingrediente " + i);
+        }
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    log.put("Nuevo " + i, record("Nuevo " + i));
+                    log.delete("Ingrediente " + (2 * i + 1));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            log.compact();
+        }
+        writer.join();
+        log.compact();
+
+        // Los borrados escritos mientras se copiaba no deben resucitar los registros copiados
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add("Nuevo " + i);
+        }
+        expected.sort(null);
+        assertEquals(expected, log.names().stream().sorted().toList());
+        assertEquals(0, log.getDeadBytes());
+        log.close();
+
+        IngredientLog reopened = new IngredientLog(file);
+        assertEquals(expected, reopened.names().stream().sorted().toList());
+        for (String name : expected) {
+            assertEquals(record(name), reopened.get(name));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void needsCompactionOnceHalfTheFileIsDead() throws IOException {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        int n = (int) (IngredientLog.COMPACTION_MIN_DEAD_BYTES / size("Ingrediente 0")) + 100;
+        for (int i = 0; i < n; i++) {
+            log.put("Ingrediente " + i, record("Ingrediente " + i));
+        }
+        assertFalse(log.needsCompaction());
+        for (int i = 0; i < n; i++) {
+            log.put("Ingrediente " + i, record("Ingrediente " + i));
+        }
+        log.delete("Ingrediente 0");
+        assertTrue(log.needsCompaction());
+        log.close();
+    }
+
+    @Test
+    void readRejectsCorruptRecord() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        log.put("Ajo", record("Ajo"));
+        log.checkpoint();
+        log.close();
+        // El punto de control ya cubre el registro dañado, por lo que no se descarta al abrir
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(IngredientLog.HEADER_SIZE + IngredientLog.RECORD_OVERHEAD);
+            raf.write('X');
+        }
+
+        IngredientLog reopened = new IngredientLog(file);
+        assertThrows(CorruptedFile.class, () -> reopened.get("Tomate"));
+        assertEquals(record("Ajo"), reopened.get("Ajo"));
+        reopened.close();
+    }
+
+    @Test
+    void failedCompactionKeepsTheOriginalLog() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        log.put("Ajo", record("Ajo"));
+        log.delete("Ajo");
+        log.checkpoint();
+        log.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(IngredientLog.HEADER_SIZE + IngredientLog.RECORD_OVERHEAD);
+            raf.write('X');
+        }
+
+        IngredientLog reopened = new IngredientLog(file);
+        long length = reopened.length();
+        assertThrows(CorruptedFile.class, reopened::compact);
+        assertFalse(new File(dir, "ingredients.db.tmp").exists());
+        assertEquals(0, reopened.getGeneration());
+        assertEquals(length, reopened.length());
+        // El registro sigue abierto sobre el archivo original y admite escrituras
+        reopened.put("Sal", record("Sal"));
+        reopened.sync();
+        assertEquals(record("Sal"), reopened.get("Sal"));
+        reopened.close();
+    }
+
+    @Test
+    void mappedReadsFollowGrowthAndCompaction() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        assertEquals(record("Tomate"), log.get("Tomate"));
+        // El registro nuevo queda fuera de la proyeccion anterior, que se debe ampliar
+        for (int i = 0; i < 1000; i++) {
+            log.put("Ingrediente " + i, record("Ingrediente " + i));
+            assertEquals(record("Ingrediente " + i), log.get("Ingrediente " + i));
+        }
+
+        log.compact();
+        for (String name : log.names()) {
+            assertEquals(record(name), log.get(name));
+        }
+        log.close();
+    }
+
+    @Test
+    void mappingHeadroomIsTrimmed() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        log.put("Tomate", record("Tomate"));
+        assertEquals(record("Tomate"), log.get("Tomate"));
+        // La proyeccion deja margen despues del final y las escrituras siguientes lo ocupan
+        assertTrue(file.length() >= log.length() + IngredientLog.MAP_MIN_HEADROOM);
+        log.put("Ajo", record("Ajo"));
+        assertEquals(record("Ajo"), log.get("Ajo"));
+        long length = log.length();
+        log.close();
+        assertEquals(length, file.length());
+
+        // Un cierre que no llego a recortar el margen deja ceros al final, que no son una escritura interrumpida
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length + IngredientLog.MAP_MIN_HEADROOM);
+        }
+        log = new IngredientLog(file);
+        assertEquals(length, log.length());
+        assertEquals(length, file.length());
+        assertEquals(2, log.names().size());
+        assertFalse(new File(dir, "quarantine").exists());
+        log.put("Sal", record("Sal"));
+        assertEquals(record("Sal"), log.get("Sal"));
+        log.close();
+    }
+
+    @Test
+    void mappedAndChannelReadsAgree() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        IngredientLog log = new IngredientLog(file);
+        for (int i = 0; i < 100; i++) {
+            log.put("Ingrediente " + i, record("Ingrediente " + i));
+        }
+        String[] mapped = new String[100];
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i] = log.get("Ingrediente " + i);
+        }
+        log.setMapped(false);
+        for (int i = 0; i < mapped.length; i++) {
+            assertEquals(mapped[i], log.get("Ingrediente " + i));
+        }
+        log.close();
+    }
+
+    @Test
+    void legacyFileIsConverted() throws IOException, CorruptedFile {
+        File file = new File(dir, "ingredients.db");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeUTF(record("Tomate"));
+            out.writeUTF(record("Ajo"));
+        }
+        IngredientLog log = new IngredientLog(file);
+        assertEquals(2, log.names().size());
+        assertEquals(record("Ajo"), log.get("Ajo"));
+        log.close();
+    }
+
+}
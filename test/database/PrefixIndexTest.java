@@ -0,0 +1,83 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del indice de prefijos para autocompletar
+ *
+ * @author Grupo C [Backend]
+ */
+class PrefixIndexTest {
+
+    @Test
+    void completesInAlphabeticalOrderIgnoringCaseAndAccents() {
+        PrefixIndex index = new PrefixIndex(List.of("Pana", "Pan de ajo", "Pan", "Panceta", "Ñame", "Maíz", "maiz dulce", "Tomate"));
+        assertEquals(List.of("Pan", "Pan de ajo", "Pana", "Panceta"), index.complete("pan", 10));
+        assertEquals(List.of("Pan", "Pan de ajo"), index.complete("PAN", 2));
+        assertEquals(List.of("Maíz", "maiz dulce"), index.complete("maí", 10));
+        assertEquals(List.of("Ñame"), index.complete("na", 10));
+        assertEquals(8, index.complete("", 100).size());
+        assertTrue(index.complete("pan", 0).isEmpty());
+        assertTrue(index.complete("x", 10).isEmpty());
+        assertTrue(index.complete("tomates", 10).isEmpty());
+    }
+
+    @Test
+    void addAndRemoveKeepOriginalSpelling() {
+        PrefixIndex index = new PrefixIndex(List.of());
+        index.add("Maíz");
+        index.add("MAIZ");
+        index.add("Maíz");
+        assertEquals(List.of("MAIZ", "Maíz"), index.complete("maiz", 10));
+        index.remove("MAIZ");
+        index.remove("No existe");
+        assertEquals(List.of("Maíz"), index.complete("maiz", 10));
+    }
+
+    @Test
+    void matchesSortedScanOfEveryName() {
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            names.add("Ingrediente " + Integer.toString(i * 7919 % 2000, 36));
+        }
+        PrefixIndex index = new PrefixIndex(names);
+        for (String prefix : List.of("ingrediente 1", "ingrediente 1a", "ingrediente z", "ingr")) {
+            TreeSet<String> expected = new TreeSet<>();
+            for (String name : names) {
+                if (TextIndex.fold(name).startsWith(prefix)) {
+                    expected.add(name);
+                }
+            }
+            assertEquals(new ArrayList<>(expected).subList(0, Math.min(5, expected.size())), index.complete(prefix, 5), prefix);
+        }
+    }
+
+    @Test
+    void searchesRunDuringUpdates() throws InterruptedException {
+        PrefixIndex index = new PrefixIndex(List.of("Ajo"));
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                index.add("Aceite " + i);
+                index.remove("Aceite " + (i - 100));
+            }
+            done.set(true);
+        });
+        writer.start();
+        while (!done.get()) {
+            List<String> found = index.complete("a", 50);
+            assertTrue(found.size() <= 50);
+            assertTrue(index.complete("ajo", 10).contains("Ajo"));
+        }
+        writer.join();
+        assertEquals(100, index.complete("aceite", 1000).size());
+    }
+
+}
@@ -0,0 +1,79 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del apartado de datos dañados en "quarantine/"
+ *
+ * @author Grupo C [Backend]
+ */
+class QuarantineTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void copyKeepsTheDiscardedTail() throws Exception {
+        File file = new File(dir, "recipes-0000.seg");
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Files.write(file.toPath(), data);
+        File first;
+        File second;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            first = Quarantine.copy(dir, file.getName(), channel, 600, 1000);
+            second = Quarantine.copy(dir, file.getName(), channel, 900, 1000);
+        }
+        assertEquals(new File(dir, "quarantine"), first.getParentFile());
+        assertTrue(first.getName().startsWith("recipes-0000.seg@600."));
+        assertTrue(first.getName().endsWith(".bad"));
+        assertArrayEquals(Arrays.copyOfRange(data, 600, 1000), Files.readAllBytes(first.toPath()));
+        assertArrayEquals(Arrays.copyOfRange(data, 900, 1000), Files.readAllBytes(second.toPath()));
+        // El archivo original no cambia
+        assertEquals(1000, file.length());
+    }
+
+    @Test
+    void moveDoesNotOverwriteEarlierFiles() throws Exception {
+        File file = new File(dir, "Rota.dat");
+        // Varios archivos con el mismo nombre apartados seguidos, muchos en el mismo milisegundo
+        for (int i = 0; i < 20; i++) {
+            Files.write(file.toPath(), new byte[] {(byte) i});
+            File moved = Quarantine.move(dir, file);
+            assertFalse(file.exists());
+            assertArrayEquals(new byte[] {(byte) i}, Files.readAllBytes(moved.toPath()));
+        }
+        assertEquals(20, new File(dir, "quarantine").listFiles().length);
+    }
+
+    @Test
+    void nothingIsPrintedToTheConsole() throws Exception {
+        File file = new File(dir, "Rota.dat");
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        try {
+            Quarantine.move(dir, file);
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals(0, captured.size());
+    }
+
+}
@@ -0,0 +1,193 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import objects.Ingredient;
+import objects.IngredientTable;
+import objects.Recipe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la cache de recetas leidas y de sus politicas de expulsion
+ *
+ * @author Grupo C [Backend]
+ */
+class RecipeCacheTest {
+
+    @TempDir
+    File dir;
+
+    private static Recipe recipe(String name) {
+        return new Recipe(name, "Descripcion de " + name, new ArrayList<>(), "Instrucciones de " + name, 1, 1);
+    }
+
+    /**
+     * Peso maximo en el que caben unas pocas recetas por particion
+     */
+    private static long weightFor(int perShard) {
+        return 16 * perShard * RecipeCache.weigh(recipe("Receta 0000"));
+    }
+
+    @Test
+    void weightStaysBelowTheLimit() {
+        long maxWeight = weightFor(4);
+        RecipeCache cache = new RecipeCache(maxWeight, Database.CachePolicy.LRU);
+        for (int i = 0; i < 1000; i++) {
+            String name = String.format("Receta %04d", i);
+            cache.put(name, recipe(name));
+            assertTrue(cache.stats().weight() <= maxWeight);
+        }
+        Database.CacheStats stats = cache.stats();
+        assertTrue(stats.size() > 0 && stats.size() <= 64);
+        assertEquals(1000 - stats.size(), stats.evictions());
+
+        // Una receta que no cabe en su particion no se guarda
+        Recipe huge = new Recipe("Enorme", "x".repeat((int) maxWeight), new ArrayList<>(), "", 0, 0);
+        cache.put("Enorme", huge);
+        assertNull(cache.peek("Enorme"));
+    }
+
+    @Test
+    void lruKeepsRecentlyUsedRecipes() {
+        RecipeCache cache = new RecipeCache(weightFor(4), Database.CachePolicy.LRU);
+        Recipe hot = recipe("Receta caliente");
+        cache.put(hot.getName(), hot);
+        cache.put("Receta fria", recipe("Receta fria"));
+        for (int i = 0; i < 1000; i++) {
+            String name = String.format("Receta %04d", i);
+            cache.put(name, recipe(name));
+            assertSame(hot, cache.get(hot.getName()));
+        }
+        assertNull(cache.get("Receta fria"));
+        Database.CacheStats stats = cache.stats();
+        assertEquals(1000, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void tinyLfuResistsScans() {
+        for (Database.CachePolicy policy : Database.CachePolicy.values()) {
+            RecipeCache cache = new RecipeCache(weightFor(4), policy);
+            ArrayList<String> hot = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String name = "Favorita " + i;
+                hot.add(name);
+                for (int j = 0; j < 5; j++) {
+                    if (cache.get(name) == null) {
+                        cache.putIfAbsent(name, recipe(name));
+                    }
+                }
+            }
+            // Un recorrido que pide una sola vez muchas recetas distintas
+            for (int i = 0; i < 2000; i++) {
+                String name = String.format("Receta %04d", i);
+                if (cache.get(name) == null) {
+                    cache.putIfAbsent(name, recipe(name));
+                }
+            }
+            long kept = hot.stream().filter(name -> cache.peek(name) != null).count();
+            if (policy == Database.CachePolicy.TINY_LFU) {
+                assertEquals(hot.size(), kept);
+            } else {
+                assertEquals(0, kept);
+            }
+        }
+    }
+
+    @Test
+    void tinyLfuWindowLetsNewRecipesBuildFrequency() {
+        // Recetas de unos 2 KB, el tamaño con el que se dimensiona el sketch
+        String text = "x".repeat(2000);
+        long maxWeight = 16 * 200 * RecipeCache.weigh(new Recipe("Receta 0000", text, new ArrayList<>(), "", 1, 1));
+        RecipeCache cache = new RecipeCache(maxWeight, Database.CachePolicy.TINY_LFU);
+        for (int i = 0; i < 16 * 200; i++) {
+            String name = String.format("Receta %04d", i);
+            for (int j = 0; j < 2; j++) {
+                if (cache.get(name) == null) {
+                    cache.putIfAbsent(name, new Recipe(name, text, new ArrayList<>(), "", 1, 1));
+                }
+            }
+        }
+        // Una receta nueva se pide varias veces mientras esta en la ventana
+        Recipe fresh = new Recipe("Nueva", text, new ArrayList<>(), "", 1, 1);
+        assertNull(cache.get("Nueva"));
+        cache.putIfAbsent("Nueva", fresh);
+        for (int i = 0; i < 3; i++) {
+            assertSame(fresh, cache.get("Nueva"));
+        }
+        // Las recetas que se piden una sola vez la sacan de la ventana, pero ella pasa a la parte principal
+        for (int i = 0; i < 16 * 40; i++) {
+            String name = "De paso " + i;
+            if (cache.get(name) == null) {
+                cache.putIfAbsent(name, new Recipe(name, text, new ArrayList<>(), "", 1, 1));
+            }
+        }
+        assertSame(fresh, cache.peek("Nueva"));
+        assertTrue(cache.stats().weight() <= maxWeight);
+    }
+
+    @Test
+    void packedRecipesAreHandedOutAsCopies() {
+        RecipeCache cache = new RecipeCache(weightFor(4), Database.CachePolicy.LRU);
+        IngredientTable table = new IngredientTable();
+        int[] packed = table.pack(List.of(new Ingredient("Tomate", "Vegetal", 2, "kg")));
+        Recipe cached = new Recipe("Gazpacho", "Frio", table, packed, "Triturar", 20, 0);
+        assertNull(cache.putIfAbsent("Gazpacho", cached));
+        long weight = cache.stats().weight();
+
+        Recipe copy = cache.get("Gazpacho");
+        assertNotSame(cached, copy);
+        assertEquals("Tomate", copy.getIngredients().get(0).getName());
+        copy.getIngredients().get(0).setQuantity(3);
+        // La receta guardada sigue empaquetada y pesando lo mismo, pero ve los cambios en el arreglo
+        assertSame(packed, cached.getPackedIngredients());
+        assertEquals(weight, cache.stats().weight());
+        assertEquals(3, cache.peek("Gazpacho").getIngredients().get(0).getQuantity());
+        cache.invalidate("Gazpacho", cached);
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    void putIfAbsentAndInvalidateRespectTheCachedInstance() {
+        RecipeCache cache = new RecipeCache(weightFor(4), Database.CachePolicy.LRU);
+        Recipe first = recipe("Gazpacho");
+        Recipe second = recipe("Gazpacho");
+        assertNull(cache.putIfAbsent("Gazpacho", first));
+        assertSame(first, cache.putIfAbsent("Gazpacho", second));
+        cache.invalidate("Gazpacho", second);
+        assertSame(first, cache.peek("Gazpacho"));
+        cache.invalidate("Gazpacho", first);
+        assertNull(cache.peek("Gazpacho"));
+        cache.put("Gazpacho", second);
+        cache.invalidate("Gazpacho");
+        assertEquals(0, cache.stats().size());
+        assertEquals(0, cache.stats().weight());
+        // peek no cuenta en las estadisticas
+        assertEquals(0, cache.stats().hits() + cache.stats().misses());
+    }
+
+    @Test
+    void databaseServesRepeatedReadsFromCache() throws Exception {
+        Database db = new Database(dir, StorageEngine.MEMORY, false, weightFor(4), Database.CachePolicy.TINY_LFU);
+        db.writeRecipe(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate"));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(db.searchRecipe("Gazpacho"));
+        }
+        assertNull(db.searchRecipe("No existe"));
+        Database.CacheStats stats = db.getCacheStats();
+        assertTrue(stats.hits() >= 9, stats.toString());
+        assertTrue(stats.size() <= 1);
+        assertTrue(stats.weight() <= weightFor(4));
+        db.close();
+    }
+
+}
@@ -0,0 +1,263 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import exceptions.CorruptedFile;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import objects.Ingredient;
+import objects.IngredientTable;
+import objects.Recipe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del almacen de recetas en segmentos: reapertura, registros dañados y compactacion
+ *
+ * @author Grupo C [Backend]
+ */
+class RecipeStoreTest {
+
+    private static final long SEGMENT_SIZE = 16 * 1024;
+
+    @TempDir
+    File dir;
+
+    private static Recipe recipe(String name, int version) {
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
+        ingredients.add(new Ingredient("Tomate", "Vegetal", 2, "kg"));
+        ingredients.add(new Ingredient("Sal", "Condimento", 1, null));
+        return new Recipe(name, "Descripcion " + version, ingredients, "Instrucciones ".repeat(20), version, 10);
+    }
+
+    private static void assertRecipe(String name, int version, Recipe read) {
+        assertNotNull(read, name);
+        assertEquals(name, read.getName());
+        assertEquals("Descripcion " + version, read.getDescription());
+        assertEquals(version, read.getPrepTime());
+        assertEquals(2, read.getIngredients().size());
+        assertNull(read.getIngredients().get(1).getUnit());
+    }
+
+    private static long segmentBytes(File dir) {
+        long total = 0;
+        for (File f : dir.listFiles((d, name) -> name.endsWith(".seg"))) {
+            total += f.length();
+        }
+        return total;
+    }
+
+    @Test
+    void putGetDeleteAndReopen() throws IOException, CorruptedFile {
+        RecipeStore store = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        for (int i = 0; i < 200; i++) {
+            store.put(recipe("Receta " + i, 1));
+        }
+        store.put(recipe("Receta 7", 2));
+        assertTrue(store.delete("Receta 8"));
+        assertFalse(store.delete("Receta 8"));
+        assertTrue(store.openFiles() > 1);
+        assertRecipe("Receta 7", 2, store.get("Receta 7"));
+        assertNull(store.get("Receta 8"));
+        store.close();
+
+        // Con el indice guardado
+        store = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        assertEquals(199, store.names().size());
+        assertRecipe("Receta 7", 2, store.get("Receta 7"));
+        store.close();
+
+        // Sin indice, reconstruido a partir de los segmentos
+        assertTrue(new File(dir, "recipes.idx").delete());
+        store = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        assertEquals(199, store.names().size());
+        assertFalse(store.contains("Receta 8"));
+        assertRecipe("Receta 7", 2, store.get("Receta 7"));
+        assertRecipe("Receta 199", 1, store.get("Receta 199"));
+        store.close();
+    }
+
+    @Test
+    void tornTailIsQuarantinedOnRebuild() throws IOException, CorruptedFile {
+        RecipeStore store = new RecipeStore(dir, new IngredientTable());
+        store.put(recipe("Tarta", 1));
+        store.put(recipe("Sopa", 1));
+        store.close();
+        File segment = new File(dir, "recipes-0000.seg");
+        long good = segment.length();
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(good);
+            raf.writeInt(500);
+            raf.writeInt(0);
+            raf.write(new byte[20]);
+        }
+        assertTrue(new File(dir, "recipes.idx").delete());
+
+        store = new RecipeStore(dir, new IngredientTable());
+        assertEquals(2, store.names().size());
+        assertRecipe("Sopa", 1, store.get("Sopa"));
+        assertEquals(good, segment.length());
+        File[] quarantined = new File(dir, "quarantine").listFiles();
+        assertNotNull(quarantined);
+        assertEquals(1, quarantined.length);
+        assertEquals(28, quarantined[0].length());
+        store.close();
+    }
+
+    @Test
+    void staleIndexIsRebuilt() throws IOException, CorruptedFile {
+        RecipeStore store = new RecipeStore(dir, new IngredientTable());
+        store.put(recipe("Tarta", 1));
+        store.close();
+        // Una escritura posterior que no llego a guardar el indice
+        store = new RecipeStore(dir, new IngredientTable());
+        store.put(recipe("Sopa", 1));
+        File saved = new File(dir, "recipes.idx.saved");
+        Files.copy(new File(dir, "recipes.idx").toPath(), saved.toPath());
+        store.close();
+        Files.move(saved.toPath(), new File(dir, "recipes.idx").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        store = new RecipeStore(dir, new IngredientTable());
+        assertRecipe("Sopa", 1, store.get("Sopa"));
+        store.close();
+    }
+
+    @Test
+    void longNamesAreRejected() throws IOException, CorruptedFile {
+        RecipeStore store = new RecipeStore(dir, new IngredientTable());
+        long before = new File(dir, "recipes-0000.seg").length();
+        String tooLong = "ñ".repeat(RecipeStore.MAX_KEY_LENGTH / 2 + 1);
+        assertThrows(IllegalArgumentException.class, () -> store.put(recipe(tooLong, 1)));
+        assertEquals(before, new File(dir, "recipes-0000.seg").length());
+        assertFalse(store.contains(tooLong));
+
+        // Caben en UTF-8, pero no en el UTF-8 modificado con el que se guarda el indice
+        String emoji = "\uD83C\uDF45".repeat(RecipeStore.MAX_KEY_LENGTH / 4);
+        assertThrows(IllegalArgumentException.class, () -> store.put(recipe(emoji, 1)));
+        String nul = "\0".repeat(RecipeStore.MAX_KEY_LENGTH / 2 + 1);
+        assertThrows(IllegalArgumentException.class, () -> store.put(recipe(nul, 1)));
+        assertEquals(before, new File(dir, "recipes-0000.seg").length());
+
+        String longest = "a".repeat(RecipeStore.MAX_KEY_LENGTH);
+        store.put(recipe(longest, 1));
+        String longestEmoji = "\uD83C\uDF45".repeat(RecipeStore.MAX_KEY_LENGTH / 6);
+        store.put(recipe(longestEmoji, 2));
+        store.close();
+        RecipeStore fromIndex = new RecipeStore(dir, new IngredientTable());
+        assertRecipe(longest, 1, fromIndex.get(longest));
+        assertRecipe(longestEmoji, 2, fromIndex.get(longestEmoji));
+        fromIndex.close();
+        assertTrue(new File(dir, "recipes.idx").delete());
+        RecipeStore reopened = new RecipeStore(dir, new IngredientTable());
+        assertRecipe(longest, 1, reopened.get(longest));
+        assertRecipe(longestEmoji, 2, reopened.get(longestEmoji));
+        reopened.close();
+    }
+
+    @Test
+    void compactReclaimsDeadRecords() throws IOException, CorruptedFile {
+        RecipeStore store = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        for (int version = 1; version <= 5; version++) {
+            for (int i = 0; i < 50; i++) {
+                store.put(recipe("Receta " + i, version));
+            }
+        }
+        for (int i = 0; i < 50; i += 5) {
+            store.delete("Receta " + i);
+        }
+        // Fuerza un segmento nuevo para que los registros anteriores queden en segmentos cerrados
+        for (int i = 0; i < 20; i++) {
+            store.put(recipe("Nueva " + i, 1));
+        }
+        store.sync();
+        long before = segmentBytes(dir);
+        assertTrue(store.deadBytes() > 0);
+
+        store.compact();
+        assertEquals(0, store.deadBytes());
+        assertTrue(segmentBytes(dir) < before / 2);
+        assertFalse(new File(dir, "recipes-0000.seg.tmp").exists());
+        assertEquals(60, store.names().size());
+        for (int i = 0; i < 50; i++) {
+            if (i % 5 == 0) {
+                assertNull(store.get("Receta " + i));
+            } else {
+                assertRecipe("Receta " + i, 5, store.get("Receta " + i));
+            }
+        }
+        store.close();
+
+        // Sin indice, los borrados descartados no deben hacer reaparecer ninguna receta
+        assertTrue(new File(dir, "recipes.idx").delete());
+        store = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        assertEquals(60, store.names().size());
+        assertFalse(store.contains("Receta 0"));
+        assertRecipe("Receta 1", 5, store.get("Receta 1"));
+        assertRecipe("Nueva 19", 1, store.get("Nueva 19"));
+        store.close();
+    }
+
+    @Test
+    void compactRunsAlongsideReadsAndWrites() throws Exception {
+        RecipeStore store = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        for (int version = 1; version <= 3; version++) {
+            for (int i = 0; i < 100; i++) {
+                store.put(recipe("Receta " + i, version));
+            }
+        }
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            try {
+                for (int n = 0; n < 20; n++) {
+                    for (int i = 0; i < 100; i++) {
+                        assertNotNull(store.get("Receta " + i));
+                    }
+                }
+            } catch (Throwable t) {
+                errors.add(t);
+            }
+        });
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    store.put(recipe("Receta " + i, 4));
+                }
+            } catch (Throwable t) {
+                errors.add(t);
+            }
+        });
+        reader.start();
+        writer.start();
+        store.compact();
+        reader.join();
+        writer.join();
+        assertTrue(errors.isEmpty(), errors.toString());
+        store.compact();
+        for (int i = 0; i < 100; i++) {
+            assertRecipe("Receta " + i, 4, store.get("Receta " + i));
+        }
+        assertEquals(100, new HashSet<>(store.names()).size());
+        store.close();
+
+        assertTrue(new File(dir, "recipes.idx").delete());
+        RecipeStore reopened = new RecipeStore(dir, new IngredientTable(), SEGMENT_SIZE);
+        for (int i = 0; i < 100; i++) {
+            assertRecipe("Receta " + i, 4, reopened.get("Receta " + i));
+        }
+        reopened.close();
+    }
+
+}
@@ -0,0 +1,101 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import objects.Recipe;
+import objects.TimeField;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del recorrido de recetas con filtros
+ *
+ * @author Grupo C [Backend]
+ */
+class RecipeStreamTest {
+
+    @TempDir
+    File dir;
+
+    private Database db;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new Database(dir, StorageEngine.SEGMENTS);
+        for (int i = 0; i < 200; i++) {
+            String[] ingredients = i % 3 == 0 ? new String[] {"Tomate", "Ajo"} : new String[] {"Pan"};
+            db.writeRecipe(DatabaseTest.recipe((i % 2 == 0 ? "Sopa " : "Tarta ") + i, i % 30, i % 50, ingredients));
+        }
+        db.close();
+        db = new Database(dir, StorageEngine.SEGMENTS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    private static List<String> names(Stream<Recipe> recipes) {
+        return recipes.map(Recipe::getName).sorted().toList();
+    }
+
+    @Test
+    void filtersMatchFullScan() {
+        List<RecipeFilter> filters = List.of(
+                new RecipeFilter(),
+                new RecipeFilter().namePrefix("SOPA 1"),
+                new RecipeFilter().time(TimeField.PREP_TIME, 5, 10),
+                new RecipeFilter().time(TimeField.PREP_TIME, 5, 10).time(TimeField.TOTAL_TIME, 0, 30),
+                new RecipeFilter().ingredient("tomate").ingredient(" AJO "),
+                new RecipeFilter().namePrefix("tarta").ingredient("Tomate").time(TimeField.COOK_TIME, 10, 40),
+                new RecipeFilter().ingredient("Leche"));
+        List<Recipe> all = db.getRecipes();
+        assertEquals(200, all.size());
+        for (RecipeFilter filter : filters) {
+            List<String> expected = names(all.stream().filter(filter::test));
+            assertEquals(expected, names(db.streamRecipes(filter)));
+            assertEquals(expected, names(db.streamRecipes(filter).parallel()));
+        }
+    }
+
+    @Test
+    void recipesAreReadLazilyAndNotCached() {
+        db.enableMetrics();
+        Iterator<Recipe> iterator = db.streamRecipes().iterator();
+        assertEquals(0, readCount());
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        assertTrue(readCount() <= 2);
+
+        assertEquals(200, db.streamRecipes().map(Recipe::getName).collect(Collectors.toSet()).size());
+        assertEquals(201, readCount());
+        assertEquals(0, db.getCacheStats().size());
+        db.disableMetrics();
+    }
+
+    @Test
+    void recipesDeletedAfterStartAreSkipped() {
+        RecipeFilter filter = new RecipeFilter().namePrefix("sopa");
+        Stream<Recipe> stream = db.streamRecipes(filter);
+        assertTrue(db.deleteRecipe("Sopa 0"));
+        assertTrue(db.deleteRecipe("Sopa 100"));
+        List<String> names = names(stream);
+        assertEquals(98, names.size());
+        assertFalse(names.contains("Sopa 0"));
+    }
+
+    private long readCount() {
+        StorageMetrics.OperationStats stats = db.getMetrics().operations().get(StorageOperation.READ_RECIPE);
+        return stats == null ? 0 : stats.count();
+    }
+
+}
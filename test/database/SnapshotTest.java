@@ -0,0 +1,209 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de las copias de seguridad y de su restauracion
+ *
+ * @author Grupo C [Backend]
+ */
+class SnapshotTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void restoreReturnsToTheSnapshot() throws Exception {
+        File source = new File(dir, "origen");
+        File archive = new File(dir, "copia.gz");
+        Database db = new Database(source, StorageEngine.SEGMENTS);
+        db.writeRecipe(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate", "Pepino"));
+        db.writeRecipe(DatabaseTest.recipe("Tostada", 2, 3, "Pan"));
+        db.addIngredient("Tomate", "Vegetal", "kg");
+        assertTrue(db.snapshot(archive));
+        assertFalse(new File(dir, "copia.gz.tmp").exists());
+
+        // Los cambios posteriores no estan en la copia
+        db.deleteRecipe("Tostada");
+        db.writeRecipe(DatabaseTest.recipe("Pisto", 10, 30, "Pimiento"));
+        db.addIngredient("Pan", "Cereal", "g");
+        db.close();
+
+        File target = new File(dir, "destino");
+        assertTrue(Database.restoreSnapshot(archive, target));
+        Database restored = new Database(target, StorageEngine.SEGMENTS);
+        assertNotNull(restored.searchRecipe("Tostada"));
+        assertNull(restored.searchRecipe("Pisto"));
+        assertEquals(List.of("Gazpacho"), restored.findRecipesWith("pepino"));
+        assertEquals("Vegetal", restored.readIngredient("Tomate")[1]);
+        assertNull(restored.readIngredient("Pan"));
+        restored.close();
+
+        // Restaurar sobre la base de datos original tambien descarta los cambios
+        assertTrue(Database.restoreSnapshot(archive, source));
+        Database reopened = new Database(source, StorageEngine.SEGMENTS);
+        assertNotNull(reopened.searchRecipe("Tostada"));
+        assertNull(reopened.searchRecipe("Pisto"));
+        reopened.close();
+    }
+
+    @Test
+    void snapshotIsPointInTimeAcrossRecipesAndIngredients() throws Exception {
+        File source = new File(dir, "origen");
+        Database db = new Database(source, StorageEngine.SEGMENTS);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Cada receta se escribe antes que su ingrediente, y las compactaciones reemplazan los archivos mientras tanto
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; !done.get(); i++) {
+                    db.writeRecipe(DatabaseTest.recipe("Receta " + i, 1, 1));
+                    db.addIngredient("Ingrediente " + i, "Vegetal", "kg");
+                    if (i % 50 == 0) {
+                        db.deleteRecipe("Receta " + i);
+                        db.writeRecipe(DatabaseTest.recipe("Receta " + i, 1, 1));
+                        db.compactIngredients();
+                        db.compactRecipes();
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        try {
+            for (int n = 0; n < 5; n++) {
+                Thread.sleep(50);
+                File archive = new File(dir, "copia" + n + ".gz");
+                assertTrue(db.snapshot(archive));
+                File target = new File(dir, "destino" + n);
+                assertTrue(Database.restoreSnapshot(archive, target));
+                Database restored = new Database(target, StorageEngine.SEGMENTS);
+                int recipes = restored.getRecipes().size();
+                int ingredients = restored.getIngredients().size();
+                // Todas las recetas con ingrediente estan, y como mucho hay una receta mas que ingredientes
+                assertTrue(recipes == ingredients || recipes == ingredients + 1, recipes + " recetas, " + ingredients + " ingredientes");
+                for (int i = 0; i < recipes; i++) {
+                    assertNotNull(restored.searchRecipe("Receta " + i));
+                }
+                restored.close();
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+        assertNull(failure.get());
+        db.close();
+    }
+
+    @Test
+    void corruptArchivesAreRejected() throws Exception {
+        File source = new File(dir, "origen");
+        File archive = new File(dir, "copia.gz");
+        Database db = new Database(source, StorageEngine.SEGMENTS);
+        for (int i = 0; i < 100; i++) {
+            db.writeRecipe(DatabaseTest.recipe("Receta " + i, i, i, "Tomate"));
+        }
+        db.addIngredient("Tomate", "Vegetal", "kg");
+        assertTrue(db.snapshot(archive));
+        db.close();
+
+        byte[] content;
+        try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(archive))) {
+            content = in.readAllBytes();
+        }
+        File target = new File(dir, "destino");
+        Database existing = new Database(target, StorageEngine.SEGMENTS);
+        existing.writeRecipe(DatabaseTest.recipe("Pisto", 10, 30, "Pimiento"));
+        existing.close();
+
+        // Un byte cambiado en el contenido de un archivo no supera el CRC de su entrada
+        byte[] flipped = content.clone();
+        flipped[content.length / 2] ^= 0x40;
+        File bad = new File(dir, "rota.gz");
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(bad))) {
+            out.write(flipped);
+        }
+        assertFalse(Database.restoreSnapshot(bad, target));
+
+        // Una copia cortada tampoco se restaura
+        byte[] compressed = Files.readAllBytes(archive.toPath());
+        Files.write(bad.toPath(), Arrays.copyOf(compressed, compressed.length - 16));
+        assertFalse(Database.restoreSnapshot(bad, target));
+
+        Files.write(bad.toPath(), gzip(new byte[] {1, 2, 3, 4}));
+        assertFalse(Database.restoreSnapshot(bad, target));
+
+        // El directorio queda como estaba
+        assertFalse(new File(target, "restore.tmp").exists());
+        Database unchanged = new Database(target, StorageEngine.SEGMENTS);
+        assertNotNull(unchanged.searchRecipe("Pisto"));
+        assertNull(unchanged.searchRecipe("Receta 0"));
+        unchanged.close();
+    }
+
+    @Test
+    void interruptedRestoreIsRolledBack() throws Exception {
+        File target = new File(dir, "destino");
+        Database existing = new Database(target, StorageEngine.SEGMENTS);
+        existing.writeRecipe(DatabaseTest.recipe("Pisto", 10, 30, "Pimiento"));
+        existing.addIngredient("Pimiento", "Vegetal", "g");
+        existing.close();
+        File bad = new File(dir, "rota.gz");
+        Files.write(bad.toPath(), gzip(new byte[] {1, 2, 3, 4}));
+        File backup = new File(target, "restore.bak");
+
+        // Interrumpida mientras se apartaban los archivos: los que quedan en el directorio son los anteriores
+        assertTrue(backup.mkdir());
+        Files.move(new File(target, "ingredients.db").toPath(), new File(backup, "ingredients.db").toPath());
+        assertFalse(Database.restoreSnapshot(bad, target));
+        assertFalse(backup.exists());
+        Database partial = new Database(target, StorageEngine.SEGMENTS);
+        assertNotNull(partial.searchRecipe("Pisto"));
+        assertEquals("Vegetal", partial.readIngredient("Pimiento")[1]);
+        partial.close();
+
+        // Interrumpida mientras se movian los nuevos: los que hay en el directorio son de la copia
+        assertTrue(backup.mkdir());
+        for (File f : target.listFiles((d, name) -> name.endsWith(".seg") || name.endsWith(".db") || name.endsWith(".idx"))) {
+            Files.move(f.toPath(), new File(backup, f.getName()).toPath());
+        }
+        assertTrue(new File(backup, "complete").createNewFile());
+        Files.write(new File(target, "recipes-0001.seg").toPath(), new byte[] {1, 2, 3, 4});
+        assertFalse(Database.restoreSnapshot(bad, target));
+        assertFalse(backup.exists());
+        Database complete = new Database(target, StorageEngine.SEGMENTS);
+        assertNotNull(complete.searchRecipe("Pisto"));
+        assertEquals("Vegetal", complete.readIngredient("Pimiento")[1]);
+        complete.close();
+        assertFalse(new File(target, "recipes-0001.seg").exists());
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,150 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import objects.Recipe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de {@link Database} con cada uno de los motores de almacenamiento
+ *
+ * @author Grupo C [Backend]
+ */
+class StorageEngineTest {
+
+    @TempDir
+    File dir;
+
+    private static Map<String, StorageEngine.Factory> engines() {
+        LinkedHashMap<String, StorageEngine.Factory> engines = new LinkedHashMap<>();
+        engines.put("segments", StorageEngine.SEGMENTS);
+        engines.put("files", StorageEngine.FILES);
+        engines.put("memory", StorageEngine.MEMORY);
+        return engines;
+    }
+
+    /**
+     * Escribe, reemplaza y borra recetas e ingredientes, y compacta los ingredientes
+     */
+    private static void fill(Database db) throws Exception {
+        for (int i = 0; i < 30; i++) {
+            assertTrue(db.writeRecipe(DatabaseTest.recipe("Receta " + i, i, 10, "Tomate", "Ajo " + i % 3)));
+            assertTrue(db.addIngredient("Ingrediente " + i, "Vegetal", "g"));
+        }
+        for (int i = 0; i < 30; i += 3) {
+            assertTrue(db.deleteRecipe("Receta " + i));
+            assertTrue(db.deleteIngredient("Ingrediente " + i));
+        }
+        for (int i = 1; i < 30; i += 3) {
+            assertTrue(db.deleteRecipe("Receta " + i));
+            assertTrue(db.writeRecipe(DatabaseTest.recipe("Receta " + i, i, 20, "Pan")));
+            assertTrue(db.addIngredient("Ingrediente " + i, "Cereal", "kg"));
+        }
+        assertTrue(db.compactIngredients());
+        assertTrue(db.addIngredient("Ñora", "Especia", "unidad"));
+    }
+
+    /**
+     * Describe todo lo que se puede consultar de la base de datos
+     */
+    private static List<String> state(Database db) {
+        ArrayList<String> state = new ArrayList<>();
+        for (Recipe recipe : db.getRecipes()) {
+            state.add(recipe.getName() + " " + recipe.getPrepTime() + " " + recipe.getCookTime());
+        }
+        for (String name : db.getIngredients()) {
+            state.add(String.join("/", db.readIngredient(name)));
+        }
+        state.add("tomate " + db.findRecipesWith("tomate").stream().sorted().toList());
+        state.add("pan " + db.findRecipesWith("pan").stream().sorted().toList());
+        state.add("receta 2 " + db.completeRecipe("receta 2", 20).stream().sorted().toList());
+        return state.stream().sorted().toList();
+    }
+
+    @Test
+    void everyEngineGivesTheSameResults() throws Exception {
+        List<String> expected = null;
+        for (Map.Entry<String, StorageEngine.Factory> engine : engines().entrySet()) {
+            Database db = new Database(new File(dir, engine.getKey()), engine.getValue());
+            fill(db);
+            List<String> state = state(db);
+            if (expected == null) {
+                expected = state;
+                assertEquals(20 + 21 + 3, expected.size());
+            }
+            assertEquals(expected, state, engine.getKey());
+            assertArrayEquals(new String[] {"Ingrediente 4", "Cereal", "kg"}, db.readIngredient("Ingrediente 4"), engine.getKey());
+            assertNull(db.readIngredient("Ingrediente 3"), engine.getKey());
+            db.close();
+        }
+    }
+
+    @Test
+    void diskEnginesKeepRecipesAndIngredientsAfterReopening() throws Exception {
+        for (StorageEngine.Factory engine : List.of(StorageEngine.SEGMENTS, StorageEngine.FILES)) {
+            File db = new File(dir, engine == StorageEngine.SEGMENTS ? "segments" : "files");
+            Database first = new Database(db, engine);
+            fill(first);
+            List<String> expected = state(first);
+            first.close();
+            assertTrue(new File(db, "ingredients.db").exists());
+            assertTrue(new File(db, "datamap.db").exists());
+
+            Database reopened = new Database(db, engine);
+            assertEquals(expected, state(reopened));
+            reopened.close();
+        }
+    }
+
+    @Test
+    void memoryEngineWritesNoDataFiles() throws Exception {
+        Database db = new Database(dir, StorageEngine.MEMORY);
+        fill(db);
+        assertTrue(db.saveDataMap());
+        assertFalse(db.snapshot(new File(dir, "copia.gz")));
+        db.close();
+        assertFalse(new File(dir, "ingredients.db").exists());
+        assertFalse(new File(dir, "datamap.db").exists());
+        assertFalse(new File(dir, "copia.gz").exists());
+        String[] files = dir.list((d, name) -> name.endsWith(".seg") || name.endsWith(".dat"));
+        assertEquals(0, files.length);
+
+        // Nada se conserva al volver a abrirla
+        Database reopened = new Database(dir, StorageEngine.MEMORY);
+        assertTrue(reopened.getRecipes().isEmpty());
+        assertTrue(reopened.getIngredients().isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void onlyEnginesThatCaptureTheirFilesTakeSnapshots() throws Exception {
+        for (Map.Entry<String, StorageEngine.Factory> engine : engines().entrySet()) {
+            Database db = new Database(new File(dir, engine.getKey()), engine.getValue());
+            fill(db);
+            File archive = new File(dir, engine.getKey() + ".gz");
+            boolean supported = engine.getValue() == StorageEngine.SEGMENTS;
+            assertEquals(supported, db.snapshot(archive), engine.getKey());
+            assertEquals(supported, archive.exists(), engine.getKey());
+            List<String> expected = state(db);
+            db.close();
+            if (supported) {
+                File target = new File(dir, "restaurada");
+                assertTrue(Database.restoreSnapshot(archive, target));
+                Database restored = new Database(target, engine.getValue());
+                assertEquals(expected, state(restored));
+                restored.close();
+            }
+        }
+    }
+
+}
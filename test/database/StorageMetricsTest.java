@@ -0,0 +1,129 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de las metricas de las operaciones de almacenamiento
+ *
+ * @author Grupo C [Backend]
+ */
+class StorageMetricsTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void bucketsBoundTheRelativeError() {
+        int previous = -1;
+        for (long value = 0; value < 1L << 40; value = value < 100 ? value + 1 : value + value / 7) {
+            int bucket = StorageMetrics.bucket(value);
+            assertTrue(bucket >= previous, "bucket de " + value);
+            long highest = StorageMetrics.highest(bucket);
+            assertTrue(highest >= value, "limite de " + value);
+            assertTrue(highest - value <= value / StorageMetrics.SUB_BUCKETS, "error de " + value);
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, StorageMetrics.highest(StorageMetrics.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentilesFollowRecordedLatencies() {
+        Database db = new Database(dir, StorageEngine.MEMORY);
+        StorageMetrics metrics = new StorageMetrics(db);
+        // 990 operaciones de 1 ms y 10 de 100 ms
+        for (int i = 0; i < 1000; i++) {
+            long nanos = i % 100 == 0 ? 100_000_000 : 1_000_000;
+            metrics.stop(StorageOperation.QUERY, System.nanoTime() - nanos);
+        }
+        metrics.error(StorageOperation.SYNC);
+        metrics.stop(StorageOperation.SYNC, 0);
+
+        StorageMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(Set.of(StorageOperation.QUERY, StorageOperation.SYNC), snapshot.operations().keySet());
+        StorageMetrics.OperationStats query = snapshot.operations().get(StorageOperation.QUERY);
+        assertEquals(1000, query.count());
+        assertEquals(0, query.errors());
+        assertTrue(query.p50() >= 1_000_000 && query.p50() < 1_100_000, query.toString());
+        assertTrue(query.p90() < 2_000_000, query.toString());
+        assertTrue(query.p99() < 100_000_000, query.toString());
+        assertTrue(query.p999() >= 100_000_000 && query.p999() <= query.max(), query.toString());
+        assertTrue(query.meanNanos() >= 1_990_000, query.toString());
+        StorageMetrics.OperationStats sync = snapshot.operations().get(StorageOperation.SYNC);
+        assertEquals(0, sync.count());
+        assertEquals(1, sync.errors());
+        assertEquals(2, metrics.getOperations().length);
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().operations().isEmpty());
+        db.close();
+    }
+
+    @Test
+    void databaseOnlyMeasuresWhileEnabled() throws Exception {
+        Database db = new Database(dir, StorageEngine.SEGMENTS);
+        db.writeRecipe(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate"));
+        assertTrue(db.getMetrics().operations().isEmpty());
+        assertTrue(db.getMetrics().startupNanos() > 0);
+
+        assertTrue(db.enableMetrics());
+        db.writeRecipe(DatabaseTest.recipe("Salmorejo", 15, 0, "Tomate", "Pan"));
+        db.searchRecipe("Salmorejo");
+        db.searchRecipe("Salmorejo");
+        db.findRecipesWith("tomate");
+        db.addIngredient("Tomate", "Vegetal", "kg");
+        db.sync();
+        StorageMetrics.Snapshot snapshot = db.getMetrics();
+        assertEquals(1, snapshot.operations().get(StorageOperation.WRITE_RECIPE).count());
+        assertEquals(2, snapshot.operations().get(StorageOperation.READ_RECIPE).count());
+        assertEquals(1, snapshot.operations().get(StorageOperation.QUERY).count());
+        assertEquals(1, snapshot.operations().get(StorageOperation.WRITE_INGREDIENT).count());
+        assertTrue(snapshot.operations().containsKey(StorageOperation.SYNC));
+        assertTrue(snapshot.bytesWritten() > 0);
+        assertTrue(snapshot.cacheHitRate() > 0);
+
+        db.disableMetrics();
+        db.searchRecipe("Salmorejo");
+        assertEquals(2, db.getMetrics().operations().get(StorageOperation.READ_RECIPE).count());
+        db.close();
+    }
+
+    @Test
+    void metricsArePublishedOverJmx() throws Exception {
+        Database db = new Database(dir, StorageEngine.MEMORY);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("database:type=StorageMetrics,*");
+        int before = server.queryNames(pattern, null).size();
+        assertTrue(db.enableMetrics());
+        assertTrue(db.enableMetrics());
+        Set<ObjectName> names = server.queryNames(pattern, null);
+        assertEquals(before + 1, names.size());
+
+        db.writeRecipe(DatabaseTest.recipe("Gazpacho", 20, 0, "Tomate"));
+        boolean found = false;
+        for (ObjectName name : names) {
+            String[] operations = (String[]) server.getAttribute(name, "Operations");
+            assertNotNull(operations);
+            for (String line : operations) {
+                found |= line.startsWith("WRITE_RECIPE count=1 ");
+            }
+        }
+        assertTrue(found);
+
+        db.disableMetrics();
+        assertEquals(before, server.queryNames(pattern, null).size());
+        assertFalse(db.getMetrics().operations().isEmpty());
+        db.close();
+    }
+
+}
@@ -0,0 +1,148 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import objects.IngredientTable;
+import objects.Recipe;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del indice de texto completo y de su ordenacion con BM25
+ *
+ * @author Grupo C [Backend]
+ */
+class TextIndexTest {
+
+    @TempDir
+    File dir;
+
+    private static Recipe recipe(String name, String description, String instructions) {
+        return new Recipe(name, description, new ArrayList<>(), instructions, 0, 0);
+    }
+
+    private TextIndex index(Recipe... recipes) throws IOException {
+        MemoryEngine store = new MemoryEngine(new IngredientTable());
+        for (Recipe recipe : recipes) {
+            store.put(recipe);
+        }
+        return new TextIndex(store, new File(dir, "text.idx"));
+    }
+
+    @Test
+    void rankingFollowsBm25() throws IOException {
+        TextIndex index = index(
+                recipe("Arroz con leche", "Postre de arroz", "Cocer el arroz con la leche y el azucar"),
+                recipe("Paella", "Arroz con marisco", "Sofreir y añadir el arroz"),
+                recipe("Leche frita", "Postre", "Espesar la leche con harina y freir"),
+                recipe("Ensalada", "Verduras frescas con un poco de arroz", "Mezclar todo con aceite, vinagre y sal al gusto "
+                        + "y servir frio acompañado de pan tostado"));
+        // Las palabras del nombre cuentan mas y las repeticiones suben la puntuacion
+        assertEquals(List.of("Arroz con leche", "Paella", "Ensalada"), index.search("arroz", 10));
+        // Un termino raro pesa mas que uno frecuente
+        assertEquals("Leche frita", index.search("leche harina", 10).get(0));
+        assertEquals(List.of("Arroz con leche"), index.search("arroz", 1));
+        assertTrue(index.search("chocolate", 10).isEmpty());
+        assertTrue(index.search("   ", 10).isEmpty());
+        assertTrue(index.search("arroz", 0).isEmpty());
+    }
+
+    @Test
+    void accentsPrefixesAndTypos() throws IOException {
+        TextIndex index = index(
+                recipe("Crema de maíz", "Sopa", "Triturar el MAIZ"),
+                recipe("Tortilla de patatas", "Clasica", "Freir las patatas"),
+                recipe("Bizcocho", "Esponjoso", "Hornear"));
+        assertEquals(List.of("Crema de maíz"), index.search("Maiz", 10));
+        // La ultima palabra tambien se busca como prefijo, para buscar mientras se escribe
+        assertEquals(List.of("Tortilla de patatas"), index.search("tort", 10));
+        assertEquals(List.of("Bizcocho"), index.search("bizcocjo", 10));
+        assertEquals(List.of("Bizcocho"), index.search("bizcoho", 10));
+        assertEquals(List.of("Bizcocho"), index.search("bizzcocho", 10));
+        // Los terminos se agrupan por su primera letra, que no se corrige
+        assertTrue(index.search("vizcocho", 10).isEmpty());
+        assertEquals(List.of("Bizcocho"), index.search("esponjso hornear", 10));
+    }
+
+    @Test
+    void updatesKeepPostingsConsistent() throws IOException {
+        TextIndex index = index(recipe("Sopa de ajo", "", ""), recipe("Pan con ajo", "", ""));
+        assertEquals(2, index.search("ajo", 10).size());
+        index.remove("Sopa de ajo");
+        index.remove("No existe");
+        assertEquals(List.of("Pan con ajo"), index.search("ajo", 10));
+        assertTrue(index.search("sopa", 10).isEmpty());
+        // Reutiliza el identificador liberado, por debajo del de "Pan con ajo"
+        index.add(recipe("Ajo blanco", "", ""));
+        index.add(recipe("Pan con ajo", "Sin ajo", "Sin ajo de verdad"));
+        assertEquals(List.of("Ajo blanco", "Pan con ajo"), index.search("ajo", 10));
+    }
+
+    @Test
+    void randomUpdatesMatchRebuiltIndex() throws IOException {
+        MemoryEngine store = new MemoryEngine(new IngredientTable());
+        TextIndex index = new TextIndex(store, new File(dir, "text.idx"));
+        index.search("x", 1);
+        Random random = new Random(3);
+        String[] words = {"ajo", "pan", "sal", "tomate", "aceite", "huevo", "leche", "harina"};
+        HashMap<String, String> texts = new HashMap<>();
+        for (int op = 0; op < 3000; op++) {
+            String name = "Receta " + random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                store.delete(name);
+                index.remove(name);
+                texts.remove(name);
+            } else {
+                StringBuilder text = new StringBuilder();
+                for (int w = random.nextInt(6); w >= 0; w--) {
+                    text.append(words[random.nextInt(words.length)]).append(' ');
+                }
+                Recipe recipe = recipe(name, text.toString(), "");
+                store.put(recipe);
+                index.add(recipe);
+                texts.put(name, text.toString());
+            }
+        }
+        TextIndex rebuilt = new TextIndex(store, new File(dir, "text.idx"));
+        for (String word : words) {
+            HashSet<String> expected = new HashSet<>();
+            texts.forEach((name, text) -> {
+                if (List.of(text.split(" ")).contains(word)) {
+                    expected.add(name);
+                }
+            });
+            // Los empates se pueden ordenar distinto, por lo que se comparan como conjuntos
+            assertEquals(expected, new HashSet<>(index.search(word, 1000)), word);
+            assertEquals(expected, new HashSet<>(rebuilt.search(word, 1000)), word);
+        }
+    }
+
+    @Test
+    void savedIndexIsReusedOnlyWithMatchingStamp() throws IOException {
+        File file = new File(dir, "text.idx");
+        RecipeStore store = new RecipeStore(dir, new IngredientTable());
+        store.put(recipe("Gazpacho", "Sopa fria", "Triturar"));
+        TextIndex index = new TextIndex(store, file);
+        assertEquals(List.of("Gazpacho"), index.search("sopa", 10));
+        index.save();
+        assertTrue(file.exists());
+
+        TextIndex loaded = new TextIndex(store, file);
+        assertEquals(List.of("Gazpacho"), loaded.search("sopa", 10));
+
+        // Una escritura posterior cambia la marca y el indice guardado ya no sirve
+        store.put(recipe("Sopa de ajo", "Sopa caliente", "Cocer"));
+        TextIndex stale = new TextIndex(store, file);
+        assertEquals(List.of("Sopa de ajo", "Gazpacho"), stale.search("sopa", 10));
+        store.close();
+    }
+
+}
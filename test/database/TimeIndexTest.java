@@ -0,0 +1,121 @@
+package database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import objects.IngredientTable;
+import objects.Recipe;
+import objects.TimeField;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de los indices ordenados por tiempo y de su paginacion
+ *
+ * @author Grupo C [Backend]
+ */
+class TimeIndexTest {
+
+    private static Recipe recipe(String name, int prepTime, int cookTime) {
+        return new Recipe(name, "", new ArrayList<>(), "", prepTime, cookTime);
+    }
+
+    /**
+     * Resultado esperado calculado recorriendo todas las recetas, con los empates ordenados por antiguedad
+     */
+    private static List<String> expected(HashMap<String, Recipe> recipes, ArrayList<String> order, TimeField filter,
+            int min, int max, TimeField sort, boolean descending, int offset, int limit) {
+        Comparator<String> byTime = Comparator.comparingInt(name -> sort.of(recipes.get(name)));
+        Comparator<String> comparator = byTime.thenComparingInt(order::indexOf);
+        List<String> all = order.stream()
+                .filter(name -> filter.of(recipes.get(name)) >= min && filter.of(recipes.get(name)) <= max)
+                .sorted(descending ? comparator.reversed() : comparator)
+                .toList();
+        return all.subList(Math.min(offset, all.size()), Math.min(offset + limit, all.size()));
+    }
+
+    @Test
+    void rangesAndOrdersMatchFullScan() throws IOException {
+        MemoryEngine store = new MemoryEngine(new IngredientTable());
+        HashMap<String, Recipe> recipes = new HashMap<>();
+        ArrayList<String> order = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            Recipe recipe = recipe("Receta " + i, random.nextInt(60), random.nextInt(120));
+            store.put(recipe);
+            recipes.put(recipe.getName(), recipe);
+            order.add(recipe.getName());
+        }
+        TimeIndex index = new TimeIndex(store);
+        for (TimeField filter : TimeField.values()) {
+            for (TimeField sort : TimeField.values()) {
+                for (boolean descending : new boolean[] {false, true}) {
+                    int min = random.nextInt(40);
+                    int max = min + random.nextInt(80);
+                    List<String> page = index.query(filter, min, max, sort, descending, 7, 25);
+                    List<String> want = expected(recipes, order, filter, min, max, sort, descending, 7, 25);
+                    // Los empates no tienen un orden definido: se comparan los tiempos y el conjunto
+                    assertEquals(want.stream().map(n -> sort.of(recipes.get(n))).toList(),
+                            page.stream().map(n -> sort.of(recipes.get(n))).toList(), filter + " " + sort + " " + descending);
+                    for (String name : page) {
+                        int time = filter.of(recipes.get(name));
+                        assertTrue(time >= min && time <= max);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void pagesConcatenateToTheWholeRange() throws IOException {
+        MemoryEngine store = new MemoryEngine(new IngredientTable());
+        for (int i = 0; i < 100; i++) {
+            store.put(recipe("Receta " + i, i % 10, 100 - i));
+        }
+        TimeIndex index = new TimeIndex(store);
+        for (TimeField sort : List.of(TimeField.PREP_TIME, TimeField.COOK_TIME)) {
+            List<String> whole = index.query(TimeField.PREP_TIME, 2, 5, sort, false, 0, 1000);
+            assertEquals(40, whole.size());
+            ArrayList<String> paged = new ArrayList<>();
+            for (int offset = 0; offset < 60; offset += 9) {
+                paged.addAll(index.query(TimeField.PREP_TIME, 2, 5, sort, false, offset, 9));
+            }
+            assertEquals(whole, paged, sort.toString());
+        }
+        assertTrue(index.query(TimeField.PREP_TIME, 5, 2, TimeField.PREP_TIME, false, 0, 10).isEmpty());
+        assertTrue(index.query(TimeField.PREP_TIME, 0, 10, TimeField.PREP_TIME, false, 0, 0).isEmpty());
+        assertTrue(index.query(TimeField.PREP_TIME, 0, 10, TimeField.PREP_TIME, false, 500, 10).isEmpty());
+        for (TimeField sort : List.of(TimeField.PREP_TIME, TimeField.COOK_TIME)) {
+            assertThrows(IllegalArgumentException.class, () -> index.query(TimeField.PREP_TIME, 0, 10, sort, true, -1, 10));
+        }
+        assertEquals(100, index.query(TimeField.TOTAL_TIME, Integer.MIN_VALUE, Integer.MAX_VALUE, TimeField.TOTAL_TIME, true, 0, 1000).size());
+    }
+
+    @Test
+    void updatesMoveRecipesBetweenRanges() throws IOException {
+        MemoryEngine store = new MemoryEngine(new IngredientTable());
+        TimeIndex index = new TimeIndex(store);
+        assertTrue(index.query(TimeField.TOTAL_TIME, 0, 100, TimeField.TOTAL_TIME, false, 0, 10).isEmpty());
+        index.add(recipe("Tostada", 2, 3));
+        index.add(recipe("Cocido", 30, 180));
+        index.add(recipe("Ensalada", 10, 0));
+        assertEquals(List.of("Tostada", "Ensalada", "Cocido"), index.query(TimeField.TOTAL_TIME, 0, 1000, TimeField.TOTAL_TIME, false, 0, 10));
+        assertEquals(List.of("Cocido", "Ensalada"), index.query(TimeField.TOTAL_TIME, 10, 1000, TimeField.TOTAL_TIME, true, 0, 10));
+
+        Recipe faster = recipe("Cocido", 30, 60);
+        faster.setCookTime(1);
+        index.add(faster);
+        index.remove("Ensalada");
+        index.add(recipe("Sopa", -5, 20));
+        assertEquals(List.of("Tostada", "Sopa", "Cocido"), index.query(TimeField.TOTAL_TIME, 0, 1000, TimeField.TOTAL_TIME, false, 0, 10));
+        assertEquals(List.of("Sopa"), index.query(TimeField.PREP_TIME, Integer.MIN_VALUE, 0, TimeField.COOK_TIME, false, 0, 10));
+        assertEquals(List.of("Cocido", "Tostada"), index.query(TimeField.COOK_TIME, 0, 5, TimeField.PREP_TIME, true, 0, 10));
+    }
+
+}
@@ -0,0 +1,162 @@
+package objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import exceptions.CorruptedFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la tabla hash de {@link DataMap}
+ *
+ * @author Grupo C [Backend]
+ */
+class DataMapTest {
+
+    /**
+     * Genera 2^n cadenas distintas con el mismo hashCode, combinando "Aa" y "BB"
+     */
+    private static ArrayList<String> collisions(int n) {
+        ArrayList<String> result = new ArrayList<>();
+        result.add("");
+        for (int i = 0; i < n; i++) {
+            ArrayList<String> next = new ArrayList<>();
+            for (String s : result) {
+                next.add(s + "Aa");
+                next.add(s + "BB");
+            }
+            result = next;
+        }
+        return result;
+    }
+
+    @Test
+    void addReplacesExistingEntry() {
+        DataMap map = new DataMap("test");
+        map.addData("tomate", 10, 5);
+        map.addData("tomate", 20, 7);
+        assertEquals(1, map.size());
+        assertEquals(new DataMap.Entry("tomate", 20, 7), map.searchData("tomate"));
+        assertNull(map.searchData("cebolla"));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        DataMap map = new DataMap("test");
+        for (int i = 0; i < 100; i++) {
+            map.addData("k" + i, i, 1);
+        }
+        map.setStamp(3, 400);
+        DataMap copy = map.copy();
+        map.removeData("k0");
+        map.addData("k1", 1000, 2);
+        copy.addData("k100", 100, 1);
+
+        assertEquals(101, copy.size());
+        assertEquals(new DataMap.Entry("k0", 0, 1), copy.searchData("k0"));
+        assertEquals(new DataMap.Entry("k1", 1, 1), copy.searchData("k1"));
+        assertNull(map.searchData("k100"));
+        assertEquals(3, copy.getGeneration());
+        assertEquals(400, copy.getPosition());
+    }
+
+    @Test
+    void removeKeepsCollidingEntriesReachable() {
+        ArrayList<String> keys = collisions(4);
+        DataMap map = new DataMap("test");
+        for (int i = 0; i < keys.size(); i++) {
+            map.addData(keys.get(i), i, i);
+        }
+        // Borrar por el medio de la cadena de sondeo obliga a desplazar las siguientes hacia atras
+        for (int i = 0; i < keys.size(); i += 3) {
+            assertTrue(map.removeData(keys.get(i)));
+            assertFalse(map.removeData(keys.get(i)));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            DataMap.Entry entry = map.searchData(keys.get(i));
+            if (i % 3 == 0) {
+                assertNull(entry);
+            } else {
+                assertEquals(i, entry.loc());
+            }
+        }
+        assertEquals(keys.size() - (keys.size() + 2) / 3, map.size());
+    }
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(7);
+        DataMap map = new DataMap("test");
+        HashMap<String, Long> expected = new HashMap<>();
+        for (int op = 0; op < 50_000; op++) {
+            String key = "k" + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.removeData(key));
+            } else {
+                map.addData(key, op, 1);
+                expected.put(key, (long) op);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<String, Long> e : expected.entrySet()) {
+            assertEquals(e.getValue(), map.searchData(e.getKey()).loc());
+        }
+        assertEquals(expected.keySet(), new HashSet<>(map.getData()));
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException, CorruptedFile {
+        DataMap map = new DataMap("ingredientes");
+        for (int i = 0; i < 1000; i++) {
+            map.addData("ingrediente " + i, i * 100L, i);
+        }
+        map.removeData("ingrediente 500");
+        map.setStamp(3, 12345);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        map.write(new DataOutputStream(bytes));
+
+        DataMap read = DataMap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("ingredientes", read.getId());
+        assertEquals(3, read.getGeneration());
+        assertEquals(12345, read.getPosition());
+        assertEquals(999, read.size());
+        assertNull(read.searchData("ingrediente 500"));
+        assertEquals(new DataMap.Entry("ingrediente 999", 99900, 999), read.searchData("ingrediente 999"));
+    }
+
+    @Test
+    void readRejectsBadHeaderAndEntryCount() throws IOException {
+        assertThrows(CorruptedFile.class, () -> DataMap.read(header(0x12345678, 0)));
+        assertThrows(CorruptedFile.class, () -> DataMap.read(header(0x50444D31, -1)));
+        // Una cantidad enorme no debe quedarse calculando la capacidad de la tabla
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(CorruptedFile.class, () -> DataMap.read(header(0x50444D31, (1 << 29) + 1))));
+    }
+
+    private static DataInputStream header(int magic, int entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(magic);
+        out.writeUTF("test");
+        out.writeLong(0);
+        out.writeLong(0);
+        out.writeInt(entries);
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+}
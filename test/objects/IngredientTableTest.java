@@ -0,0 +1,94 @@
+package objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la tabla de ingredientes empaquetados y de sus vistas
+ *
+ * @author Grupo C [Backend]
+ */
+class IngredientTableTest {
+
+    @Test
+    void packAndReadBack() {
+        IngredientTable table = new IngredientTable();
+        int[] packed = table.pack(List.of(new Ingredient("Tomate", "Vegetal", 3, "kg"), new Ingredient("Sal", null, 1, null)));
+        assertEquals(2 * IngredientTable.STRIDE, packed.length);
+        assertEquals(2, IngredientTable.count(packed));
+        assertEquals("Tomate", table.name(packed, 0));
+        assertEquals("Vegetal", table.type(packed, 0));
+        assertEquals(3, IngredientTable.quantity(packed, 0));
+        assertEquals("kg", table.unit(packed, 0));
+        assertEquals("Sal", table.name(packed, 1));
+        assertNull(table.type(packed, 1));
+        assertNull(table.unit(packed, 1));
+        assertEquals(0, IngredientTable.count(table.pack(List.of())));
+    }
+
+    @Test
+    void dictionariesStoreEachStringOnce() {
+        IngredientTable table = new IngredientTable();
+        int[] first = table.pack(List.of(new Ingredient("Tomate", "Vegetal", 1, "kg"), new Ingredient("Ajo", "Vegetal", 2, "kg")));
+        int[] second = table.pack(List.of(new Ingredient(new String("Tomate"), "Vegetal", 5, "g")));
+        // Tomate, Ajo / Vegetal / kg, g
+        assertEquals(5, table.dictionarySize());
+        assertEquals(IngredientTable.nameId(first, 0), IngredientTable.nameId(second, 0));
+        assertSame(table.name(first, 0), table.name(second, 0));
+        assertEquals(0, IngredientTable.unitId(table.pack(List.of(new Ingredient("Agua", null, 1, null))), 0));
+        for (int i = 0; i < 1000; i++) {
+            table.pack(List.of(new Ingredient("Ingrediente " + i, "Vegetal", i, "kg")));
+        }
+        assertEquals(1006, table.dictionarySize());
+        assertEquals("Tomate", table.name(first, 0));
+        assertEquals("Ingrediente 999", table.nameOf(IngredientTable.nameId(table.pack(List.of(new Ingredient("Ingrediente 999", null, 0, null))), 0)));
+    }
+
+    @Test
+    void viewsWriteThroughToThePackedArray() {
+        IngredientTable table = new IngredientTable();
+        int[] packed = table.pack(List.of(new Ingredient("Tomate", "Vegetal", 3, "kg"), new Ingredient("Ajo", "Vegetal", 1, "diente")));
+        ArrayList<Ingredient> views = table.views(packed);
+        assertEquals(2, views.size());
+        assertEquals("Ajo", views.get(1).getName());
+        assertEquals("diente", views.get(1).getUnit());
+
+        views.get(0).setName("Pimiento");
+        views.get(0).setQuantity(7);
+        views.get(1).setType("Especia");
+        views.get(1).setUnit(null);
+        assertEquals("Pimiento", table.name(packed, 0));
+        assertEquals(7, IngredientTable.quantity(packed, 0));
+        assertEquals("Especia", table.type(packed, 1));
+        assertNull(table.unit(packed, 1));
+
+        // Una vista nueva lee lo escrito por la anterior
+        assertEquals("Pimiento", table.view(packed, 0).getName());
+        table.set(packed, 1, "Cebolla", "Vegetal", 2, "kg");
+        assertEquals("Cebolla", views.get(1).getName());
+        assertEquals(2, views.get(1).getQuantity());
+    }
+
+    @Test
+    void recipesExpandPackedIngredientsOnDemand() {
+        IngredientTable table = new IngredientTable();
+        int[] packed = table.pack(List.of(new Ingredient("Tomate", "Vegetal", 3, "kg")));
+        Recipe recipe = new Recipe("Gazpacho", "Sopa fria", table, packed, "Triturar", 20, 0);
+        assertSame(packed, recipe.getPackedIngredients());
+        assertSame(table, recipe.getIngredientTable());
+        ArrayList<Ingredient> ingredients = recipe.getIngredients();
+        assertEquals("Tomate", ingredients.get(0).getName());
+        assertNull(recipe.getPackedIngredients());
+        assertSame(ingredients, recipe.getIngredients());
+
+        recipe.setIngredients(new ArrayList<>(List.of(new Ingredient("Pepino", "Vegetal", 1, "kg"))));
+        assertNull(recipe.getPackedIngredients());
+        assertEquals("Pepino", recipe.getIngredients().get(0).getName());
+    }
+
+}
@@ -0,0 +1,170 @@
+package objects;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import exceptions.CorruptedFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la codificacion binaria de recetas de {@link RecipeCodec}
+ *
+ * @author Grupo C [Backend]
+ */
+class RecipeCodecTest {
+
+    private static Recipe recipe() {
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
+        ingredients.add(new Ingredient("Tomate", "Vegetal", 3, "kg"));
+        ingredients.add(new Ingredient("Sal", "Condimento", 1, null));
+        ingredients.add(new Ingredient("Cebolla", "Vegetal", -2, "kg"));
+        ingredients.add(new Ingredient("Ñora", null, 0, "unidad"));
+        return new Recipe("Salsa de tomate", "Una salsa “casera”", ingredients, "Picar y cocinar", 15, -1);
+    }
+
+    private static void assertSameRecipe(Recipe expected, Recipe actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getInstructions(), actual.getInstructions());
+        assertEquals(expected.getPrepTime(), actual.getPrepTime());
+        assertEquals(expected.getCookTime(), actual.getCookTime());
+        ArrayList<Ingredient> a = expected.getIngredients();
+        ArrayList<Ingredient> b = actual.getIngredients();
+        if (a == null) {
+            assertNull(b);
+            return;
+        }
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i).getName(), b.get(i).getName());
+            assertEquals(a.get(i).getType(), b.get(i).getType());
+            assertEquals(a.get(i).getQuantity(), b.get(i).getQuantity());
+            assertEquals(a.get(i).getUnit(), b.get(i).getUnit());
+        }
+    }
+
+    @Test
+    void roundTripKeepsEveryField() throws CorruptedFile {
+        RecipeCodec codec = new RecipeCodec();
+        Recipe recipe = recipe();
+        byte[] bytes = codec.encode(recipe);
+        assertEquals(RecipeCodec.SCHEMA_VERSION, bytes[0]);
+        assertSameRecipe(recipe, codec.decode(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void nullAndEmptyIngredientListsAreDistinct() throws CorruptedFile {
+        RecipeCodec codec = new RecipeCodec();
+        Recipe none = new Recipe("Agua", null, null, null, 0, 0);
+        byte[] bytes = codec.encode(none);
+        Recipe read = codec.decode(bytes, 0, bytes.length);
+        assertNull(read.getIngredients());
+        assertNull(read.getDescription());
+
+        Recipe empty = new Recipe("Agua", "", new ArrayList<>(), "", 0, 0);
+        bytes = codec.encode(empty);
+        read = codec.decode(bytes, 0, bytes.length);
+        assertNotNull(read.getIngredients());
+        assertTrue(read.getIngredients().isEmpty());
+        assertEquals("", read.getDescription());
+    }
+
+    @Test
+    void repeatedStringsAreStoredOnce() {
+        RecipeCodec codec = new RecipeCodec();
+        ArrayList<Ingredient> few = new ArrayList<>();
+        ArrayList<Ingredient> many = new ArrayList<>();
+        few.add(new Ingredient("Harina de trigo", "Cereal", 1, "gramos"));
+        for (int i = 0; i < 100; i++) {
+            many.add(new Ingredient("Harina de trigo", "Cereal", i, "gramos"));
+        }
+        int one = codec.encode(new Recipe("Pan", "", few, "", 0, 0)).length;
+        int hundred = codec.encode(new Recipe("Pan", "", many, "", 0, 0)).length;
+        // Cada ingrediente repetido solo añade sus referencias y su cantidad
+        assertTrue(hundred - one < 99 * 6, hundred + " bytes");
+    }
+
+    @Test
+    void packedIngredientsRoundTrip() throws CorruptedFile {
+        IngredientTable table = new IngredientTable();
+        RecipeCodec packing = new RecipeCodec(table);
+        Recipe recipe = recipe();
+        byte[] bytes = packing.encode(recipe);
+        Recipe packed = packing.decode(bytes, 0, bytes.length);
+        assertNotNull(packed.getPackedIngredients());
+        assertEquals(4, IngredientTable.count(packed.getPackedIngredients()));
+        assertSameRecipe(recipe, packed);
+
+        // Una receta empaquetada se codifica igual que la original
+        assertArrayEquals(bytes, new RecipeCodec().encode(packed));
+        Recipe unpacked = new RecipeCodec().decode(bytes, 0, bytes.length);
+        assertNull(unpacked.getPackedIngredients());
+        assertSameRecipe(recipe, unpacked);
+    }
+
+    @Test
+    void decodeReadsFromBufferPosition() throws CorruptedFile {
+        RecipeCodec codec = new RecipeCodec();
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        buf.put((byte) 42);
+        codec.encode(recipe(), buf);
+        codec.encode(new Recipe("Agua", null, null, null, 1, 2), buf);
+        buf.flip();
+        buf.get();
+        assertSameRecipe(recipe(), codec.decode(buf));
+        assertEquals("Agua", codec.decode(buf).getName());
+        assertEquals(0, buf.remaining());
+    }
+
+    @Test
+    void largeRecipeGrowsScratchBuffer() throws CorruptedFile {
+        RecipeCodec codec = new RecipeCodec();
+        String instructions = "Remover. ".repeat(10_000);
+        Recipe recipe = new Recipe("Guiso", "", new ArrayList<>(), instructions, 0, 0);
+        byte[] bytes = codec.encode(recipe);
+        assertEquals(instructions, codec.decode(bytes, 0, bytes.length).getInstructions());
+    }
+
+    @Test
+    void corruptDataIsRejected() {
+        RecipeCodec codec = new RecipeCodec();
+        byte[] bytes = codec.encode(recipe());
+        byte[] version = bytes.clone();
+        version[0] = 99;
+        assertThrows(CorruptedFile.class, () -> codec.decode(version, 0, version.length));
+        // Cualquier recorte debe detectarse, nunca lanzar otra excepcion
+        for (int len = 0; len < bytes.length; len++) {
+            int n = len;
+            assertThrows(CorruptedFile.class, () -> codec.decode(bytes, 0, n), "longitud " + n);
+        }
+        byte[] badRef = codec.encode(new Recipe("Agua", null, null, null, 0, 0));
+        // La referencia al nombre apunta fuera de la tabla de cadenas
+        badRef[2 + 1 + "Agua".length()] = 5;
+        assertThrows(CorruptedFile.class, () -> codec.decode(badRef, 0, badRef.length));
+    }
+
+    @Test
+    void randomBytesNeverEscapeAsOtherExceptions() {
+        RecipeCodec codec = new RecipeCodec(new IngredientTable());
+        Random random = new Random(11);
+        byte[] valid = codec.encode(recipe());
+        for (int i = 0; i < 10_000; i++) {
+            byte[] bytes = Arrays.copyOf(valid, valid.length);
+            bytes[1 + random.nextInt(bytes.length - 1)] = (byte) random.nextInt();
+            try {
+                codec.decode(bytes, 0, bytes.length);
+            } catch (CorruptedFile e) {
+                // Esperado para la mayoria de los cambios
+            }
+        }
+    }
+
+}
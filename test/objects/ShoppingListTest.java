@@ -0,0 +1,108 @@
+package objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la lista de la compra y de la conversion de unidades
+ *
+ * @author Grupo C [Backend]
+ */
+class ShoppingListTest {
+
+    private static Recipe recipe(String name, Ingredient... ingredients) {
+        return new Recipe(name, "", new ArrayList<>(List.of(ingredients)), "", 0, 0);
+    }
+
+    private static Recipe packed(IngredientTable table, String name, Ingredient... ingredients) {
+        return new Recipe(name, "", table, table.pack(List.of(ingredients)), "", 0, 0);
+    }
+
+    @Test
+    void quantitiesAreConvertedToCommonUnits() {
+        ShoppingList list = new ShoppingList()
+                .add("Harina", 500, "g")
+                .add("harina ", 0.75, "KG")
+                .add("Leche", 2, "taza")
+                .add("Leche", 600, "ml")
+                .add("Huevo", 3, "unidades")
+                .add("Huevo", 2, "u")
+                .add("Sal", 1, "cucharadita");
+        assertEquals(List.of(
+                new ShoppingList.Item("Harina", 1.25, "kg"),
+                new ShoppingList.Item("Huevo", 5, "unidad"),
+                new ShoppingList.Item("Leche", 1.08, "l"),
+                new ShoppingList.Item("Sal", 5, "ml")), list.items());
+        assertEquals(4, list.size());
+    }
+
+    @Test
+    void unknownUnitsAreSummedIgnoringCase() {
+        ShoppingList list = new ShoppingList()
+                .add("Sal", 1, "Pizca")
+                .add("sal", 2, " pizca")
+                .add("Sal", 1, null)
+                .add("Sal", 4, null)
+                .add("Sal", 3, "null")
+                .add("Sal", 10, "g")
+                .add(null, 1, "kg");
+        assertEquals(List.of(
+                new ShoppingList.Item("Sal", 5, null),
+                new ShoppingList.Item("Sal", 10, "g"),
+                new ShoppingList.Item("Sal", 3, "null"),
+                new ShoppingList.Item("Sal", 3, "Pizca")), list.items());
+        assertEquals(1, list.size());
+    }
+
+    @Test
+    void packedAndListRecipesGiveTheSameResult() {
+        Ingredient[] ingredients = {
+            new Ingredient("Tomate", "Vegetal", 500, "g"),
+            new Ingredient("Ajo", "Vegetal", 2, "diente"),
+            new Ingredient("Aceite", "Grasa", 3, "cucharada"),
+            new Ingredient("Sal", "Especia", 1, null)
+        };
+        IngredientTable table = new IngredientTable();
+        ShoppingList fromList = new ShoppingList().add(recipe("Gazpacho", ingredients), 3).add(recipe("Gazpacho", ingredients), 0.5);
+        ShoppingList fromPacked = new ShoppingList().add(packed(table, "Gazpacho", ingredients), 3)
+                .add(packed(table, "Gazpacho", ingredients), 0.5);
+        assertEquals(fromList.items(), fromPacked.items());
+        assertEquals(List.of(
+                new ShoppingList.Item("Aceite", 157.5, "ml"),
+                new ShoppingList.Item("Ajo", 7, "diente"),
+                new ShoppingList.Item("Sal", 3.5, null),
+                new ShoppingList.Item("Tomate", 1.75, "kg")), fromList.items());
+    }
+
+    @Test
+    void mergeAndParallelPlansMatchSequentialSum() {
+        IngredientTable table = new IngredientTable();
+        HashMap<Recipe, Integer> plan = new HashMap<>();
+        ShoppingList sequential = new ShoppingList();
+        for (int i = 0; i < 1000; i++) {
+            Ingredient[] ingredients = {
+                new Ingredient("Ingrediente " + i % 37, "Vegetal", i % 11, "g"),
+                new Ingredient("INGREDIENTE " + i % 13, "Vegetal", 1, i % 2 == 0 ? "Pizca" : "pizca"),
+                new Ingredient("Agua", "Liquido", i % 7, i % 3 == 0 ? "l" : "ml")
+            };
+            Recipe recipe = i % 2 == 0 ? recipe("Receta " + i, ingredients) : packed(table, "Receta " + i, ingredients);
+            plan.put(recipe, 1 + i % 3);
+            sequential.add(recipe, 1 + i % 3);
+        }
+        List<ShoppingList.Item> expected = sequential.items();
+        List<ShoppingList.Item> parallel = ShoppingList.of(plan).items();
+        assertEquals(expected.size(), parallel.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).name().toLowerCase(), parallel.get(i).name().toLowerCase());
+            assertEquals(expected.get(i).unit().toLowerCase(), parallel.get(i).unit().toLowerCase());
+            assertEquals(expected.get(i).quantity(), parallel.get(i).quantity(), 1e-6);
+        }
+        // 37 ingredientes en gramos, 13 en pizcas que se suman sin distinguir mayusculas y el agua
+        assertEquals(37 + 13 + 1, expected.size());
+    }
+
+}